@@ -0,0 +1,87 @@
+package de.comparus.opensource.longmap.benchmark;
+
+import de.comparus.opensource.longmap.LongMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a map of the given size from scratch with put, growing included, and emptying it again
+ * with remove.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class FillBenchmark {
+    @Param({"HASH_TABLE", "BALANCED_TREE", "B_PLUS_TREE", "CONTAINERS", "ARRAYS", "CONCURRENT",
+        "NON_BLOCKING", "OFF_HEAP"})
+    public MapType mapType;
+
+    @Param({"SEQUENTIAL", "RANDOM", "CLUSTERED", "NEGATIVE"})
+    public KeyDistribution distribution;
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int size;
+
+    private long[] keys;
+
+    @Setup(Level.Trial)
+    public void generateKeys() {
+        keys = distribution.keys(0, size);
+    }
+
+    @Benchmark
+    public LongMap<String> put() {
+        LongMap<String> map = mapType.create();
+        for (long key : keys) {
+            map.put(key, MapState.VALUE);
+        }
+        MapType.release(map);
+        return map;
+    }
+
+    @Benchmark
+    public long remove(FilledMap filledMap) {
+        LongMap<String> map = filledMap.map;
+        for (long key : keys) {
+            map.remove(key);
+        }
+        return map.size();
+    }
+
+    /**
+     * The map emptied by the remove benchmark, it is filled anew before every iteration.
+     */
+    @State(Scope.Thread)
+    public static class FilledMap {
+        private LongMap<String> map;
+
+        @Setup(Level.Iteration)
+        public void fill(FillBenchmark benchmark) {
+            map = benchmark.mapType.create();
+            for (long key : benchmark.keys) {
+                map.put(key, MapState.VALUE);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void release() {
+            MapType.release(map);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package de.comparus.opensource.longmap.benchmark;
+
+import de.comparus.opensource.longmap.LongMap;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Prints the heap retained by every map type per entry. All the entries share one value object,
+ * so the figures are the overhead of the map itself. The maps holding their data in direct memory
+ * report their heap part only.
+ *
+ * Usage: {@code java -cp benchmarks.jar de.comparus.opensource.longmap.benchmark.FootprintReport
+ * [size ...]}
+ */
+public final class FootprintReport {
+    private static final int[] DEFAULT_SIZES = {1000, 100_000, 10_000_000};
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%-14s %-12s %12s %16s%n", "Map", "Keys", "Size", "Bytes per entry");
+        for (MapType mapType : MapType.values()) {
+            for (KeyDistribution distribution : KeyDistribution.values()) {
+                for (int size : sizes) {
+                    System.out.printf("%-14s %-12s %12d %16s%n", mapType, distribution, size,
+                        measure(mapType, distribution, size));
+                }
+            }
+        }
+    }
+
+    private static String measure(MapType mapType, KeyDistribution distribution, int size) {
+        LongMap<String> map = mapType.create();
+        try {
+            for (long i = 0; i < size; i++) {
+                map.put(distribution.keyAt(i), MapState.VALUE);
+            }
+            long retainedBytes = GraphLayout.parseInstance(map).totalSize()
+                - GraphLayout.parseInstance(MapState.VALUE).totalSize();
+            return String.format("%.1f", (double) retainedBytes / size);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            return "failed: " + e;
+        } finally {
+            MapType.release(map);
+        }
+    }
+}
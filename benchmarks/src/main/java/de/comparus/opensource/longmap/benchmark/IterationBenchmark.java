@@ -0,0 +1,54 @@
+package de.comparus.opensource.longmap.benchmark;
+
+import de.comparus.opensource.longmap.LongMapCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans of a map: the allocation-free cursor and forEach against the materialising keys()
+ * and values(). The gc profiler shows the difference in the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class IterationBenchmark {
+
+    @Benchmark
+    public long cursor(MapState state, Blackhole blackhole) {
+        long keySum = 0;
+        LongMapCursor<String> cursor = state.map.cursor();
+        while (cursor.advance()) {
+            keySum += cursor.key();
+            blackhole.consume(cursor.value());
+        }
+        return keySum;
+    }
+
+    @Benchmark
+    public void forEach(MapState state, Blackhole blackhole) {
+        state.map.forEach((key, value) -> {
+            blackhole.consume(key);
+            blackhole.consume(value);
+        });
+    }
+
+    @Benchmark
+    public long[] keys(MapState state) {
+        return state.map.keys();
+    }
+
+    @Benchmark
+    public Object[] values(MapState state) {
+        return state.map.values();
+    }
+}
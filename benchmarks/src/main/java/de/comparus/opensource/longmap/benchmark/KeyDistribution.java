@@ -0,0 +1,68 @@
+package de.comparus.opensource.longmap.benchmark;
+
+/**
+ * The key sets the benchmarks run on. Every distribution is an endless sequence of distinct keys,
+ * so a map is filled with the keys {@code 0 .. size - 1} of the sequence and the following keys
+ * are guaranteed to be missing in it.
+ */
+public enum KeyDistribution {
+    /**
+     * 1, 2, 3 ... as database identifiers usually are.
+     */
+    SEQUENTIAL {
+        @Override
+        public long keyAt(long index) {
+            return index + 1;
+        }
+    },
+    /**
+     * Keys spread uniformly over the whole long range.
+     */
+    RANDOM {
+        @Override
+        public long keyAt(long index) {
+            return mix(index);
+        }
+    },
+    /**
+     * Runs of 64 consecutive keys starting at random points, as identifiers allocated in blocks.
+     */
+    CLUSTERED {
+        @Override
+        public long keyAt(long index) {
+            return (mix(index >>> CLUSTER_SHIFT) << CLUSTER_SHIFT) | (index & CLUSTER_MASK);
+        }
+    },
+    /**
+     * -1, -2, -3 ...
+     */
+    NEGATIVE {
+        @Override
+        public long keyAt(long index) {
+            return -index - 1;
+        }
+    };
+
+    private static final int CLUSTER_SHIFT = 6;
+    private static final long CLUSTER_MASK = (1L << CLUSTER_SHIFT) - 1;
+
+    public abstract long keyAt(long index);
+
+    public long[] keys(long fromIndex, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = keyAt(fromIndex + i);
+        }
+        return keys;
+    }
+
+    /**
+     * The finalizer of SplitMix64. It is a bijection, so distinct indexes give distinct keys.
+     */
+    private static long mix(long index) {
+        long z = index * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
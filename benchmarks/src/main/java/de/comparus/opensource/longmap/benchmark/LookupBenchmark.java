@@ -0,0 +1,49 @@
+package de.comparus.opensource.longmap.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of present and missing keys.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class LookupBenchmark {
+
+    @Benchmark
+    public String get(MapState state, MapState.LookupPosition position) {
+        return state.map.get(state.presentKeys[position.next()]);
+    }
+
+    @Benchmark
+    public String getMissing(MapState state, MapState.LookupPosition position) {
+        return state.map.get(state.missingKeys[position.next()]);
+    }
+
+    @Benchmark
+    public boolean containsKey(MapState state, MapState.LookupPosition position) {
+        return state.map.containsKey(state.presentKeys[position.next()]);
+    }
+
+    @Benchmark
+    public String getFrozen(MapState.Frozen frozen, MapState state,
+                            MapState.LookupPosition position) {
+        return frozen.map.get(state.presentKeys[position.next()]);
+    }
+
+    @Benchmark
+    public String getMissingFrozen(MapState.Frozen frozen, MapState state,
+                                   MapState.LookupPosition position) {
+        return frozen.map.get(state.missingKeys[position.next()]);
+    }
+}
@@ -0,0 +1,86 @@
+package de.comparus.opensource.longmap.benchmark;
+
+import de.comparus.opensource.longmap.FrozenLongMap;
+import de.comparus.opensource.longmap.LongMap;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.SplittableRandom;
+
+/**
+ * A map filled with {@code size} keys of the distribution, and the keys to look up in it. The
+ * looked up keys are picked at random, so a sequential distribution is not favoured by walking
+ * the table in the order of its cells.
+ */
+@State(Scope.Benchmark)
+public class MapState {
+    public static final String VALUE = "value";
+
+    private static final int LOOKUP_COUNT = 1 << 16;
+    private static final long SEED = 42L;
+
+    @Param({"HASH_TABLE", "BALANCED_TREE", "B_PLUS_TREE", "CONTAINERS", "ARRAYS", "CONCURRENT",
+        "NON_BLOCKING", "OFF_HEAP"})
+    public MapType mapType;
+
+    @Param({"SEQUENTIAL", "RANDOM", "CLUSTERED", "NEGATIVE"})
+    public KeyDistribution distribution;
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int size;
+
+    public LongMap<String> map;
+    public long[] presentKeys;
+    public long[] missingKeys;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        map = mapType.create();
+        for (long i = 0; i < size; i++) {
+            map.put(distribution.keyAt(i), VALUE);
+        }
+        SplittableRandom random = new SplittableRandom(SEED);
+        presentKeys = new long[LOOKUP_COUNT];
+        missingKeys = new long[LOOKUP_COUNT];
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            presentKeys[i] = distribution.keyAt(random.nextInt(size));
+            missingKeys[i] = distribution.keyAt((long) size + random.nextInt(size));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        MapType.release(map);
+        map = null;
+    }
+
+    /**
+     * The position in the lookup arrays, kept per thread.
+     */
+    @State(Scope.Thread)
+    public static class LookupPosition {
+        private int index;
+
+        public int next() {
+            return index = (index + 1) & (LOOKUP_COUNT - 1);
+        }
+    }
+
+    /**
+     * A frozen copy of the map, to compare the reads of the frozen layout with the ones of the map
+     * it is made of.
+     */
+    @State(Scope.Benchmark)
+    public static class Frozen {
+        public FrozenLongMap<String> map;
+
+        @Setup(Level.Trial)
+        public void freeze(MapState state) {
+            map = state.map.freeze();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package de.comparus.opensource.longmap.benchmark;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapImpl;
+import de.comparus.opensource.longmap.LongMapOnBPlusTree;
+import de.comparus.opensource.longmap.LongMapOnBalancedTree;
+import de.comparus.opensource.longmap.LongMapOnContainers;
+import de.comparus.opensource.longmap.alternative.LongMapArraysImpl;
+import de.comparus.opensource.longmap.concurrent.ConcurrentLongMap;
+import de.comparus.opensource.longmap.concurrent.NonBlockingLongMap;
+import de.comparus.opensource.longmap.offheap.OffHeapLongMap;
+import de.comparus.opensource.longmap.offheap.ValueCodec;
+
+/**
+ * The LongMap implementations under benchmark. The maps are created without a size hint, so the
+ * cost of growing is part of the fill benchmarks.
+ */
+public enum MapType {
+    HASH_TABLE {
+        @Override
+        public LongMap<String> create() {
+            return new LongMapImpl<>();
+        }
+    },
+    BALANCED_TREE {
+        @Override
+        public LongMap<String> create() {
+            return new LongMapOnBalancedTree<>();
+        }
+    },
+    B_PLUS_TREE {
+        @Override
+        public LongMap<String> create() {
+            return new LongMapOnBPlusTree<>();
+        }
+    },
+    CONTAINERS {
+        @Override
+        public LongMap<String> create() {
+            return new LongMapOnContainers<>();
+        }
+    },
+    ARRAYS {
+        @Override
+        public LongMap<String> create() {
+            return new LongMapArraysImpl<>();
+        }
+    },
+    CONCURRENT {
+        @Override
+        public LongMap<String> create() {
+            return new ConcurrentLongMap<>();
+        }
+    },
+    NON_BLOCKING {
+        @Override
+        public LongMap<String> create() {
+            return new NonBlockingLongMap<>();
+        }
+    },
+    OFF_HEAP {
+        @Override
+        public LongMap<String> create() {
+            return new OffHeapLongMap<>(ValueCodec.UTF8_STRING);
+        }
+    };
+
+    public abstract LongMap<String> create();
+
+    /**
+     * Frees the memory of the maps which hold it outside the heap.
+     */
+    public static void release(LongMap<?> map) {
+        if (map instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) map).close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package de.comparus.opensource.longmap.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes to a filled map. Every operation leaves the map with the same keys, so its size stays
+ * the same for the whole run and no resize is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class UpdateBenchmark {
+
+    @Benchmark
+    public String overwrite(MapState state, MapState.LookupPosition position) {
+        return state.map.put(state.presentKeys[position.next()], MapState.VALUE);
+    }
+
+    /**
+     * A removal and the insertion of the same key; an insertion alone would grow the map.
+     */
+    @Benchmark
+    public String removeAndPut(MapState state, MapState.LookupPosition position) {
+        long key = state.presentKeys[position.next()];
+        String value = state.map.remove(key);
+        state.map.put(key, MapState.VALUE);
+        return value;
+    }
+}
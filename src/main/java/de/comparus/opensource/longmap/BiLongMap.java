@@ -0,0 +1,311 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * This is a LongMap which keeps the reverse mapping of its values to their keys in sync with the
+ * forward one, so {@link #containsValue(Object)} and {@link #keysOf(Object)} take one lookup in a
+ * hash table instead of a scan over all the entries. The cost is the index itself and an update
+ * of it on every put and remove.
+ *
+ * The forward mappings are kept by another LongMap (a LongMapImpl by default), which must not be
+ * changed other than through this map afterwards. The values are compared by equals, so a value
+ * must not change its equals and hashCode while it is in the map. A value mapped by a single key,
+ * the usual case for deduplication, keeps that key as a boxed Long; a value shared by several keys
+ * keeps them in a LongIntMapImpl used as a set.
+ *
+ * Like the other mutable maps of this package it is not thread-safe.
+ */
+public class BiLongMap<V> implements LongMap<V> {
+    private final LongMap<V> map;
+    private final ValueIndex keysByValue = new ValueIndex();
+
+    public BiLongMap() {
+        this(new LongMapImpl<>());
+    }
+
+    /**
+     * Indexes the mappings the map already has.
+     */
+    public BiLongMap(LongMap<V> map) {
+        this.map = map;
+        LongMapCursor<V> cursor = map.cursor();
+        while (cursor.advance()) {
+            addToIndex(cursor.value(), cursor.key());
+        }
+    }
+
+    @Override
+    public V put(long key, V value) {
+        V previousValue = map.put(key, value);
+        if (previousValue == null || !previousValue.equals(value)) {
+            removeFromIndex(previousValue, key);
+            addToIndex(value, key);
+        }
+        return previousValue;
+    }
+
+    @Override
+    public V remove(long key) {
+        V previousValue = map.remove(key);
+        removeFromIndex(previousValue, key);
+        return previousValue;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+        keysByValue.clear();
+    }
+
+    @Override
+    public V get(long key) {
+        return map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Takes one lookup in the index rather than a scan over the entries.
+     */
+    @Override
+    public boolean containsValue(V value) {
+        return keysByValue.containsKey(value);
+    }
+
+    /**
+     * @return the keys mapped to the value (in no particular order), an empty array if there are
+     *     none
+     */
+    public long[] keysOf(V value) {
+        Object keys = keysByValue.get(value);
+        if (keys == null) {
+            return new long[0];
+        }
+        if (keys instanceof Long) {
+            return new long[]{(Long) keys};
+        }
+        return ((LongIntMapImpl) keys).keys();
+    }
+
+    /**
+     * @return the number of distinct values of the map
+     */
+    public int valueCount() {
+        return keysByValue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public long[] keys() {
+        return map.keys();
+    }
+
+    @Override
+    public V[] values() {
+        return map.values();
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return map.cursor();
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        map.forEach(action);
+    }
+
+    @Override
+    public void getAll(long[] keys, V[] result) {
+        map.getAll(keys, result);
+    }
+
+    private void addToIndex(V value, long key) {
+        Object keys = keysByValue.get(value);
+        if (keys == null) {
+            keysByValue.put(value, key);
+        } else if (keys instanceof Long) {
+            LongIntMapImpl keySet = new LongIntMapImpl();
+            keySet.put((Long) keys, 0);
+            keySet.put(key, 0);
+            keysByValue.put(value, keySet);
+        } else {
+            ((LongIntMapImpl) keys).put(key, 0);
+        }
+    }
+
+    /**
+     * Does nothing if the key is not indexed under the value, which is the case for the null
+     * previous value of a key that has not been mapped.
+     */
+    private void removeFromIndex(V value, long key) {
+        Object keys = keysByValue.get(value);
+        if (keys instanceof Long) {
+            if ((Long) keys == key) {
+                keysByValue.remove(value);
+            }
+        } else if (keys != null) {
+            LongIntMapImpl keySet = (LongIntMapImpl) keys;
+            keySet.remove(key);
+            if (keySet.size() == 1) {
+                keysByValue.put(value, keySet.keys()[0]);
+            }
+        }
+    }
+
+    /**
+     * The index from the values to their keys: an open-addressing table laid out as LongMapImpl
+     * is, with the values compared by equals instead of the keys by ==. The cell of a value is
+     * picked by the FIBONACCI hash of its hashCode, so the weak low bits of a hashCode do not
+     * cluster the values. A free cell holds null, so the keys of the null value are kept aside.
+     */
+    private static final class ValueIndex {
+        private static final float LOAD_FACTOR = 0.5f;
+
+        private Object[] values;
+        private Object[] keys;
+        private int mask;
+        private int threshold;
+        private int tableSize;
+        private Object nullValueKeys;
+
+        private ValueIndex() {
+            allocateTable(LongKeyTable.DEFAULT_TABLE_CAPACITY);
+        }
+
+        /**
+         * @return the boxed key or the key set of the value, null if the value is not indexed
+         */
+        private Object get(Object value) {
+            if (value == null) {
+                return nullValueKeys;
+            }
+            int index = findIndex(value);
+            return index < 0 ? null : keys[index];
+        }
+
+        private boolean containsKey(Object value) {
+            return get(value) != null;
+        }
+
+        private void put(Object value, Object valueKeys) {
+            if (value == null) {
+                nullValueKeys = valueKeys;
+                return;
+            }
+            int index = findIndex(value);
+            if (index >= 0) {
+                keys[index] = valueKeys;
+                return;
+            }
+            index = -index - 1;
+            values[index] = value;
+            keys[index] = valueKeys;
+            if (++tableSize > threshold) {
+                resizeTable(values.length << 1);
+            }
+        }
+
+        private void remove(Object value) {
+            if (value == null) {
+                nullValueKeys = null;
+                return;
+            }
+            int index = findIndex(value);
+            if (index >= 0) {
+                shiftValuesBack(index);
+                tableSize--;
+            }
+        }
+
+        private int size() {
+            return nullValueKeys == null ? tableSize : tableSize + 1;
+        }
+
+        private void clear() {
+            nullValueKeys = null;
+            tableSize = 0;
+            allocateTable(LongKeyTable.DEFAULT_TABLE_CAPACITY);
+        }
+
+        /**
+         * @return the index of the value, or -(index of the free cell ending its cluster) - 1
+         */
+        private int findIndex(Object value) {
+            int index = calculateIndex(value, mask);
+            Object currentValue;
+            while ((currentValue = values[index]) != null) {
+                if (currentValue == value || currentValue.equals(value)) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -index - 1;
+        }
+
+        /**
+         * Closes the gap left by a removed value the same way LongKeyTable.findShiftedCell does
+         * for the keys.
+         */
+        private void shiftValuesBack(int gap) {
+            int index = gap;
+            while (true) {
+                index = (index + 1) & mask;
+                Object currentValue = values[index];
+                if (currentValue == null) {
+                    break;
+                }
+                int home = calculateIndex(currentValue, mask);
+                if (((index - home) & mask) >= ((index - gap) & mask)) {
+                    values[gap] = currentValue;
+                    keys[gap] = keys[index];
+                    gap = index;
+                }
+            }
+            values[gap] = null;
+            keys[gap] = null;
+        }
+
+        private void resizeTable(int newCapacity) {
+            if (values.length >= LongKeyTable.MAXIMUM_TABLE_CAPACITY) {
+                throw new IllegalStateException("BiLongMap cannot index more distinct values");
+            }
+            Object[] oldValues = values;
+            Object[] oldKeys = keys;
+            allocateTable(newCapacity);
+            for (int i = 0; i < oldValues.length; i++) {
+                Object value = oldValues[i];
+                if (value != null) {
+                    int index = calculateIndex(value, mask);
+                    while (values[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    values[index] = value;
+                    keys[index] = oldKeys[i];
+                }
+            }
+        }
+
+        private void allocateTable(int capacity) {
+            values = new Object[capacity];
+            keys = new Object[capacity];
+            mask = capacity - 1;
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        private static int calculateIndex(Object value, int mask) {
+            return LongHashFunction.FIBONACCI.index(value.hashCode(), mask);
+        }
+    }
+}
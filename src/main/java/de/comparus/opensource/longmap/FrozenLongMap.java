@@ -0,0 +1,419 @@
+package de.comparus.opensource.longmap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * This is an immutable NavigableLongMap made of a copy of another map by
+ * {@link LongMap#freeze()} or {@link #copyOf(LongMap)}. It is laid out for reading only: the keys
+ * are sorted in a {@code long[]} with the values in a parallel {@code Object[]}, and nothing else.
+ *
+ * A key is looked up by interpolation search: its position is estimated from its distance to the
+ * bounds of the searched range, so evenly spread keys, such as database IDs, are found by the
+ * first probe. A few interpolation steps are made at most, then the search falls back to the
+ * binary one, so skewed keys cost no more than a binary search.
+ *
+ * If a sample of the keys shows they are not spread evenly enough for that, the keys and the
+ * values are also copied into a read-only hash table laid out as in LongMapImpl: parallel
+ * {@code long[]} and {@code Object[]} arrays with linear probing, at most half full, so get and
+ * containsKey read the cell of the key and its value side by side. The sorted arrays then serve
+ * only floor, ceiling, the range views and the walks in key order. The table takes between 24 and
+ * 48 bytes per key on top of the 12 of the sorted arrays.
+ *
+ * All the fields are final and the arrays are never changed, so the map may be read by any
+ * number of threads without any synchronization once it is published (see PublishedLongMap).
+ * The modifying methods throw UnsupportedOperationException.
+ */
+public final class FrozenLongMap<V> implements NavigableLongMap<V> {
+    private static final int INTERPOLATION_STEPS = 4;
+    private static final int BINARY_SEARCH_RANGE = 16;
+    private static final int SPREAD_SAMPLES = 1024;
+    private static final int MAX_GUESS_ERROR = 8;
+    private static final float HASH_LOAD_FACTOR = 0.5f;
+    private static final LongHashFunction HASH_FUNCTION = LongHashFunction.FIBONACCI;
+    private static final long FREE_KEY = 0L;
+    private static final FrozenLongMap<?> EMPTY = new FrozenLongMap<>(new long[0], new Object[0]);
+
+    private final long[] keys;
+    private final Object[] values;
+
+    private final long[] hashKeys;
+    private final Object[] hashValues;
+
+    private FrozenLongMap(long[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+        if (isEvenlySpread(keys) || keys.length > LongKeyTable.MAXIMUM_TABLE_CAPACITY / 2) {
+            this.hashKeys = null;
+            this.hashValues = null;
+            return;
+        }
+        int capacity = LongKeyTable.calculateTableCapacity(keys.length, HASH_LOAD_FACTOR);
+        this.hashKeys = new long[capacity];
+        this.hashValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; i++) {
+            // the zero key marks a free cell, it is found by the search of the sorted keys
+            if (keys[i] != FREE_KEY) {
+                int index = LongKeyTable.findFreeCell(hashKeys, mask, HASH_FUNCTION, keys[i]);
+                hashKeys[index] = keys[i];
+                hashValues[index] = values[i];
+            }
+        }
+    }
+
+    /**
+     * @return true if the positions of the sampled keys are guessed closely enough by interpolation
+     *     between the first and the last key, so the first probe of a search mostly hits the key
+     */
+    private static boolean isEvenlySpread(long[] keys) {
+        if (keys.length <= BINARY_SEARCH_RANGE) return true;
+        double firstKey = keys[0];
+        double range = (double) keys[keys.length - 1] - firstKey;
+        int step = Math.max(1, keys.length / SPREAD_SAMPLES);
+        for (int i = 0; i < keys.length; i += step) {
+            int guess = (int) (((double) keys[i] - firstKey) / range * (keys.length - 1));
+            if (Math.abs(guess - i) > MAX_GUESS_ERROR) return false;
+        }
+        return true;
+    }
+
+    public static <V> FrozenLongMap<V> empty() {
+        return (FrozenLongMap<V>) EMPTY;
+    }
+
+    /**
+     * Copies the mappings of the map, which is only read by its cursor. A FrozenLongMap is
+     * returned as it is.
+     */
+    public static <V> FrozenLongMap<V> copyOf(LongMap<? extends V> map) {
+        if (map instanceof FrozenLongMap) {
+            return (FrozenLongMap<V>) map;
+        }
+        int capacity = (int) Math.min(map.size(), Integer.MAX_VALUE - 8);
+        long[] keys = new long[capacity];
+        Object[] values = new Object[capacity];
+        int size = 0;
+        boolean isAscending = true;
+        LongMapCursor<? extends V> cursor = map.cursor();
+        while (cursor.advance()) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(16, size + (size >> 1)));
+                values = Arrays.copyOf(values, keys.length);
+            }
+            long key = cursor.key();
+            isAscending &= size == 0 || keys[size - 1] < key;
+            keys[size] = key;
+            values[size++] = cursor.value();
+        }
+        if (size == 0) return empty();
+        if (size != keys.length) {
+            keys = Arrays.copyOf(keys, size);
+            values = Arrays.copyOf(values, size);
+        }
+        if (!isAscending) {
+            // the keys are distinct, so the position of every key in the sorted copy is unique
+            long[] sortedKeys = keys.clone();
+            Arrays.sort(sortedKeys);
+            Object[] sortedValues = new Object[size];
+            for (int i = 0; i < size; i++) {
+                sortedValues[Arrays.binarySearch(sortedKeys, keys[i])] = values[i];
+            }
+            keys = sortedKeys;
+            values = sortedValues;
+        }
+        return new FrozenLongMap<>(keys, values);
+    }
+
+    @Override
+    public V get(long key) {
+        if (hashKeys != null && key != FREE_KEY) {
+            int index = LongKeyTable.findIndex(hashKeys, hashKeys.length - 1, HASH_FUNCTION, key);
+            return index < 0 ? null : (V) hashValues[index];
+        }
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        if (hashKeys != null && key != FREE_KEY) {
+            return LongKeyTable.findIndex(hashKeys, hashKeys.length - 1, HASH_FUNCTION, key) >= 0;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        for (Object currentValue : values) {
+            if (Objects.equals(value, currentValue)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public long[] keys() {
+        return keys.clone();
+    }
+
+    @Override
+    public V[] values() {
+        return (V[]) values.clone();
+    }
+
+    @Override
+    public long size() {
+        return keys.length;
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new ArrayCursor(0, keys.length);
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        for (int i = 0; i < keys.length; i++) {
+            action.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    /**
+     * @return this map
+     */
+    @Override
+    public FrozenLongMap<V> freeze() {
+        return this;
+    }
+
+    @Override
+    public long firstKey() {
+        if (keys.length == 0) {
+            throw new NoSuchElementException();
+        }
+        return keys[0];
+    }
+
+    @Override
+    public long lastKey() {
+        if (keys.length == 0) {
+            throw new NoSuchElementException();
+        }
+        return keys[keys.length - 1];
+    }
+
+    @Override
+    public long floorKey(long key) {
+        int index = indexOf(key);
+        if (index >= 0) return key;
+        int position = -index - 1;
+        if (position == 0) {
+            throw new NoSuchElementException();
+        }
+        return keys[position - 1];
+    }
+
+    @Override
+    public long ceilingKey(long key) {
+        int index = indexOf(key);
+        if (index >= 0) return key;
+        int position = -index - 1;
+        if (position == keys.length) {
+            throw new NoSuchElementException();
+        }
+        return keys[position];
+    }
+
+    @Override
+    public NavigableLongMap<V> subMap(long fromKey, boolean fromInclusive, long toKey,
+                                      boolean toInclusive) {
+        return new SubMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public V put(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(long[] keys, V[] values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(long key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long removeAll(long[] keys) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Every step guesses the position of the key by interpolation and gallops from the guess
+     * towards the key, so both bounds of the range close in on the key rather than only one of
+     * them. The range left after the last interpolation step is searched by halving.
+     *
+     * @return the index of the key if it is present, otherwise {@code -(index + 1)} where index is
+     *     the position of the first greater key
+     */
+    private int indexOf(long key) {
+        if (keys.length == 0 || key < keys[0]) return -1;
+        if (key > keys[keys.length - 1]) return -(keys.length + 1);
+        int low = 0;
+        int high = keys.length - 1;
+        int steps = 0;
+        while (low <= high) {
+            long lowKey = keys[low];
+            long highKey = keys[high];
+            if (key < lowKey) return -(low + 1);
+            if (key > highKey) return -(high + 2);
+            if (steps++ == INTERPOLATION_STEPS || high - low < BINARY_SEARCH_RANGE) {
+                return binarySearch(low, high, key);
+            }
+            // the distances may not fit into a long, so they are taken as doubles
+            double fraction = ((double) key - lowKey) / ((double) highKey - lowKey);
+            int guess = low + (int) (fraction * (high - low));
+            guess = Math.max(low, Math.min(high, guess));
+            long guessKey = keys[guess];
+            if (guessKey == key) {
+                return guess;
+            }
+            if (guessKey < key) {
+                low = guess + 1;
+                for (int step = 1; guess + step < high; step <<= 1) {
+                    if (keys[guess + step] < key) {
+                        low = guess + step + 1;
+                    } else {
+                        high = guess + step;
+                        break;
+                    }
+                }
+            } else {
+                high = guess - 1;
+                for (int step = 1; guess - step > low; step <<= 1) {
+                    if (keys[guess - step] > key) {
+                        high = guess - step - 1;
+                    } else {
+                        low = guess - step;
+                        break;
+                    }
+                }
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int binarySearch(int low, int high, long key) {
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = keys[middle];
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return the index of the first key not less than the given one
+     */
+    private int ceilingIndex(long key) {
+        int index = indexOf(key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Walks over the keys with the indexes from the first one inclusive to the last one exclusive.
+     */
+    private final class ArrayCursor implements LongMapCursor<V> {
+        private final int end;
+        private int index;
+
+        private ArrayCursor(int start, int end) {
+            this.index = start - 1;
+            this.end = end;
+        }
+
+        @Override
+        public boolean advance() {
+            if (index < end) {
+                index++;
+            }
+            return index < end;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return keys[index];
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) values[index];
+        }
+
+        private void checkPosition() {
+            if (index < 0 || index >= end) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    private final class SubMap extends NavigableRangeView<V> {
+        private SubMap(long fromKey, boolean fromInclusive, long toKey, boolean toInclusive) {
+            super(FrozenLongMap.this, fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        @Override
+        NavigableRangeView<V> createView(long fromKey, boolean fromInclusive, long toKey,
+                                         boolean toInclusive) {
+            return new SubMap(fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        @Override
+        public LongMapCursor<V> cursor() {
+            if (lowKey > highKey) {
+                return new ArrayCursor(0, 0);
+            }
+            int start = ceilingIndex(lowKey);
+            int end = highKey == Long.MAX_VALUE ? keys.length : ceilingIndex(highKey + 1);
+            return new ArrayCursor(start, Math.max(start, end));
+        }
+    }
+}
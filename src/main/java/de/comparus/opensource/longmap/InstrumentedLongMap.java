@@ -0,0 +1,187 @@
+package de.comparus.opensource.longmap;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This is a LongMapImpl which counts the hits and misses of its lookups and the number and the
+ * duration of its resizes, and can describe its table by {@link #stats()} or through JMX. The
+ * counting is kept out of LongMapImpl itself, so a plain map pays nothing for it; this one costs
+ * an increment per lookup and a clock read per resize.
+ *
+ * The counters are plain fields, like the rest of the map they are meant for a single thread. A
+ * JMX client may read them, and scan the table, while the map is modified, so it may see slightly
+ * stale or inconsistent numbers.
+ */
+public class InstrumentedLongMap<V> extends LongMapImpl<V> {
+    public static final String MBEAN_DOMAIN = "de.comparus.opensource.longmap";
+
+    private static final int PROBE_LENGTH_BUCKETS = 64;
+    private static final Object ABSENT = new Object();
+
+    private long resizeCount;
+    private long resizeTimeNanos;
+    private long getHits;
+    private long getMisses;
+    private long containsKeyHits;
+    private long containsKeyMisses;
+
+    public InstrumentedLongMap() {
+        super();
+    }
+
+    public InstrumentedLongMap(int startCapacity) {
+        super(startCapacity);
+    }
+
+    public InstrumentedLongMap(int startCapacity, float loadFactor) {
+        super(startCapacity, loadFactor);
+    }
+
+    public InstrumentedLongMap(int startCapacity, float loadFactor, boolean incrementalResizing) {
+        super(startCapacity, loadFactor, incrementalResizing);
+    }
+
+    public InstrumentedLongMap(int startCapacity, float loadFactor, boolean incrementalResizing,
+                               LongHashFunction hashFunction) {
+        super(startCapacity, loadFactor, incrementalResizing, hashFunction);
+    }
+
+    @Override
+    public V get(long key) {
+        Object value = lookup(key, ABSENT);
+        if (value == ABSENT) {
+            getMisses++;
+            return null;
+        }
+        getHits++;
+        return (V) value;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        boolean result = super.containsKey(key);
+        if (result) {
+            containsKeyHits++;
+        } else {
+            containsKeyMisses++;
+        }
+        return result;
+    }
+
+    @Override
+    void resizeTable(int newCapacity) {
+        int oldCapacity = capacity();
+        long start = System.nanoTime();
+        super.resizeTable(newCapacity);
+        if (capacity() != oldCapacity) {
+            resizeTimeNanos += System.nanoTime() - start;
+            resizeCount++;
+        }
+    }
+
+    /**
+     * Takes the statistics of the map, the probe lengths are counted by a scan of the whole table.
+     */
+    public LongMapStats stats() {
+        return new LongMapStats(size(), capacity(), loadFactor(),
+            countProbeLengths(PROBE_LENGTH_BUCKETS), resizeCount, resizeTimeNanos, getHits,
+            getMisses, containsKeyHits, containsKeyMisses);
+    }
+
+    /**
+     * Zeroes the lookup and resize counters.
+     */
+    public void resetStats() {
+        resizeCount = 0;
+        resizeTimeNanos = 0;
+        getHits = 0;
+        getMisses = 0;
+        containsKeyHits = 0;
+        containsKeyMisses = 0;
+    }
+
+    /**
+     * Registers the statistics of the map in the platform MBean server as
+     * {@code de.comparus.opensource.longmap:type=LongMap,name=<name>}. Every attribute is read
+     * from the map at the time it is requested. The MBean keeps the map reachable, so it has to be
+     * unregistered by the returned name when the map is no longer used.
+     *
+     * @throws JMException if the name is taken or cannot be registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName(MBEAN_DOMAIN + ":type=LongMap,name="
+            + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StatsView(), objectName);
+        return objectName;
+    }
+
+    private final class StatsView implements LongMapStatsMXBean {
+
+        @Override
+        public long getSize() {
+            return size();
+        }
+
+        @Override
+        public int getCapacity() {
+            return capacity();
+        }
+
+        @Override
+        public float getLoadFactor() {
+            return loadFactor();
+        }
+
+        @Override
+        public double getFillRatio() {
+            return (double) size() / capacity();
+        }
+
+        @Override
+        public long[] getProbeLengthHistogram() {
+            return countProbeLengths(PROBE_LENGTH_BUCKETS);
+        }
+
+        @Override
+        public int getMaxProbeLength() {
+            return stats().getMaxProbeLength();
+        }
+
+        @Override
+        public double getAverageProbeLength() {
+            return stats().getAverageProbeLength();
+        }
+
+        @Override
+        public long getResizeCount() {
+            return resizeCount;
+        }
+
+        @Override
+        public long getResizeTimeNanos() {
+            return resizeTimeNanos;
+        }
+
+        @Override
+        public long getGetHits() {
+            return getHits;
+        }
+
+        @Override
+        public long getGetMisses() {
+            return getMisses;
+        }
+
+        @Override
+        public long getContainsKeyHits() {
+            return containsKeyHits;
+        }
+
+        @Override
+        public long getContainsKeyMisses() {
+            return containsKeyMisses;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package de.comparus.opensource.longmap;
+
+import java.util.NoSuchElementException;
+
+/**
+ * The cursor used by LongMap implementations without a cursor of their own: it walks over the
+ * {@link LongMap#keys()} taken when the cursor is created and looks up the value of every key.
+ */
+final class KeysSnapshotCursor<V> implements LongMapCursor<V> {
+    private final LongMap<V> map;
+    private final long[] keys;
+    private int index = -1;
+
+    KeysSnapshotCursor(LongMap<V> map) {
+        this.map = map;
+        this.keys = map.keys();
+    }
+
+    @Override
+    public boolean advance() {
+        if (index < keys.length) {
+            index++;
+        }
+        return index < keys.length;
+    }
+
+    @Override
+    public long key() {
+        if (index < 0 || index >= keys.length) {
+            throw new NoSuchElementException();
+        }
+        return keys[index];
+    }
+
+    @Override
+    public V value() {
+        return map.get(key());
+    }
+}
@@ -0,0 +1,145 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * This is an implementation of LongDoubleMap as an open-addressing hash table. The keys are kept by
+ * LongKeyTable, laid out as in LongMapImpl but resized at once rather than incrementally, the
+ * values are kept in a parallel {@code double[]} array, so an entry costs 16 bytes of the table
+ * and no object at all.
+ *
+ * Java generics do not cover primitive types, so LongLongMapImpl and LongIntMapImpl are copies of
+ * this class with another value type. A change to one of them has to be made to the other two.
+ */
+public class LongDoubleMapImpl extends LongKeyTable implements LongDoubleMap {
+    private final double noValue;
+    private double[] values;
+    private double zeroValue;
+
+    public LongDoubleMapImpl() {
+        this(DEFAULT_TABLE_CAPACITY);
+    }
+
+    public LongDoubleMapImpl(int startCapacity) {
+        this(startCapacity, DEFAULT_LOAD_FACTOR, LongHashFunction.SPREAD, 0);
+    }
+
+    /**
+     * @param noValue the value returned for missing keys
+     */
+    public LongDoubleMapImpl(int startCapacity, float loadFactor, LongHashFunction hashFunction,
+                           double noValue) {
+        super(startCapacity, loadFactor, hashFunction);
+        this.noValue = noValue;
+    }
+
+    @Override
+    public double put(long key, double value) {
+        if (key == FREE_KEY) {
+            double oldValue = hasZeroKey ? zeroValue : noValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return oldValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            values[index] = value;
+            insertKeyAt(index, key);
+            return noValue;
+        }
+        double oldValue = values[index];
+        values[index] = value;
+        return oldValue;
+    }
+
+    @Override
+    public double get(long key) {
+        if (key == FREE_KEY) {
+            return hasZeroKey ? zeroValue : noValue;
+        }
+        int index = findIndex(key);
+        return index < 0 ? noValue : values[index];
+    }
+
+    @Override
+    public double remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) return noValue;
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        int index = findIndex(key);
+        if (index < 0) return noValue;
+        double oldValue = values[index];
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public boolean containsValue(double value) {
+        long valueBits = Double.doubleToLongBits(value);
+        if (hasZeroKey && Double.doubleToLongBits(zeroValue) == valueBits) return true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY && Double.doubleToLongBits(values[i]) == valueBits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public double[] values() {
+        double[] result = new double[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = zeroValue;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                result[position++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public double getNoValue() {
+        return noValue;
+    }
+
+    @Override
+    public double addTo(long key, double delta) {
+        if (key == FREE_KEY) {
+            zeroValue = hasZeroKey ? zeroValue + delta : delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            values[index] = delta;
+            insertKeyAt(index, key);
+            return delta;
+        }
+        return values[index] += delta;
+    }
+
+    @Override
+    void allocateValues(int capacity) {
+        values = new double[capacity];
+    }
+
+    @Override
+    Object detachValues() {
+        return values;
+    }
+
+    @Override
+    void transferValue(Object oldValues, int oldIndex, int newIndex) {
+        values[newIndex] = ((double[]) oldValues)[oldIndex];
+    }
+
+    @Override
+    void moveValue(int fromIndex, int toIndex) {
+        values[toIndex] = values[fromIndex];
+    }
+}
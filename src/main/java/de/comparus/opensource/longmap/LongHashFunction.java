@@ -0,0 +1,65 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * Maps a long key to the cell of a hash table of this package. A table asks for the cell by
+ * {@link #index(long, int)}, which takes the lower bits of the hash by default, so a function has
+ * to spread the entropy of the whole key to them or override index.
+ */
+@FunctionalInterface
+public interface LongHashFunction {
+
+    /**
+     * Folds the higher bits of the key into the lower ones (similar to HashMap). It is the cheapest
+     * one and keeps sequential keys in sequential cells, but strided keys (multiples of a power of
+     * two) pile up in the same cells.
+     */
+    LongHashFunction SPREAD = key -> {
+        int hash = (int) (key ^ (key >>> 32));
+        return hash ^ (hash >>> 16);
+    };
+
+    /**
+     * Fibonacci (multiplicative) hashing: the key is multiplied by 2^64 divided by the golden ratio
+     * and the upper bits of the product are taken. Only the upper bits of a product depend on all
+     * the bits of the key, so a cell is chosen by as many upper bits as the table needs rather than
+     * by the lower bits of the hash.
+     */
+    LongHashFunction FIBONACCI = new LongHashFunction() {
+        private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+        @Override
+        public int hash(long key) {
+            return (int) ((key * GOLDEN_RATIO) >>> 32);
+        }
+
+        @Override
+        public int index(long key, int mask) {
+            // the mask of a table of 2^n cells has 64 - n leading zeros as a long, so n upper bits
+            // are left, and none for a single cell as a shift by 64 is a shift by 0
+            return (int) ((key * GOLDEN_RATIO) >>> Long.numberOfLeadingZeros(mask)) & mask;
+        }
+    };
+
+    /**
+     * The 64-bit finalizer of MurmurHash3. It is the slowest one, but every bit of the key affects
+     * every bit of the hash.
+     */
+    LongHashFunction MURMUR3 = key -> {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    };
+
+    int hash(long key);
+
+    /**
+     * @param mask the capacity of the table, a power of two, minus one
+     * @return the cell of the key
+     */
+    default int index(long key, int mask) {
+        return hash(key) & mask;
+    }
+}
@@ -0,0 +1,34 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * A map with keys of type long and values of type int. It mirrors LongMap, but keeps the values
+ * unboxed. As a primitive value cannot be null, the methods report a missing mapping by returning
+ * the "no value" of the map (see {@link #getNoValue()}), which is chosen when the map is created.
+ */
+public interface LongIntMap {
+    int put(long key, int value);
+    int get(long key);
+    int remove(long key);
+
+    boolean isEmpty();
+    boolean containsKey(long key);
+    boolean containsValue(int value);
+
+    long[] keys();
+    int[] values();
+
+    long size();
+    void clear();
+
+    /**
+     * @return the value returned for missing keys
+     */
+    int getNoValue();
+
+    /**
+     * Adds the delta to the value of the key, a missing key is counted as zero.
+     *
+     * @return the new value of the key
+     */
+    int addTo(long key, int delta);
+}
@@ -0,0 +1,144 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * This is an implementation of LongIntMap as an open-addressing hash table. The keys are kept by
+ * LongKeyTable, laid out as in LongMapImpl but resized at once rather than incrementally, the
+ * values are kept in a parallel {@code int[]} array, so an entry costs 12 bytes of the table and no
+ * object at all.
+ *
+ * Java generics do not cover primitive types, so LongLongMapImpl and LongDoubleMapImpl are copies
+ * of this class with another value type. A change to one of them has to be made to the other two.
+ */
+public class LongIntMapImpl extends LongKeyTable implements LongIntMap {
+    private final int noValue;
+    private int[] values;
+    private int zeroValue;
+
+    public LongIntMapImpl() {
+        this(DEFAULT_TABLE_CAPACITY);
+    }
+
+    public LongIntMapImpl(int startCapacity) {
+        this(startCapacity, DEFAULT_LOAD_FACTOR, LongHashFunction.SPREAD, 0);
+    }
+
+    /**
+     * @param noValue the value returned for missing keys
+     */
+    public LongIntMapImpl(int startCapacity, float loadFactor, LongHashFunction hashFunction,
+                           int noValue) {
+        super(startCapacity, loadFactor, hashFunction);
+        this.noValue = noValue;
+    }
+
+    @Override
+    public int put(long key, int value) {
+        if (key == FREE_KEY) {
+            int oldValue = hasZeroKey ? zeroValue : noValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return oldValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            values[index] = value;
+            insertKeyAt(index, key);
+            return noValue;
+        }
+        int oldValue = values[index];
+        values[index] = value;
+        return oldValue;
+    }
+
+    @Override
+    public int get(long key) {
+        if (key == FREE_KEY) {
+            return hasZeroKey ? zeroValue : noValue;
+        }
+        int index = findIndex(key);
+        return index < 0 ? noValue : values[index];
+    }
+
+    @Override
+    public int remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) return noValue;
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        int index = findIndex(key);
+        if (index < 0) return noValue;
+        int oldValue = values[index];
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public boolean containsValue(int value) {
+        if (hasZeroKey && zeroValue == value) return true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY && values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int[] values() {
+        int[] result = new int[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = zeroValue;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                result[position++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getNoValue() {
+        return noValue;
+    }
+
+    @Override
+    public int addTo(long key, int delta) {
+        if (key == FREE_KEY) {
+            zeroValue = hasZeroKey ? zeroValue + delta : delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            values[index] = delta;
+            insertKeyAt(index, key);
+            return delta;
+        }
+        return values[index] += delta;
+    }
+
+    @Override
+    void allocateValues(int capacity) {
+        values = new int[capacity];
+    }
+
+    @Override
+    Object detachValues() {
+        return values;
+    }
+
+    @Override
+    void transferValue(Object oldValues, int oldIndex, int newIndex) {
+        values[newIndex] = ((int[]) oldValues)[oldIndex];
+    }
+
+    @Override
+    void moveValue(int fromIndex, int toIndex) {
+        values[toIndex] = values[fromIndex];
+    }
+}
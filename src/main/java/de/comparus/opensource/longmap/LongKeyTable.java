@@ -0,0 +1,226 @@
+package de.comparus.opensource.longmap;
+
+import java.util.Objects;
+
+/**
+ * The key part of the open-addressing hash tables with primitive values (LongLongMapImpl,
+ * LongIntMapImpl, LongDoubleMapImpl): a power of two {@code long[]} table with linear probing and
+ * backward-shift deletion, the key {@code 0} marks a free cell and is stored aside. A subclass only
+ * keeps a parallel array of values and moves its cells when it is asked to.
+ *
+ * The probing itself is done by the static methods of this class, which LongMapImpl uses as well.
+ * LongMapImpl does not extend this class though: it resizes incrementally, which marks the moved
+ * cells of the previous table by a sentinel in the {@code Object[]} of values, something a
+ * primitive value array has no room for, and its parallel tasks, cursor and spliterator read both
+ * arrays directly. The tables here are resized at once instead.
+ *
+ * The probing methods are public for the segments of ConcurrentLongMap, the class itself cannot be
+ * extended outside of its package.
+ */
+public abstract class LongKeyTable {
+    static final int DEFAULT_TABLE_CAPACITY = 16;
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    static final int MAXIMUM_TABLE_CAPACITY = 1 << 30;
+    static final long FREE_KEY = 0L;
+
+    private final float loadFactor;
+    private final int startCapacity;
+    private final LongHashFunction hashFunction;
+    long[] keys;
+    private int mask;
+    private int threshold;
+    int tableSize;
+    boolean hasZeroKey;
+
+    LongKeyTable(int startCapacity, float loadFactor, LongHashFunction hashFunction) {
+        this.loadFactor = loadFactor;
+        this.hashFunction = Objects.requireNonNull(hashFunction);
+        this.startCapacity = calculateTableCapacity(startCapacity, loadFactor);
+        allocateTable(this.startCapacity);
+    }
+
+    /**
+     * Allocates the value array of the given capacity. It is called from the constructor of this
+     * class, so a subclass must not initialize its value array in a field initializer.
+     */
+    abstract void allocateValues(int capacity);
+
+    /**
+     * @return the current value array, which is going to be replaced
+     */
+    abstract Object detachValues();
+
+    abstract void transferValue(Object oldValues, int oldIndex, int newIndex);
+
+    abstract void moveValue(int fromIndex, int toIndex);
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public long size() {
+        return hasZeroKey ? tableSize + 1L : tableSize;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) return hasZeroKey;
+        return findIndex(key) >= 0;
+    }
+
+    public long[] keys() {
+        long[] result = new long[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = FREE_KEY;
+        }
+        for (long key : keys) {
+            if (key != FREE_KEY) {
+                result[position++] = key;
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        allocateTable(startCapacity);
+        tableSize = 0;
+        hasZeroKey = false;
+    }
+
+    final int findIndex(long key) {
+        return findIndex(keys, mask, hashFunction, key);
+    }
+
+    /**
+     * @return the index of the key if it is present, otherwise {@code -(index + 1)} where index is
+     *     the free cell where the key has to be inserted
+     */
+    final int findOrCreateIndex(long key) {
+        return findOrCreateIndex(keys, mask, hashFunction, key);
+    }
+
+    /**
+     * Takes the key into the free cell whose value has already been written by the subclass.
+     */
+    final void insertKeyAt(int index, long key) {
+        keys[index] = key;
+        if (++tableSize > threshold) {
+            resizeTable(keys.length << 1);
+        }
+    }
+
+    final void removeAt(int index) {
+        shiftKeysBack(index);
+        tableSize--;
+    }
+
+    private void shiftKeysBack(int gap) {
+        int index;
+        while ((index = findShiftedCell(keys, mask, hashFunction, gap)) >= 0) {
+            keys[gap] = keys[index];
+            moveValue(index, gap);
+            gap = index;
+        }
+        keys[gap] = FREE_KEY;
+    }
+
+    private void resizeTable(int newCapacity) {
+        if (keys.length >= MAXIMUM_TABLE_CAPACITY) {
+            if (tableSize >= MAXIMUM_TABLE_CAPACITY - 1) {
+                throw new IllegalStateException("The table cannot hold more than "
+                    + (MAXIMUM_TABLE_CAPACITY - 1) + " non-zero keys");
+            }
+            threshold = MAXIMUM_TABLE_CAPACITY - 2;
+            return;
+        }
+        long[] oldKeys = keys;
+        Object oldValues = detachValues();
+        allocateTable(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != FREE_KEY) {
+                int index = findFreeCell(keys, mask, hashFunction, key);
+                keys[index] = key;
+                transferValue(oldValues, i, index);
+            }
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        // at least one cell always stays free, otherwise probing for a missing key would never end
+        this.threshold = Math.min(capacity - 2, (int) (capacity * loadFactor));
+        allocateValues(capacity);
+    }
+
+    public static int findIndex(long[] keys, int mask, LongHashFunction hashFunction, long key) {
+        int index = hashFunction.index(key, mask);
+        long currentKey;
+        while ((currentKey = keys[index]) != FREE_KEY) {
+            if (currentKey == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    public static int findOrCreateIndex(long[] keys, int mask, LongHashFunction hashFunction,
+                                        long key) {
+        int index = hashFunction.index(key, mask);
+        long currentKey;
+        while ((currentKey = keys[index]) != FREE_KEY) {
+            if (currentKey == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -index - 1;
+    }
+
+    /**
+     * @return the first free cell of the probe sequence of a key known to be missing
+     */
+    public static int findFreeCell(long[] keys, int mask, LongHashFunction hashFunction, long key) {
+        int index = hashFunction.index(key, mask);
+        while (keys[index] != FREE_KEY) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Finds the entry to be moved into the gap left by a removed one: the first following entry of
+     * the same cluster which would become unreachable from its home cell.
+     *
+     * @return the index of the entry, -1 if the cluster ends before it
+     */
+    public static int findShiftedCell(long[] keys, int mask, LongHashFunction hashFunction,
+                                      int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            long currentKey = keys[index];
+            if (currentKey == FREE_KEY) {
+                return -1;
+            }
+            int home = hashFunction.index(currentKey, mask);
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                return index;
+            }
+        }
+    }
+
+    static int calculateTableCapacity(int expectedSize, float loadFactor) {
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + expectedSize);
+        }
+        long capacity = Math.max(2L, (long) Math.ceil(expectedSize / loadFactor));
+        if (capacity >= MAXIMUM_TABLE_CAPACITY) return MAXIMUM_TABLE_CAPACITY;
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+}
@@ -0,0 +1,144 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * This is an implementation of LongLongMap as an open-addressing hash table. The keys are kept by
+ * LongKeyTable, laid out as in LongMapImpl but resized at once rather than incrementally, the
+ * values are kept in a parallel {@code long[]} array, so an entry costs 16 bytes of the table
+ * and no object at all.
+ *
+ * Java generics do not cover primitive types, so LongIntMapImpl and LongDoubleMapImpl are copies of
+ * this class with another value type. A change to one of them has to be made to the other two.
+ */
+public class LongLongMapImpl extends LongKeyTable implements LongLongMap {
+    private final long noValue;
+    private long[] values;
+    private long zeroValue;
+
+    public LongLongMapImpl() {
+        this(DEFAULT_TABLE_CAPACITY);
+    }
+
+    public LongLongMapImpl(int startCapacity) {
+        this(startCapacity, DEFAULT_LOAD_FACTOR, LongHashFunction.SPREAD, 0);
+    }
+
+    /**
+     * @param noValue the value returned for missing keys
+     */
+    public LongLongMapImpl(int startCapacity, float loadFactor, LongHashFunction hashFunction,
+                           long noValue) {
+        super(startCapacity, loadFactor, hashFunction);
+        this.noValue = noValue;
+    }
+
+    @Override
+    public long put(long key, long value) {
+        if (key == FREE_KEY) {
+            long oldValue = hasZeroKey ? zeroValue : noValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return oldValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            values[index] = value;
+            insertKeyAt(index, key);
+            return noValue;
+        }
+        long oldValue = values[index];
+        values[index] = value;
+        return oldValue;
+    }
+
+    @Override
+    public long get(long key) {
+        if (key == FREE_KEY) {
+            return hasZeroKey ? zeroValue : noValue;
+        }
+        int index = findIndex(key);
+        return index < 0 ? noValue : values[index];
+    }
+
+    @Override
+    public long remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) return noValue;
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        int index = findIndex(key);
+        if (index < 0) return noValue;
+        long oldValue = values[index];
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public boolean containsValue(long value) {
+        if (hasZeroKey && zeroValue == value) return true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY && values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long[] values() {
+        long[] result = new long[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = zeroValue;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                result[position++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long getNoValue() {
+        return noValue;
+    }
+
+    @Override
+    public long addTo(long key, long delta) {
+        if (key == FREE_KEY) {
+            zeroValue = hasZeroKey ? zeroValue + delta : delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            values[index] = delta;
+            insertKeyAt(index, key);
+            return delta;
+        }
+        return values[index] += delta;
+    }
+
+    @Override
+    void allocateValues(int capacity) {
+        values = new long[capacity];
+    }
+
+    @Override
+    Object detachValues() {
+        return values;
+    }
+
+    @Override
+    void transferValue(Object oldValues, int oldIndex, int newIndex) {
+        values[newIndex] = ((long[]) oldValues)[oldIndex];
+    }
+
+    @Override
+    void moveValue(int fromIndex, int toIndex) {
+        values[toIndex] = values[fromIndex];
+    }
+}
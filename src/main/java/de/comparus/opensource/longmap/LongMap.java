@@ -1,5 +1,8 @@
 package de.comparus.opensource.longmap;
 
+import java.util.Objects;
+import java.util.function.LongFunction;
+
 public interface LongMap<V> {
     V put(long key, V value);
     V get(long key);
@@ -14,4 +17,130 @@ public interface LongMap<V> {
 
     long size();
     void clear();
+
+    /**
+     * Associates the value with the key only if the key is not mapped to a non-null value yet.
+     *
+     * @return the previous value, or null if the value has been inserted
+     */
+    default V putIfAbsent(long key, V value) {
+        V currentValue = get(key);
+        if (currentValue == null) {
+            currentValue = put(key, value);
+        }
+        return currentValue;
+    }
+
+    /**
+     * Replaces the value of the key only if the key is already mapped.
+     *
+     * @return the previous value, or null if there was no mapping for the key
+     */
+    default V replace(long key, V value) {
+        if (containsKey(key)) {
+            return put(key, value);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the key, computing and inserting it first if the key is not mapped to a
+     * non-null value yet. Nothing is inserted if the function returns null.
+     *
+     * @return the current (existing or computed) value of the key
+     */
+    default V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V currentValue = get(key);
+        if (currentValue == null) {
+            currentValue = mappingFunction.apply(key);
+            if (currentValue != null) {
+                put(key, currentValue);
+            }
+        }
+        return currentValue;
+    }
+
+    /**
+     * Returns a cursor over the mappings of this map. The order of the mappings is the same as the
+     * one of {@link #keys()}.
+     */
+    default LongMapCursor<V> cursor() {
+        return new KeysSnapshotCursor<>(this);
+    }
+
+    /**
+     * Performs the action for every mapping of this map without creating an object per mapping.
+     */
+    default void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    /**
+     * Copies the mappings of this map into an immutable map tuned for reads, which may be shared
+     * by any number of threads. Later changes of this map are not seen by the copy.
+     */
+    default FrozenLongMap<V> freeze() {
+        return FrozenLongMap.copyOf(this);
+    }
+
+    /**
+     * Puts the value with the same index for every key, as a sequence of puts does.
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    default void putAll(long[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("The number of keys " + keys.length
+                + " differs from the number of values " + values.length);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            put(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Stores the value of every key (null for a missing one) into the cell of the result array with
+     * the same index.
+     *
+     * @throws IllegalArgumentException if the result array is shorter than the keys one
+     */
+    default void getAll(long[] keys, V[] result) {
+        if (result.length < keys.length) {
+            throw new IllegalArgumentException("The result array of length " + result.length
+                + " cannot take " + keys.length + " values");
+        }
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = get(keys[i]);
+        }
+    }
+
+    /**
+     * Removes the mappings of all the keys.
+     *
+     * @return the number of removed mappings
+     */
+    default long removeAll(long[] keys) {
+        long sizeBefore = size();
+        for (long key : keys) {
+            remove(key);
+        }
+        return sizeBefore - size();
+    }
+
+    /**
+     * @return true if every key is mapped
+     */
+    default boolean containsAll(long[] keys) {
+        for (long key : keys) {
+            if (!containsKey(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
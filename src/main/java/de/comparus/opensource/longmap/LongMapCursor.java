@@ -0,0 +1,32 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * A cursor over the mappings of a LongMap. Unlike an Iterator it does not create an entry object
+ * for every mapping: the cursor itself points to the current mapping, which is read by
+ * {@link #key()} and {@link #value()}.
+ *
+ * <pre>
+ * LongMapCursor&lt;V&gt; cursor = map.cursor();
+ * while (cursor.advance()) {
+ *     process(cursor.key(), cursor.value());
+ * }
+ * </pre>
+ */
+public interface LongMapCursor<V> {
+    /**
+     * Moves the cursor to the next mapping, the first call moves it to the first one.
+     *
+     * @return false if there are no more mappings
+     */
+    boolean advance();
+
+    /**
+     * @return the key of the current mapping
+     */
+    long key();
+
+    /**
+     * @return the value of the current mapping
+     */
+    V value();
+}
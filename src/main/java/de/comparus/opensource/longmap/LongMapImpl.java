@@ -1,36 +1,69 @@
 package de.comparus.opensource.longmap;
 
-import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.stream.StreamSupport;
 
 /**
- * This is an implementation of LongMap interface and using similarity of a hash-table (as specified
- * in the task "It has to be a hash table (like HashMap)"). This implementation uses a mechanism
- * similar to the hash-map implementation: storing balanced trees in an array. But we really don't
- * need to use tables like hash-tables in the case of longs as keys, because the long value is
- * better than the cache value (it uniquely defines the key and no additional calculations are
- * required) and I believe that using trees directly suits this case more especially considering
- * the possible magnitudes of the key values. Therefore, I specifically implemented a balanced tree
- * for our case with longs as keys(please @see LongMapOnBalancedTree in this package) and it is more
- * efficient for storing objects than this class using a kind of hash tables  in terms of speed and
- * as well as in memory use. This class uses it as a storage of objects in each cell of the array,
- * but we can use it directly for the same purposes and this is more efficient.
+ * This is an implementation of LongMap interface as a hash table with open addressing (as specified
+ * in the task "It has to be a hash table (like HashMap)"). Keys and values are kept in two parallel
+ * arrays ({@code long[]} for keys and {@code Object[]} for values), collisions are resolved by
+ * linear probing and removal uses backward-shift deletion, so the table never contains tombstones.
+ * Compared with the former layout (a LongMapOnBalancedTree in every cell of the array) an entry
+ * costs one long and one reference instead of a whole tree node, and a lookup touches neighbouring
+ * cells of the same arrays instead of chasing pointers through the heap.
  *
- * I have also implemented LongMap by array method using nested arrays as an experiment (You can
- * @see this implementation in the package alternative) but during testing it turned out that it is
- * much slower and takes up much more memory than this implementation based on using trees.
+ * The capacity of the table is always a power of two, so a cell is chosen by the bits of the key
+ * hash (see LongHashFunction.index), and the table is doubled as soon as the number of entries
+ * exceeds the load factor part of it.
  *
+ * The key {@code 0} is used as the marker of a free cell, therefore a mapping for the zero key is
+ * stored aside the table in separate fields.
+ *
+ * The parallel bulk operations (parallelForEach, parallelReduce, parallelKeys) split the table
+ * into ranges of cells and process them on the common ForkJoinPool. They must not run concurrently
+ * with a modification of the map.
+ *
+ * The sorted alternative is LongMapOnBalancedTree in this package, the experimental one based on
+ * nested arrays lives in the package alternative. The subclass InstrumentedLongMap collects the
+ * runtime statistics of the table. containsValue scans the whole table, a BiLongMap keeps an index
+ * of the values for the callers which need it often.
  */
 public class LongMapImpl<V> implements LongMap<V> {
     private static final int DEFAULT_TABLE_CAPACITY = 16;
     private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_TABLE_CAPACITY = 1 << 30;
+    private static final long FREE_KEY = 0L;
+    private static final int MIGRATION_STEP = 16;
+    private static final Object MIGRATED = new Object();
+    private static final int PARALLEL_RANGE = 1 << 14;
+    private static final int SPLIT_BLOCK_SHIFT = 10;
 
     private final float loadFactor;
-    private int currentTableCapacity;
-    private int currentBucketNumber;
-    private Object[] dataStorage;
-    private long size;
+    private final int startCapacity;
+    private final boolean incrementalResizing;
+    private final LongHashFunction hashFunction;
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private int tableSize;
+    private int modifications;
+    private boolean hasZeroKey;
+    private Object zeroValue;
+    private long[] oldKeys;
+    private Object[] oldValues;
+    private int oldMask;
+    private int migrationIndex;
 
     public LongMapImpl() {
         this(DEFAULT_TABLE_CAPACITY);
@@ -41,154 +74,873 @@ public class LongMapImpl<V> implements LongMap<V> {
     }
 
     public LongMapImpl(int startCapacity, float loadFactor) {
+        this(startCapacity, loadFactor, false);
+    }
+
+    /**
+     * @param incrementalResizing if true, a grown table is filled from the previous one gradually:
+     *     every modifying operation moves a bounded number of cells, so no single put pays for
+     *     rehashing of the whole map. Until the migration is over, lookups probe both tables.
+     */
+    public LongMapImpl(int startCapacity, float loadFactor, boolean incrementalResizing) {
+        this(startCapacity, loadFactor, incrementalResizing, LongHashFunction.SPREAD);
+    }
+
+    /**
+     * @param hashFunction the function choosing the cell of a key. The default SPREAD one is the
+     *     cheapest; FIBONACCI or MURMUR3 should be used for strided or otherwise regular keys.
+     */
+    public LongMapImpl(int startCapacity, float loadFactor, boolean incrementalResizing,
+                       LongHashFunction hashFunction) {
         this.loadFactor = loadFactor;
-        this.dataStorage = new Object[startCapacity];
-        this.currentTableCapacity = startCapacity;
+        this.incrementalResizing = incrementalResizing;
+        this.hashFunction = Objects.requireNonNull(hashFunction);
+        this.startCapacity = LongKeyTable.calculateTableCapacity(startCapacity, loadFactor);
+        allocateTable(this.startCapacity);
     }
 
     @Override
     public V put(long key, V value) {
-        LongMap<V> nestedTreeMap = getNestedLongTreeMapByKey(key, true);
-        V oldValue = nestedTreeMap.get(key);
-        nestedTreeMap.put(key, value);
-        if (oldValue != null) return oldValue;
-        size++;
-        return value;
+        if (key == FREE_KEY) {
+            V oldValue = (V) zeroValue;
+            zeroValue = value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                modifications++;
+            }
+            return oldValue;
+        }
+        prepareForWriting(key);
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            insertAt(-index - 1, key, value);
+            return null;
+        }
+        V oldValue = (V) values[index];
+        values[index] = value;
+        return oldValue;
     }
 
     @Override
-    public V get(long key) {
-        LongMap<V> nestedTreeMap = getNestedLongTreeMapByKey(key, false);
-        if (nestedTreeMap == null) {
+    public V putIfAbsent(long key, V value) {
+        if (key == FREE_KEY) {
+            V oldValue = (V) zeroValue;
+            if (oldValue == null) {
+                zeroValue = value;
+                if (!hasZeroKey) {
+                    hasZeroKey = true;
+                    modifications++;
+                }
+            }
+            return oldValue;
+        }
+        prepareForWriting(key);
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            insertAt(-index - 1, key, value);
             return null;
         }
-        return nestedTreeMap.get(key);
+        V oldValue = (V) values[index];
+        if (oldValue == null) {
+            values[index] = value;
+        }
+        return oldValue;
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        if (key == FREE_KEY) {
+            V oldValue = (V) zeroValue;
+            if (hasZeroKey) {
+                zeroValue = value;
+            }
+            return oldValue;
+        }
+        prepareForWriting(key);
+        int index = findIndex(key);
+        if (index < 0) return null;
+        V oldValue = (V) values[index];
+        values[index] = value;
+        return oldValue;
+    }
+
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        if (key == FREE_KEY) {
+            if (zeroValue == null) {
+                V newValue = mappingFunction.apply(key);
+                if (newValue != null) {
+                    zeroValue = newValue;
+                    if (!hasZeroKey) {
+                        hasZeroKey = true;
+                        modifications++;
+                    }
+                }
+            }
+            return (V) zeroValue;
+        }
+        prepareForWriting(key);
+        int index = findOrCreateIndex(key);
+        if (index >= 0 && values[index] != null) {
+            return (V) values[index];
+        }
+        int modificationsBefore = modifications;
+        V newValue = mappingFunction.apply(key);
+        if (newValue == null) return null;
+        if (modificationsBefore != modifications) {
+            throw new ConcurrentModificationException();
+        }
+        if (index < 0) {
+            insertAt(-index - 1, key, newValue);
+        } else {
+            values[index] = newValue;
+        }
+        return newValue;
+    }
+
+    @Override
+    public V get(long key) {
+        return (V) lookup(key, null);
+    }
+
+    /**
+     * Looks the key up by a single probe of the tables, so a subclass can tell a missing key from
+     * a key mapped to null without probing once more by containsKey.
+     *
+     * @return the value of the key, or the given absent object if the key is not mapped
+     */
+    Object lookup(long key, Object absent) {
+        if (key == FREE_KEY) {
+            return hasZeroKey ? zeroValue : absent;
+        }
+        if (oldKeys != null) {
+            int oldIndex = findMigratingIndex(key);
+            if (oldIndex >= 0) return oldValues[oldIndex];
+        }
+        int index = findIndex(key);
+        return index < 0 ? absent : values[index];
     }
 
     @Override
     public V remove(long key) {
-        LongMap<V> nestedTreeMap = getNestedLongTreeMapByKey(key, false);
-        V result = nestedTreeMap.remove(key);
-        if (result == null) return null;
-        size--;
-        return result;
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) return null;
+            V oldValue = (V) zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            modifications++;
+            return oldValue;
+        }
+        prepareForWriting(key);
+        int index = findIndex(key);
+        if (index < 0) return null;
+        V oldValue = (V) values[index];
+        shiftKeysBack(index);
+        tableSize--;
+        modifications++;
+        return oldValue;
     }
 
     @Override
     public boolean isEmpty() {
-        return (size == 0);
+        return size() == 0;
     }
 
     @Override
     public boolean containsKey(long key) {
-        LongMap<V> nestedTreeMap = getNestedLongTreeMapByKey(key, false);
-        if (nestedTreeMap == null) return false;
-        return nestedTreeMap.containsKey(key);
+        if (key == FREE_KEY) return hasZeroKey;
+        if (oldKeys != null && findMigratingIndex(key) >= 0) return true;
+        return findIndex(key) >= 0;
     }
 
     @Override
     public boolean containsValue(V value) {
-        return Arrays.stream(dataStorage)
-            .filter(Objects::nonNull)
-            .anyMatch(e -> ((LongMap<V>)e).containsValue(value));
+        completeMigration();
+        if (hasZeroKey && Objects.equals(zeroValue, value)) return true;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY && Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public long[] keys() {
-        return Arrays.stream(dataStorage)
-            .filter(Objects::nonNull)
-            .map(e -> ((LongMap<V>)e))
-            .map(v -> v.keys())
-            .flatMapToLong(k -> Arrays.stream(k))
-            .toArray();
+        completeMigration();
+        long[] result = new long[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = FREE_KEY;
+        }
+        for (long key : keys) {
+            if (key != FREE_KEY) {
+                result[position++] = key;
+            }
+        }
+        return result;
     }
 
     @Override
     public V[] values() {
-        return (V[]) Arrays.stream(dataStorage)
-            .filter(Objects::nonNull)
-            .map(e -> ((LongMap<V>)e)
-                .values()).flatMap(Stream::of).toArray();
+        completeMigration();
+        Object[] result = new Object[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = zeroValue;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                result[position++] = values[i];
+            }
+        }
+        return (V[]) result;
+    }
+
+    /**
+     * Grows the table once for all the new keys before putting them, so a batch never triggers a
+     * chain of resizes.
+     */
+    @Override
+    public void putAll(long[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("The number of keys " + keys.length
+                + " differs from the number of values " + values.length);
+        }
+        ensureCapacity(size() + keys.length);
+        LongMap.super.putAll(keys, values);
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        completeMigration();
+        return new TableCursor();
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        completeMigration();
+        int modificationsBefore = modifications;
+        if (hasZeroKey) {
+            action.accept(FREE_KEY, (V) zeroValue);
+        }
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        for (int i = 0; i < keys.length && modificationsBefore == modifications; i++) {
+            if (keys[i] != FREE_KEY) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+        if (modificationsBefore != modifications) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Performs the action for every mapping in parallel, so the action has to be thread-safe.
+     */
+    public void parallelForEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        completeMigration();
+        int modificationsBefore = modifications;
+        if (hasZeroKey) {
+            action.accept(FREE_KEY, (V) zeroValue);
+        }
+        ForkJoinPool.commonPool().invoke(new ForEachTask<>(keys, values, 0, keys.length, action));
+        if (modificationsBefore != modifications) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Transforms every mapping in parallel and combines the non-null results with the reducer.
+     *
+     * @return the combined result, or null if there are no non-null results
+     */
+    public <R> R parallelReduce(LongObjFunction<? super V, ? extends R> transformer,
+                                BinaryOperator<R> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        completeMigration();
+        int modificationsBefore = modifications;
+        R result = ForkJoinPool.commonPool().invoke(
+            new ReduceTask<V, R>(keys, values, 0, keys.length, transformer, reducer));
+        if (hasZeroKey) {
+            R zeroResult = transformer.apply(FREE_KEY, (V) zeroValue);
+            result = result == null ? zeroResult
+                : zeroResult == null ? result : reducer.apply(zeroResult, result);
+        }
+        if (modificationsBefore != modifications) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+    /**
+     * Transforms every mapping to a long in parallel and combines the results with the reducer
+     * without boxing them, e.g. {@code parallelReduceToLong((key, value) -> 1, 0, Long::sum)}.
+     *
+     * @param identity the neutral element of the reducer
+     */
+    public long parallelReduceToLong(LongObjToLongFunction<? super V> transformer, long identity,
+                                     LongBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        completeMigration();
+        int modificationsBefore = modifications;
+        long result = ForkJoinPool.commonPool().invoke(new ReduceToLongTask<>(
+            keys, values, 0, keys.length, transformer, identity, reducer));
+        if (hasZeroKey) {
+            result = reducer.applyAsLong(transformer.applyAsLong(FREE_KEY, (V) zeroValue), result);
+        }
+        if (modificationsBefore != modifications) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+    /**
+     * The same keys as {@link #keys()} returns, collected in parallel.
+     */
+    public long[] parallelKeys() {
+        return StreamSupport.longStream(keySpliterator(), true).toArray();
+    }
+
+    /**
+     * Returns a spliterator over the keys, {@code StreamSupport.longStream(map.keySpliterator(),
+     * true)} makes a parallel LongStream of them. The spliterator is SIZED and SUBSIZED: it splits
+     * the table at the borders of blocks of cells whose numbers of keys are counted in parallel on
+     * the first split, so every part knows its exact size.
+     */
+    public Spliterator.OfLong keySpliterator() {
+        completeMigration();
+        return new KeySpliterator(0, keys.length, hasZeroKey, size(), null);
     }
 
     @Override
     public long size() {
-        return size;
+        return hasZeroKey ? tableSize + 1L : tableSize;
     }
 
     @Override
     public void clear() {
-        this.currentTableCapacity = DEFAULT_TABLE_CAPACITY;
-        dataStorage = new Object[this.currentTableCapacity];
-        size = 0;
+        oldKeys = null;
+        oldValues = null;
+        allocateTable(startCapacity);
+        tableSize = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+        modifications++;
+    }
+
+    /**
+     * Grows the table, if needed, so that it can hold the expected number of entries without any
+     * further resize.
+     */
+    public void ensureCapacity(long expectedSize) {
+        int capacity = LongKeyTable.calculateTableCapacity(
+            (int) Math.min(expectedSize, MAXIMUM_TABLE_CAPACITY), loadFactor);
+        if (capacity > keys.length) {
+            resizeTable(capacity);
+            completeMigration();
+        }
+    }
+
+    int capacity() {
+        return keys.length;
     }
 
-    private LongMapOnBalancedTree<V> getNestedLongTreeMapByKey(long key, boolean isForInserting) {
-        int index = getIndexByKey(key, isForInserting);
-        return (LongMapOnBalancedTree<V>) dataStorage[index];
+    float loadFactor() {
+        return loadFactor;
     }
 
-    private int getIndexByKey(long key, boolean isToInsert) {
-        int index = calculateIndex(key, this.currentTableCapacity);
-        if (!isToInsert) {
-            return index;
+    /**
+     * Counts the entries by their distance from the cell their hash points to, both the current
+     * table and the one being migrated are scanned, the zero key is counted as not displaced.
+     *
+     * @param buckets the length of the histogram, the last bucket counts all the longer distances
+     */
+    long[] countProbeLengths(int buckets) {
+        long[] histogram = new long[buckets];
+        if (hasZeroKey) {
+            histogram[0]++;
         }
-        boolean hasBeenOptimized = optimizeTable(index);
-        if (hasBeenOptimized) {
-            index = calculateIndex(key, this.currentTableCapacity);
+        countProbeLengths(keys, null, histogram);
+        // the statistics may be read by a JMX thread while the map is modified, so the fields are
+        // read once and a mismatching pair is skipped rather than failing the reader
+        long[] migratingKeys = oldKeys;
+        Object[] migratingValues = oldValues;
+        if (migratingKeys != null && migratingValues != null
+            && migratingKeys.length == migratingValues.length) {
+            countProbeLengths(migratingKeys, migratingValues, histogram);
         }
-        return index;
+        return histogram;
     }
 
-    private boolean optimizeTable(int index) {
-        if (dataStorage[index] == null) {
-            dataStorage[index] = new LongMapOnBalancedTree<>();
-            currentBucketNumber++;
+    private void countProbeLengths(long[] tableKeys, Object[] tableValues, long[] histogram) {
+        int tableMask = tableKeys.length - 1;
+        for (int index = 0; index < tableKeys.length; index++) {
+            long key = tableKeys[index];
+            if (key == FREE_KEY || tableValues != null && tableValues[index] == MIGRATED) continue;
+            int distance = (index - calculateIndex(key, tableMask)) & tableMask;
+            histogram[Math.min(distance, histogram.length - 1)]++;
+        }
+    }
 
-            float currentOccupancy = 1.0f * currentBucketNumber / currentTableCapacity;
-            if (currentOccupancy < loadFactor) {
-                return false;
+    /**
+     * Looks for the key and the cell to insert it in a single pass of the probe sequence.
+     *
+     * @return the index of the key if it is present, otherwise {@code -(index + 1)} where index is
+     *     the free cell where the key has to be inserted
+     */
+    private int findOrCreateIndex(long key) {
+        return LongKeyTable.findOrCreateIndex(keys, mask, hashFunction, key);
+    }
+
+    private void insertAt(int index, long key, V value) {
+        keys[index] = key;
+        values[index] = value;
+        modifications++;
+        if (++tableSize > threshold) {
+            resizeTable(keys.length << 1);
+        }
+    }
+
+    private int findIndex(long key) {
+        return LongKeyTable.findIndex(keys, mask, hashFunction, key);
+    }
+
+    /**
+     * Closes the gap left by a removed entry: every following entry of the same cluster which would
+     * become unreachable from its home cell is moved into the gap.
+     */
+    private void shiftKeysBack(int gap) {
+        int index;
+        while ((index = LongKeyTable.findShiftedCell(keys, mask, hashFunction, gap)) >= 0) {
+            keys[gap] = keys[index];
+            values[gap] = values[index];
+            gap = index;
+        }
+        keys[gap] = FREE_KEY;
+        values[gap] = null;
+    }
+
+    /**
+     * Replaces the table with a new one of the given capacity, the entries are moved at once or,
+     * with incremental resizing, by the following modifications. It is overridden by
+     * InstrumentedLongMap to count the resizes.
+     */
+    void resizeTable(int newCapacity) {
+        if (keys.length >= MAXIMUM_TABLE_CAPACITY) {
+            if (tableSize >= MAXIMUM_TABLE_CAPACITY - 1) {
+                throw new IllegalStateException("LongMapImpl cannot hold more than "
+                    + (MAXIMUM_TABLE_CAPACITY - 1) + " non-zero keys");
             }
+            threshold = MAXIMUM_TABLE_CAPACITY - 2;
+            return;
+        }
+        completeMigration();
+        oldKeys = keys;
+        oldValues = values;
+        oldMask = mask;
+        migrationIndex = 0;
+        allocateTable(newCapacity);
+        if (!incrementalResizing) {
+            completeMigration();
+        }
+    }
 
-            long[] keys = keys();
-            V[] values = values();
+    /**
+     * Moves the key from the table being migrated before it is modified, and migrates the next
+     * portion of cells. Afterwards every write works with the current table only.
+     */
+    private void prepareForWriting(long key) {
+        if (oldKeys == null) return;
+        int oldIndex = findMigratingIndex(key);
+        if (oldIndex >= 0) {
+            migrateCell(oldIndex);
+        }
+        migrateCells(MIGRATION_STEP);
+    }
 
-            this.currentTableCapacity = calculateNewTableCapacity(this.currentTableCapacity);
-            this.dataStorage = new LongMapOnBalancedTree[this.currentTableCapacity];
-            this.size = 0;
-            this.currentBucketNumber = 0;
+    private void completeMigration() {
+        if (oldKeys != null) {
+            migrateCells(oldKeys.length);
+        }
+    }
 
-            fillTableWithOldValuesAfterResizing(keys, values);
+    private void migrateCells(int count) {
+        int end = Math.min(oldKeys.length, migrationIndex + count);
+        for (int i = migrationIndex; i < end; i++) {
+            if (oldKeys[i] != FREE_KEY && oldValues[i] != MIGRATED) {
+                migrateCell(i);
+            }
+        }
+        migrationIndex = end;
+        if (migrationIndex == oldKeys.length) {
+            oldKeys = null;
+            oldValues = null;
+        }
+    }
 
-            return true;
+    /**
+     * Copies the cell of the previous table straight into the current one. The cell itself is only
+     * marked as migrated, so that probe sequences of the previous table stay unbroken.
+     */
+    private void migrateCell(int oldIndex) {
+        long key = oldKeys[oldIndex];
+        int index = LongKeyTable.findFreeCell(keys, mask, hashFunction, key);
+        keys[index] = key;
+        values[index] = oldValues[oldIndex];
+        oldValues[oldIndex] = MIGRATED;
+    }
+
+    private int findMigratingIndex(long key) {
+        int index = LongKeyTable.findIndex(oldKeys, oldMask, hashFunction, key);
+        return index >= 0 && oldValues[index] == MIGRATED ? -1 : index;
+    }
+
+    private void allocateTable(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        // at least one cell always stays free, otherwise probing for a missing key would never end
+        this.threshold = Math.min(capacity - 2, (int) (capacity * loadFactor));
+    }
+
+    private int calculateIndex(long key, int mask) {
+        return hashFunction.index(key, mask);
+    }
+
+    /**
+     * Walks over the cells of the table, the mapping of the zero key comes first. Any insertion or
+     * removal made past the cursor creation fails the cursor, as it moves entries between cells.
+     */
+    private final class TableCursor implements LongMapCursor<V> {
+        private final int expectedModifications = modifications;
+        // -1 stands for the zero key, which is kept aside the table
+        private int index = -2;
+
+        @Override
+        public boolean advance() {
+            checkModifications();
+            if (index == -2) {
+                index = -1;
+                if (hasZeroKey) return true;
+            }
+            while (index < keys.length) {
+                if (++index < keys.length && keys[index] != FREE_KEY) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return index < 0 ? FREE_KEY : keys[index];
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) (index < 0 ? zeroValue : values[index]);
+        }
+
+        private void checkPosition() {
+            checkModifications();
+            if (index == -2 || index >= keys.length) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        private void checkModifications() {
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
         }
-        return false;
     }
 
-    private void fillTableWithOldValuesAfterResizing(long[] keys, V[] values) {
-        for (int i = 0; i < keys.length; i++) {
-            put(keys[i], values[i]);
+    /**
+     * Splits the cells of the table in halves down to ranges of PARALLEL_RANGE cells.
+     */
+    @SuppressWarnings("serial")
+    private static final class ForEachTask<V> extends RecursiveAction {
+        private final long[] keys;
+        private final Object[] values;
+        private final int from;
+        private final int to;
+        private final LongObjConsumer<? super V> action;
+
+        private ForEachTask(long[] keys, Object[] values, int from, int to,
+                            LongObjConsumer<? super V> action) {
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_RANGE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ForEachTask<>(keys, values, from, middle, action),
+                    new ForEachTask<>(keys, values, middle, to, action));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (keys[i] != FREE_KEY) {
+                    action.accept(keys[i], (V) values[i]);
+                }
+            }
         }
     }
 
-    private static int calculateIndex(long key, int currentCapacity) {
-        boolean isPositive = true;
-        if (key < 0) {
-            isPositive = false;
-            key = Math.abs(key);
+    @SuppressWarnings("serial")
+    private static final class ReduceTask<V, R> extends RecursiveTask<R> {
+        private final long[] keys;
+        private final Object[] values;
+        private final int from;
+        private final int to;
+        private final LongObjFunction<? super V, ? extends R> transformer;
+        private final BinaryOperator<R> reducer;
+
+        private ReduceTask(long[] keys, Object[] values, int from, int to,
+                           LongObjFunction<? super V, ? extends R> transformer,
+                           BinaryOperator<R> reducer) {
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.transformer = transformer;
+            this.reducer = reducer;
         }
-        // to account for both positive and negative long-keys
-        int halfCapacity = currentCapacity / 2;
-        int index = (int) (key & (halfCapacity - 1));
-        if (isPositive) {
-            index += currentCapacity / 2;
+
+        @Override
+        protected R compute() {
+            if (to - from > PARALLEL_RANGE) {
+                int middle = (from + to) >>> 1;
+                ReduceTask<V, R> left =
+                    new ReduceTask<>(keys, values, from, middle, transformer, reducer);
+                left.fork();
+                R rightResult =
+                    new ReduceTask<>(keys, values, middle, to, transformer, reducer).compute();
+                R leftResult = left.join();
+                if (leftResult == null) return rightResult;
+                return rightResult == null ? leftResult : reducer.apply(leftResult, rightResult);
+            }
+            R result = null;
+            for (int i = from; i < to; i++) {
+                if (keys[i] != FREE_KEY) {
+                    R currentResult = transformer.apply(keys[i], (V) values[i]);
+                    if (currentResult != null) {
+                        result = result == null
+                            ? currentResult : reducer.apply(result, currentResult);
+                    }
+                }
+            }
+            return result;
         }
-        return index;
     }
 
-    private static int calculateNewTableCapacity(int currentTableCapacity) {
-        int result = currentTableCapacity + (currentTableCapacity >> 1) + 1;
-        if (result < 0) result = Integer.MAX_VALUE;
-        return result;
+    @SuppressWarnings("serial")
+    private static final class ReduceToLongTask<V> extends RecursiveTask<Long> {
+        private final long[] keys;
+        private final Object[] values;
+        private final int from;
+        private final int to;
+        private final LongObjToLongFunction<? super V> transformer;
+        private final long identity;
+        private final LongBinaryOperator reducer;
+
+        private ReduceToLongTask(long[] keys, Object[] values, int from, int to,
+                                 LongObjToLongFunction<? super V> transformer, long identity,
+                                 LongBinaryOperator reducer) {
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.transformer = transformer;
+            this.identity = identity;
+            this.reducer = reducer;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > PARALLEL_RANGE) {
+                int middle = (from + to) >>> 1;
+                ReduceToLongTask<V> left = new ReduceToLongTask<>(
+                    keys, values, from, middle, transformer, identity, reducer);
+                left.fork();
+                long rightResult = new ReduceToLongTask<>(
+                    keys, values, middle, to, transformer, identity, reducer).compute();
+                return reducer.applyAsLong(left.join(), rightResult);
+            }
+            long result = identity;
+            for (int i = from; i < to; i++) {
+                if (keys[i] != FREE_KEY) {
+                    long currentResult = transformer.applyAsLong(keys[i], (V) values[i]);
+                    result = reducer.applyAsLong(result, currentResult);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Stores the number of keys of every block of 2^SPLIT_BLOCK_SHIFT cells from fromBlock to
+     * toBlock into the cell of counts after the one of the block, splitting the blocks in halves
+     * down to ranges of PARALLEL_RANGE cells.
+     */
+    @SuppressWarnings("serial")
+    private static final class BlockCountTask extends RecursiveAction {
+        private final long[] keys;
+        private final int[] counts;
+        private final int fromBlock;
+        private final int toBlock;
+
+        private BlockCountTask(long[] keys, int[] counts, int fromBlock, int toBlock) {
+            this.keys = keys;
+            this.counts = counts;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if ((toBlock - fromBlock) << SPLIT_BLOCK_SHIFT > PARALLEL_RANGE) {
+                int middleBlock = (fromBlock + toBlock) >>> 1;
+                invokeAll(new BlockCountTask(keys, counts, fromBlock, middleBlock),
+                    new BlockCountTask(keys, counts, middleBlock, toBlock));
+                return;
+            }
+            for (int block = fromBlock; block < toBlock; block++) {
+                int count = 0;
+                for (int i = block << SPLIT_BLOCK_SHIFT, end = i + (1 << SPLIT_BLOCK_SHIFT);
+                     i < end; i++) {
+                    if (keys[i] != FREE_KEY) {
+                        count++;
+                    }
+                }
+                counts[block + 1] = count;
+            }
+        }
+    }
+
+    /**
+     * Walks over the cells from index to fence, the zero key comes first. The parts are split at
+     * the borders of blocks of 2^SPLIT_BLOCK_SHIFT cells, blockPrefix[i] being the number of keys
+     * in the blocks before the block i.
+     */
+    private final class KeySpliterator implements Spliterator.OfLong {
+        private final long[] keys = LongMapImpl.this.keys;
+        private final int expectedModifications = modifications;
+        private int[] blockPrefix;
+        private int index;
+        private final int fence;
+        private boolean hasZeroKey;
+        private long remaining;
+
+        private KeySpliterator(int index, int fence, boolean hasZeroKey, long remaining,
+                               int[] blockPrefix) {
+            this.index = index;
+            this.fence = fence;
+            this.hasZeroKey = hasZeroKey;
+            this.remaining = remaining;
+            this.blockPrefix = blockPrefix;
+        }
+
+        @Override
+        public OfLong trySplit() {
+            if ((index & ((1 << SPLIT_BLOCK_SHIFT) - 1)) != 0) return null;
+            int fromBlock = index >>> SPLIT_BLOCK_SHIFT;
+            int toBlock = fence >>> SPLIT_BLOCK_SHIFT;
+            if (toBlock - fromBlock < 2) return null;
+            if (blockPrefix == null) {
+                blockPrefix = countBlockKeys();
+            }
+            int middleBlock = (fromBlock + toBlock) >>> 1;
+            int middle = middleBlock << SPLIT_BLOCK_SHIFT;
+            long prefixRemaining = blockPrefix[middleBlock] - blockPrefix[fromBlock]
+                + (hasZeroKey ? 1 : 0);
+            KeySpliterator prefix =
+                new KeySpliterator(index, middle, hasZeroKey, prefixRemaining, blockPrefix);
+            index = middle;
+            hasZeroKey = false;
+            remaining -= prefixRemaining;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action);
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                remaining--;
+                action.accept(FREE_KEY);
+                return true;
+            }
+            while (index < fence) {
+                long key = keys[index++];
+                if (key != FREE_KEY) {
+                    remaining--;
+                    action.accept(key);
+                    return true;
+                }
+            }
+            checkModifications();
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                action.accept(FREE_KEY);
+            }
+            for (; index < fence; index++) {
+                long key = keys[index];
+                if (key != FREE_KEY) {
+                    action.accept(key);
+                }
+            }
+            remaining = 0;
+            checkModifications();
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | DISTINCT | NONNULL;
+        }
+
+        /**
+         * The blocks are counted in parallel, only the prefix sums over the counts, one per block
+         * of 2^SPLIT_BLOCK_SHIFT cells, are taken serially.
+         */
+        private int[] countBlockKeys() {
+            int[] prefix = new int[(keys.length >>> SPLIT_BLOCK_SHIFT) + 1];
+            ForkJoinPool.commonPool().invoke(
+                new BlockCountTask(keys, prefix, 0, prefix.length - 1));
+            for (int block = 1; block < prefix.length; block++) {
+                prefix[block] += prefix[block - 1];
+            }
+            return prefix;
+        }
+
+        private void checkModifications() {
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
 }
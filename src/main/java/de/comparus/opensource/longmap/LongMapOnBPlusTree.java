@@ -0,0 +1,638 @@
+package de.comparus.opensource.longmap;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * This is a sorted implementation of LongMap as a B+-tree, the cache-conscious alternative of
+ * LongMapOnBalancedTree. The entries are kept in wide leaves: the keys of a leaf are packed into a
+ * {@code long[]} and its values into a parallel {@code Object[]}, and the inner nodes hold only the
+ * separating keys and the children. So a lookup touches a handful of nodes instead of a chain of
+ * tree entries scattered across the heap, and an entry costs about two array cells instead of a
+ * whole entry object.
+ *
+ * A node is searched by binary search narrowed down to a short window, which is then scanned
+ * linearly. The leaves are linked in both directions, so a cursor over a range walks the leaves
+ * one after another without going back to the inner nodes.
+ *
+ * A node is split in halves when it is full and is refilled from a sibling or merged with it when
+ * it gets less than half full, so every node but the root stays at least half full.
+ */
+public class LongMapOnBPlusTree<V> implements NavigableLongMap<V> {
+    private static final int DEFAULT_NODE_CAPACITY = 64;
+    private static final int MINIMUM_NODE_CAPACITY = 4;
+    private static final int LINEAR_SEARCH_WINDOW = 16;
+
+    private final int nodeCapacity;
+    private final int minimumNodeSize;
+    private Node root;
+    private Leaf firstLeaf;
+    private long size;
+    private int modifications;
+    // the inner nodes passed by the last descent and the indexes of the children taken in them
+    private Inner[] pathNodes = new Inner[8];
+    private int[] pathIndexes = new int[8];
+    private int pathLength;
+    private final long[] splitKeys;
+    private final Node[] splitChildren;
+
+    public LongMapOnBPlusTree() {
+        this(DEFAULT_NODE_CAPACITY);
+    }
+
+    /**
+     * @param nodeCapacity the maximum number of keys of a node
+     */
+    public LongMapOnBPlusTree(int nodeCapacity) {
+        if (nodeCapacity < MINIMUM_NODE_CAPACITY) {
+            throw new IllegalArgumentException("Illegal node capacity: " + nodeCapacity);
+        }
+        this.nodeCapacity = nodeCapacity;
+        this.minimumNodeSize = nodeCapacity / 2;
+        this.splitKeys = new long[nodeCapacity + 1];
+        this.splitChildren = new Node[nodeCapacity + 2];
+        this.firstLeaf = new Leaf(nodeCapacity);
+        this.root = firstLeaf;
+    }
+
+    @Override
+    public V put(long key, V value) {
+        Leaf leaf = descend(key);
+        int index = search(leaf.keys, leaf.size, key);
+        if (index >= 0) {
+            V oldValue = (V) leaf.values[index];
+            leaf.values[index] = value;
+            return oldValue;
+        }
+        insertIntoLeaf(leaf, -index - 1, key, value);
+        return null;
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        Leaf leaf = descend(key);
+        int index = search(leaf.keys, leaf.size, key);
+        if (index >= 0) {
+            V oldValue = (V) leaf.values[index];
+            if (oldValue == null) {
+                leaf.values[index] = value;
+            }
+            return oldValue;
+        }
+        insertIntoLeaf(leaf, -index - 1, key, value);
+        return null;
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        Leaf leaf = findLeaf(key);
+        int index = search(leaf.keys, leaf.size, key);
+        if (index < 0) return null;
+        V oldValue = (V) leaf.values[index];
+        leaf.values[index] = value;
+        return oldValue;
+    }
+
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        Leaf leaf = findLeaf(key);
+        int index = search(leaf.keys, leaf.size, key);
+        if (index >= 0 && leaf.values[index] != null) {
+            return (V) leaf.values[index];
+        }
+        int modificationsBefore = modifications;
+        V newValue = mappingFunction.apply(key);
+        if (newValue == null) return null;
+        if (modificationsBefore != modifications) {
+            throw new ConcurrentModificationException();
+        }
+        // the function may have used the path by overwriting another key, so it is taken anew
+        leaf = descend(key);
+        index = search(leaf.keys, leaf.size, key);
+        if (index >= 0) {
+            leaf.values[index] = newValue;
+        } else {
+            insertIntoLeaf(leaf, -index - 1, key, newValue);
+        }
+        return newValue;
+    }
+
+    @Override
+    public V get(long key) {
+        Leaf leaf = findLeaf(key);
+        int index = search(leaf.keys, leaf.size, key);
+        return index < 0 ? null : (V) leaf.values[index];
+    }
+
+    @Override
+    public V remove(long key) {
+        Leaf leaf = descend(key);
+        int index = search(leaf.keys, leaf.size, key);
+        if (index < 0) return null;
+        V oldValue = (V) leaf.values[index];
+        removeFromNode(leaf, index);
+        size--;
+        modifications++;
+        if (leaf != root && leaf.size < minimumNodeSize) {
+            rebalanceLeaf(leaf);
+        }
+        return oldValue;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        Leaf leaf = findLeaf(key);
+        return search(leaf.keys, leaf.size, key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        for (Leaf leaf = firstLeaf; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                if (Objects.equals(value, leaf.values[i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long[] keys() {
+        long[] result = new long[(int) size];
+        int position = 0;
+        for (Leaf leaf = firstLeaf; leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.keys, 0, result, position, leaf.size);
+            position += leaf.size;
+        }
+        return result;
+    }
+
+    @Override
+    public V[] values() {
+        Object[] result = new Object[(int) size];
+        int position = 0;
+        for (Leaf leaf = firstLeaf; leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.values, 0, result, position, leaf.size);
+            position += leaf.size;
+        }
+        return (V[]) result;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        firstLeaf = new Leaf(nodeCapacity);
+        root = firstLeaf;
+        size = 0;
+        modifications++;
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new LeafCursor(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        int modificationsBefore = modifications;
+        for (Leaf leaf = firstLeaf; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                action.accept(leaf.keys[i], (V) leaf.values[i]);
+                if (modificationsBefore != modifications) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    @Override
+    public long firstKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return firstLeaf.keys[0];
+    }
+
+    @Override
+    public long lastKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        Node node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[node.size];
+        }
+        return node.keys[node.size - 1];
+    }
+
+    @Override
+    public long floorKey(long key) {
+        Leaf leaf = findLeaf(key);
+        int index = search(leaf.keys, leaf.size, key);
+        if (index >= 0) return key;
+        int position = -index - 1;
+        if (position > 0) return leaf.keys[position - 1];
+        if (leaf.previous == null) {
+            throw new NoSuchElementException();
+        }
+        return leaf.previous.keys[leaf.previous.size - 1];
+    }
+
+    @Override
+    public long ceilingKey(long key) {
+        Leaf leaf = findLeaf(key);
+        int index = search(leaf.keys, leaf.size, key);
+        if (index >= 0) return key;
+        int position = -index - 1;
+        if (position < leaf.size) return leaf.keys[position];
+        if (leaf.next == null) {
+            throw new NoSuchElementException();
+        }
+        return leaf.next.keys[0];
+    }
+
+    @Override
+    public NavigableLongMap<V> subMap(long fromKey, boolean fromInclusive, long toKey,
+                                      boolean toInclusive) {
+        return new SubMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    /**
+     * @return the index of the key among the first size keys, otherwise {@code -(index + 1)} where
+     *     index is the position the key has to be inserted at
+     */
+    private static int search(long[] keys, int size, long key) {
+        int low = 0;
+        int high = size - 1;
+        while (high - low >= LINEAR_SEARCH_WINDOW) {
+            int middle = (low + high) >>> 1;
+            long middleKey = keys[middle];
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        for (; low <= high; low++) {
+            long currentKey = keys[low];
+            if (currentKey >= key) {
+                return currentKey == key ? low : -low - 1;
+            }
+        }
+        return -low - 1;
+    }
+
+    private static int childIndex(Inner inner, long key) {
+        int index = search(inner.keys, inner.size, key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private Leaf findLeaf(long key) {
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[childIndex(inner, key)];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Finds the leaf of the key the same way findLeaf does, but remembers the path to it, which is
+     * needed to split or to merge the nodes on the way back.
+     */
+    private Leaf descend(long key) {
+        pathLength = 0;
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int index = childIndex(inner, key);
+            if (pathLength == pathNodes.length) {
+                pathNodes = Arrays.copyOf(pathNodes, pathLength << 1);
+                pathIndexes = Arrays.copyOf(pathIndexes, pathLength << 1);
+            }
+            pathNodes[pathLength] = inner;
+            pathIndexes[pathLength++] = index;
+            node = inner.children[index];
+        }
+        return (Leaf) node;
+    }
+
+    private void insertIntoLeaf(Leaf leaf, int position, long key, Object value) {
+        if (leaf.size < nodeCapacity) {
+            insertIntoLeafAt(leaf, position, key, value);
+        } else {
+            Leaf right = new Leaf(nodeCapacity);
+            int leftSize = (nodeCapacity + 1) >>> 1;
+            int rightSize = leaf.size - leftSize;
+            System.arraycopy(leaf.keys, leftSize, right.keys, 0, rightSize);
+            System.arraycopy(leaf.values, leftSize, right.values, 0, rightSize);
+            Arrays.fill(leaf.values, leftSize, leaf.size, null);
+            leaf.size = leftSize;
+            right.size = rightSize;
+            right.next = leaf.next;
+            if (right.next != null) {
+                right.next.previous = right;
+            }
+            right.previous = leaf;
+            leaf.next = right;
+            if (position <= leftSize) {
+                insertIntoLeafAt(leaf, position, key, value);
+            } else {
+                insertIntoLeafAt(right, position - leftSize, key, value);
+            }
+            insertIntoParent(pathLength - 1, right.keys[0], right);
+        }
+        size++;
+        modifications++;
+    }
+
+    private static void insertIntoLeafAt(Leaf leaf, int position, long key, Object value) {
+        int tail = leaf.size - position;
+        System.arraycopy(leaf.keys, position, leaf.keys, position + 1, tail);
+        System.arraycopy(leaf.values, position, leaf.values, position + 1, tail);
+        leaf.keys[position] = key;
+        leaf.values[position] = value;
+        leaf.size++;
+    }
+
+    /**
+     * Inserts the separator and the new right node next to its left neighbour into the inner node
+     * of the path at the given level, splitting the full nodes on the way up.
+     */
+    private void insertIntoParent(int level, long separator, Node right) {
+        while (level >= 0) {
+            Inner parent = pathNodes[level];
+            int index = pathIndexes[level];
+            if (parent.size < nodeCapacity) {
+                int tail = parent.size - index;
+                System.arraycopy(parent.keys, index, parent.keys, index + 1, tail);
+                System.arraycopy(parent.children, index + 1, parent.children, index + 2, tail);
+                parent.keys[index] = separator;
+                parent.children[index + 1] = right;
+                parent.size++;
+                return;
+            }
+            // lay the overfull node out in the split buffers, then deal it out to the halves
+            System.arraycopy(parent.keys, 0, splitKeys, 0, index);
+            splitKeys[index] = separator;
+            System.arraycopy(parent.keys, index, splitKeys, index + 1, nodeCapacity - index);
+            System.arraycopy(parent.children, 0, splitChildren, 0, index + 1);
+            splitChildren[index + 1] = right;
+            System.arraycopy(parent.children, index + 1, splitChildren, index + 2,
+                nodeCapacity - index);
+            int leftSize = (nodeCapacity + 1) >>> 1;
+            Inner newRight = new Inner(nodeCapacity);
+            newRight.size = nodeCapacity - leftSize;
+            System.arraycopy(splitKeys, 0, parent.keys, 0, leftSize);
+            System.arraycopy(splitChildren, 0, parent.children, 0, leftSize + 1);
+            Arrays.fill(parent.children, leftSize + 1, nodeCapacity + 1, null);
+            parent.size = leftSize;
+            System.arraycopy(splitKeys, leftSize + 1, newRight.keys, 0, newRight.size);
+            System.arraycopy(splitChildren, leftSize + 1, newRight.children, 0, newRight.size + 1);
+            Arrays.fill(splitChildren, null);
+            separator = splitKeys[leftSize];
+            right = newRight;
+            level--;
+        }
+        Inner newRoot = new Inner(nodeCapacity);
+        newRoot.keys[0] = separator;
+        newRoot.children[0] = root;
+        newRoot.children[1] = right;
+        newRoot.size = 1;
+        root = newRoot;
+    }
+
+    private static void removeFromNode(Leaf leaf, int index) {
+        int tail = leaf.size - index - 1;
+        System.arraycopy(leaf.keys, index + 1, leaf.keys, index, tail);
+        System.arraycopy(leaf.values, index + 1, leaf.values, index, tail);
+        leaf.values[--leaf.size] = null;
+    }
+
+    /**
+     * Refills the leaf from a sibling of the same parent, or merges the leaf with it if the sibling
+     * has no entries to spare.
+     */
+    private void rebalanceLeaf(Leaf leaf) {
+        int level = pathLength - 1;
+        Inner parent = pathNodes[level];
+        int index = pathIndexes[level];
+        Leaf left = index > 0 ? (Leaf) parent.children[index - 1] : null;
+        Leaf right = index < parent.size ? (Leaf) parent.children[index + 1] : null;
+        if (left != null && left.size > minimumNodeSize) {
+            int last = left.size - 1;
+            insertIntoLeafAt(leaf, 0, left.keys[last], left.values[last]);
+            removeFromNode(left, last);
+            parent.keys[index - 1] = leaf.keys[0];
+        } else if (right != null && right.size > minimumNodeSize) {
+            insertIntoLeafAt(leaf, leaf.size, right.keys[0], right.values[0]);
+            removeFromNode(right, 0);
+            parent.keys[index] = right.keys[0];
+        } else if (left != null) {
+            mergeLeaves(left, leaf);
+            removeFromParent(level, index - 1);
+        } else {
+            mergeLeaves(leaf, right);
+            removeFromParent(level, index);
+        }
+    }
+
+    private static void mergeLeaves(Leaf left, Leaf right) {
+        System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+        System.arraycopy(right.values, 0, left.values, left.size, right.size);
+        left.size += right.size;
+        left.next = right.next;
+        if (left.next != null) {
+            left.next.previous = left;
+        }
+    }
+
+    /**
+     * Removes the key with the given index and the child to the right of it from the inner node of
+     * the path at the given level, and rebalances the inner nodes on the way up.
+     */
+    private void removeFromParent(int level, int keyIndex) {
+        while (true) {
+            Inner node = pathNodes[level];
+            int tail = node.size - keyIndex - 1;
+            System.arraycopy(node.keys, keyIndex + 1, node.keys, keyIndex, tail);
+            System.arraycopy(node.children, keyIndex + 2, node.children, keyIndex + 1, tail);
+            node.children[node.size--] = null;
+            if (level == 0) {
+                if (node.size == 0) {
+                    root = node.children[0];
+                }
+                return;
+            }
+            if (node.size >= minimumNodeSize) {
+                return;
+            }
+            Inner parent = pathNodes[level - 1];
+            int index = pathIndexes[level - 1];
+            Inner left = index > 0 ? (Inner) parent.children[index - 1] : null;
+            Inner right = index < parent.size ? (Inner) parent.children[index + 1] : null;
+            if (left != null && left.size > minimumNodeSize) {
+                System.arraycopy(node.keys, 0, node.keys, 1, node.size);
+                System.arraycopy(node.children, 0, node.children, 1, node.size + 1);
+                node.keys[0] = parent.keys[index - 1];
+                node.children[0] = left.children[left.size];
+                node.size++;
+                parent.keys[index - 1] = left.keys[left.size - 1];
+                left.children[left.size--] = null;
+                return;
+            }
+            if (right != null && right.size > minimumNodeSize) {
+                node.keys[node.size] = parent.keys[index];
+                node.children[node.size + 1] = right.children[0];
+                node.size++;
+                parent.keys[index] = right.keys[0];
+                System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+                System.arraycopy(right.children, 1, right.children, 0, right.size);
+                right.children[right.size--] = null;
+                return;
+            }
+            if (left != null) {
+                mergeInners(left, parent.keys[index - 1], node);
+                keyIndex = index - 1;
+            } else {
+                mergeInners(node, parent.keys[index], right);
+                keyIndex = index;
+            }
+            level--;
+        }
+    }
+
+    private static void mergeInners(Inner left, long separator, Inner right) {
+        left.keys[left.size] = separator;
+        System.arraycopy(right.keys, 0, left.keys, left.size + 1, right.size);
+        System.arraycopy(right.children, 0, left.children, left.size + 1, right.size + 1);
+        left.size += right.size + 1;
+    }
+
+    private abstract static class Node {
+        final long[] keys;
+        int size;
+
+        Node(int capacity) {
+            this.keys = new long[capacity];
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] values;
+        Leaf previous;
+        Leaf next;
+
+        Leaf(int capacity) {
+            super(capacity);
+            this.values = new Object[capacity];
+        }
+    }
+
+    private static final class Inner extends Node {
+        // the child i holds the keys from keys[i - 1] inclusive to keys[i] exclusive
+        final Node[] children;
+
+        Inner(int capacity) {
+            super(capacity);
+            this.children = new Node[capacity + 1];
+        }
+    }
+
+    /**
+     * Walks over the leaves with the keys from lowKey to highKey inclusive.
+     */
+    private final class LeafCursor implements LongMapCursor<V> {
+        private final int expectedModifications = modifications;
+        private final long lowKey;
+        private final long highKey;
+        private Leaf leaf;
+        private int index;
+        private boolean isStarted;
+
+        private LeafCursor(long lowKey, long highKey) {
+            this.lowKey = lowKey;
+            this.highKey = highKey;
+        }
+
+        @Override
+        public boolean advance() {
+            checkModifications();
+            if (!isStarted) {
+                isStarted = true;
+                leaf = findLeaf(lowKey);
+                int position = search(leaf.keys, leaf.size, lowKey);
+                index = position >= 0 ? position : -position - 1;
+            } else if (leaf != null) {
+                index++;
+            }
+            if (leaf != null && index >= leaf.size) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            if (leaf != null && (lowKey > highKey || leaf.keys[index] > highKey)) {
+                leaf = null;
+            }
+            return leaf != null;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return leaf.keys[index];
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) leaf.values[index];
+        }
+
+        private void checkPosition() {
+            checkModifications();
+            if (leaf == null) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        private void checkModifications() {
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private final class SubMap extends NavigableRangeView<V> {
+        private SubMap(long fromKey, boolean fromInclusive, long toKey, boolean toInclusive) {
+            super(LongMapOnBPlusTree.this, fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        @Override
+        NavigableRangeView<V> createView(long fromKey, boolean fromInclusive, long toKey,
+                                         boolean toInclusive) {
+            return new SubMap(fromKey, fromInclusive, toKey, toInclusive);
+        }
+
+        @Override
+        public LongMapCursor<V> cursor() {
+            return new LeafCursor(lowKey, highKey);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package de.comparus.opensource.longmap;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongFunction;
 
 /**
  * This is a balanced tree implementation of a LongMap. There are existing two main implementation
@@ -13,22 +15,70 @@ import java.util.List;
  * (storage of longs as keys) and does not use comparators, preferring natural ordering.
  * Therefore, the method used in this class is the most successful in terms of efficiency and memory
  * usage.
+ *
+ * As the keys are kept sorted, the map is navigable: floor and ceiling lookups and the range views
+ * (see subMap) take one walk down the tree, and a cursor over a range visits only its entries.
  */
-public class LongMapOnBalancedTree<V> implements LongMap<V> {
+public class LongMapOnBalancedTree<V> implements NavigableLongMap<V> {
   private static final boolean BLACK = true;
   private static final boolean RED = false;
 
   private Entry<V> rootEntry;
   private long size = 0;
+  private int modifications;
 
   @Override
   public V put(long key, V value) {
-    if (this.rootEntry == null) {
-      this.rootEntry = new Entry<>(key, value, null);
-      this.size = 1;
+    Entry<V> entry = findEntryOrParent(key);
+    if (entry != null && entry.key == key) {
+      return entry.setValue(value);
+    }
+    attachEntry(entry, key, value);
+    return null;
+  }
+
+  @Override
+  public V putIfAbsent(long key, V value) {
+    Entry<V> entry = findEntryOrParent(key);
+    if (entry != null && entry.key == key) {
+      V oldValue = entry.value;
+      if (oldValue == null) {
+        entry.value = value;
+      }
+      return oldValue;
+    }
+    attachEntry(entry, key, value);
+    return null;
+  }
+
+  @Override
+  public V replace(long key, V value) {
+    Entry<V> entry = getEntry(key);
+    return (entry == null ? null : entry.setValue(value));
+  }
+
+  @Override
+  public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+    Objects.requireNonNull(mappingFunction);
+    Entry<V> entry = findEntryOrParent(key);
+    boolean isPresent = entry != null && entry.key == key;
+    if (isPresent && entry.value != null) {
+      return entry.value;
+    }
+    int modificationsBefore = this.modifications;
+    V newValue = mappingFunction.apply(key);
+    if (newValue == null) {
       return null;
     }
-    return supplementTree(key, value);
+    if (modificationsBefore != this.modifications) {
+      throw new ConcurrentModificationException();
+    }
+    if (isPresent) {
+      entry.value = newValue;
+    } else {
+      attachEntry(entry, key, newValue);
+    }
+    return newValue;
   }
 
   @Override
@@ -58,23 +108,126 @@ public class LongMapOnBalancedTree<V> implements LongMap<V> {
     return getEntry(key) != null;
   }
 
+  /**
+   * Walks over the entries in order by the parent links like the cursor does, so a null value is
+   * looked for as well and no recursion is needed.
+   */
   @Override
   public boolean containsValue(V value) {
-    return containValue(rootEntry, value);
+    for (Entry<V> entry = firstEntry(); entry != null; entry = makeSuccessful(entry)) {
+      if (Objects.equals(value, entry.value)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
   public long[] keys() {
-    List<Long> res = new ArrayList<>((int)size);
-    collectKeys(rootEntry, res);
-    return res.stream().mapToLong(l -> l).toArray();
+    long[] res = new long[(int) size];
+    int position = 0;
+    for (Entry<V> entry = firstEntry(); entry != null; entry = makeSuccessful(entry)) {
+      res[position++] = entry.key;
+    }
+    return res;
   }
 
   @Override
   public V[] values() {
-    List<V> res = new ArrayList<>((int)size);
-    collectValues(rootEntry, res);
-    return new GenericArray<V>(res.toArray()).get();
+    Object[] res = new Object[(int) size];
+    int position = 0;
+    for (Entry<V> entry = firstEntry(); entry != null; entry = makeSuccessful(entry)) {
+      res[position++] = entry.value;
+    }
+    return new GenericArray<V>(res).get();
+  }
+
+  /**
+   * The cursor walks over the entries in the ascending order of the keys, moving from an entry to
+   * its successor by the parent links, so neither a stack nor a recursion is needed.
+   */
+  @Override
+  public LongMapCursor<V> cursor() {
+    return new TreeCursor(Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  @Override
+  public void forEach(LongObjConsumer<? super V> action) {
+    Objects.requireNonNull(action);
+    int modificationsBefore = this.modifications;
+    for (Entry<V> entry = firstEntry(); entry != null; entry = makeSuccessful(entry)) {
+      action.accept(entry.key, entry.value);
+      if (modificationsBefore != this.modifications) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  /**
+   * Keys sorted in the strictly ascending order, which are not fewer than the entries of the map,
+   * are merged with the entries and the tree is rebuilt perfectly balanced in linear time, without
+   * any rotation. Any other batch is put one by one.
+   */
+  @Override
+  public void putAll(long[] keys, V[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("The number of keys " + keys.length
+          + " differs from the number of values " + values.length);
+    }
+    if (keys.length < size || !isStrictlyAscending(keys)) {
+      NavigableLongMap.super.putAll(keys, values);
+      return;
+    }
+    long[] mergedKeys = new long[(int) size + keys.length];
+    Object[] mergedValues = new Object[mergedKeys.length];
+    int mergedSize = 0;
+    int index = 0;
+    for (Entry<V> entry = firstEntry(); entry != null; entry = makeSuccessful(entry)) {
+      while (index < keys.length && keys[index] < entry.key) {
+        mergedKeys[mergedSize] = keys[index];
+        mergedValues[mergedSize++] = values[index++];
+      }
+      mergedKeys[mergedSize] = entry.key;
+      if (index < keys.length && keys[index] == entry.key) {
+        mergedValues[mergedSize++] = values[index++];
+      } else {
+        mergedValues[mergedSize++] = entry.value;
+      }
+    }
+    while (index < keys.length) {
+      mergedKeys[mergedSize] = keys[index];
+      mergedValues[mergedSize++] = values[index++];
+    }
+    this.rootEntry = buildFromSorted(mergedKeys, mergedValues, 0, mergedSize - 1, 0,
+        calculateRedLevel(mergedSize));
+    this.size = mergedSize;
+    this.modifications++;
+  }
+
+  @Override
+  public long firstKey() {
+    return keyOf(firstEntry());
+  }
+
+  @Override
+  public long lastKey() {
+    return keyOf(lastEntry());
+  }
+
+  @Override
+  public long floorKey(long key) {
+    return keyOf(floorEntry(key));
+  }
+
+  @Override
+  public long ceilingKey(long key) {
+    return keyOf(ceilingEntry(key));
+  }
+
+  @Override
+  public NavigableLongMap<V> subMap(long fromKey, boolean fromInclusive, long toKey,
+                                    boolean toInclusive) {
+    return new SubMap(fromKey, fromInclusive, toKey, toInclusive);
   }
 
   @Override
@@ -86,38 +239,52 @@ public class LongMapOnBalancedTree<V> implements LongMap<V> {
   public void clear() {
     this.size = 0;
     this.rootEntry = null;
+    this.modifications++;
+  }
+
+  Entry<V> rootEntry() {
+    return rootEntry;
   }
 
-  private V supplementTree(long key, V value) {
+  /**
+   * Walks down the tree once and returns either the entry holding the key or the entry which has to
+   * become the parent of a new entry with this key (null for an empty tree).
+   */
+  private Entry<V> findEntryOrParent(long key) {
     Entry<V> currentEntry = this.rootEntry;
-    long compare;
-    Entry<V> parentEntry;
-    do {
+    Entry<V> parentEntry = null;
+    while (currentEntry != null) {
       parentEntry = currentEntry;
-      compare = key - currentEntry.key;
+      int compare = Long.compare(key, currentEntry.key);
       if (compare < 0) {
         currentEntry = currentEntry.leftChild;
       } else if (compare > 0) {
         currentEntry = currentEntry.rightChild;
       } else {
-        return currentEntry.setValue(value);
+        return currentEntry;
       }
-    } while (currentEntry != null);
+    }
+    return parentEntry;
+  }
+
+  private void attachEntry(Entry<V> parentEntry, long key, V value) {
     Entry<V> entry = new Entry<>(key, value, parentEntry);
-    if (compare < 0) {
+    if (parentEntry == null) {
+      this.rootEntry = entry;
+    } else if (key < parentEntry.key) {
       parentEntry.leftChild = entry;
     } else {
       parentEntry.rightChild = entry;
     }
     makeCorrectTreeAfterInsertion(entry);
     this.size++;
-    return value;
+    this.modifications++;
   }
 
   private Entry<V> getEntry(long key) {
     Entry<V> entry = rootEntry;
     while (entry != null) {
-      long compare = key - entry.key;
+      int compare = Long.compare(key, entry.key);
       if (compare < 0) {
         entry = entry.leftChild;
       } else if (compare > 0) {
@@ -131,6 +298,7 @@ public class LongMapOnBalancedTree<V> implements LongMap<V> {
 
   private void deleteEntry(Entry<V> entry) {
     this.size--;
+    this.modifications++;
     if (entry.leftChild != null && entry.rightChild != null) {
       Entry<V> success = makeSuccessful(entry);
       entry.key = success.key;
@@ -174,7 +342,7 @@ public class LongMapOnBalancedTree<V> implements LongMap<V> {
     while (entry != null && entry != rootEntry && !entry.parent.isBlack) {
       if (parentOf(entry) == leftOf(parentOf(parentOf(entry)))) {
         Entry<V> currentEntry = rightOf(parentOf(parentOf(entry)));
-        if (!colorOf(entry)) {
+        if (!colorOf(currentEntry)) {
           setColor(parentOf(entry), BLACK);
           setColor(currentEntry, BLACK);
           setColor(parentOf(parentOf(entry)), RED);
@@ -323,38 +491,111 @@ public class LongMapOnBalancedTree<V> implements LongMap<V> {
     }
   }
 
-  private void collectValues(Entry<V> entry, List<V> values) {
+  private Entry<V> firstEntry() {
+    Entry<V> entry = rootEntry;
     if (entry != null) {
-      values.add(entry.value);
-      if (entry.leftChild != null) {
-        collectValues(entry.leftChild, values);
+      while (entry.leftChild != null) {
+        entry = entry.leftChild;
       }
-      if (entry.rightChild != null) {
-        collectValues(entry.rightChild, values);
+    }
+    return entry;
+  }
+
+  private static boolean isStrictlyAscending(long[] keys) {
+    for (int i = 1; i < keys.length; i++) {
+      if (keys[i - 1] >= keys[i]) {
+        return false;
       }
     }
+    return true;
+  }
+
+  /**
+   * Builds the subtree of the keys from the low to the high index around the middle one. All the
+   * levels but the deepest are full, so the entries are black except for the deepest level, which
+   * is red when it is not full.
+   */
+  private Entry<V> buildFromSorted(long[] keys, Object[] values, int low, int high, int level,
+                                   int redLevel) {
+    if (low > high) {
+      return null;
+    }
+    int middle = (low + high) >>> 1;
+    Entry<V> entry = new Entry<>(keys[middle], (V) values[middle], null);
+    entry.leftChild = buildFromSorted(keys, values, low, middle - 1, level + 1, redLevel);
+    entry.rightChild = buildFromSorted(keys, values, middle + 1, high, level + 1, redLevel);
+    if (entry.leftChild != null) {
+      entry.leftChild.parent = entry;
+    }
+    if (entry.rightChild != null) {
+      entry.rightChild.parent = entry;
+    }
+    if (level == redLevel) {
+      entry.isBlack = false;
+    }
+    return entry;
+  }
+
+  /**
+   * @return the level of the deepest entries of a perfectly balanced tree of the given size
+   */
+  private static int calculateRedLevel(int size) {
+    return 31 - Integer.numberOfLeadingZeros(size + 1);
   }
 
-  private void collectKeys(Entry<V> entry, List<Long> keys) {
+  private Entry<V> lastEntry() {
+    Entry<V> entry = rootEntry;
     if (entry != null) {
-      keys.add(entry.key);
-      if (entry.leftChild != null) {
-        collectKeys(entry.leftChild, keys);
+      while (entry.rightChild != null) {
+        entry = entry.rightChild;
       }
-      if (entry.rightChild != null) {
-        collectKeys(entry.rightChild, keys);
+    }
+    return entry;
+  }
+
+  /**
+   * @return the entry with the greatest key less than or equal to the given one, or null
+   */
+  private Entry<V> floorEntry(long key) {
+    Entry<V> entry = rootEntry;
+    Entry<V> floorEntry = null;
+    while (entry != null) {
+      if (key < entry.key) {
+        entry = entry.leftChild;
+      } else if (key > entry.key) {
+        floorEntry = entry;
+        entry = entry.rightChild;
+      } else {
+        return entry;
       }
     }
+    return floorEntry;
   }
 
-  private boolean containValue(Entry<V> entry, V value) {
-    if (entry != null) {
-      if (value == entry.value || value.equals(entry.value)) {
-        return true;
+  /**
+   * @return the entry with the least key greater than or equal to the given one, or null
+   */
+  private Entry<V> ceilingEntry(long key) {
+    Entry<V> entry = rootEntry;
+    Entry<V> ceilingEntry = null;
+    while (entry != null) {
+      if (key < entry.key) {
+        ceilingEntry = entry;
+        entry = entry.leftChild;
+      } else if (key > entry.key) {
+        entry = entry.rightChild;
+      } else {
+        return entry;
       }
-      return containValue(entry.leftChild, value) || containValue(entry.rightChild, value);
     }
-    return false;
+    return ceilingEntry;
+  }
+
+  private static long keyOf(Entry<?> entry) {
+    if (entry == null) {
+      throw new NoSuchElementException();
+    }
+    return entry.key;
   }
 
   private static <V> Entry<V> makeSuccessful(Entry<V> entry) {
@@ -376,6 +617,78 @@ public class LongMapOnBalancedTree<V> implements LongMap<V> {
     }
   }
 
+  /**
+   * Walks over the entries with the keys from lowKey to highKey inclusive.
+   */
+  private final class TreeCursor implements LongMapCursor<V> {
+    private final int expectedModifications = modifications;
+    private final long lowKey;
+    private final long highKey;
+    private Entry<V> currentEntry;
+    private boolean isStarted;
+
+    private TreeCursor(long lowKey, long highKey) {
+      this.lowKey = lowKey;
+      this.highKey = highKey;
+    }
+
+    @Override
+    public boolean advance() {
+      checkModifications();
+      if (!isStarted) {
+        isStarted = true;
+        currentEntry = lowKey == Long.MIN_VALUE ? firstEntry() : ceilingEntry(lowKey);
+      } else if (currentEntry != null) {
+        currentEntry = makeSuccessful(currentEntry);
+      }
+      if (currentEntry != null && currentEntry.key > highKey) {
+        currentEntry = null;
+      }
+      return currentEntry != null;
+    }
+
+    @Override
+    public long key() {
+      return currentEntry().key;
+    }
+
+    @Override
+    public V value() {
+      return currentEntry().value;
+    }
+
+    private Entry<V> currentEntry() {
+      checkModifications();
+      if (currentEntry == null) {
+        throw new NoSuchElementException();
+      }
+      return currentEntry;
+    }
+
+    private void checkModifications() {
+      if (expectedModifications != modifications) {
+        throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  private final class SubMap extends NavigableRangeView<V> {
+    private SubMap(long fromKey, boolean fromInclusive, long toKey, boolean toInclusive) {
+      super(LongMapOnBalancedTree.this, fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    NavigableRangeView<V> createView(long fromKey, boolean fromInclusive, long toKey,
+                                     boolean toInclusive) {
+      return new SubMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+      return new TreeCursor(lowKey, highKey);
+    }
+  }
+
   public static class Entry<V> {
 
     long key;
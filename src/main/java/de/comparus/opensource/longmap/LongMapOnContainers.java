@@ -0,0 +1,489 @@
+package de.comparus.opensource.longmap;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * This is a sorted implementation of LongMap which compresses the keys the way Roaring bitmaps
+ * do, it is meant for dense or clustered keys such as database IDs. A key is split into its high
+ * 48 bits, which select a container, and its low 16 bits, which are stored inside the container.
+ * The containers are kept in a sorted array and are found by binary search, the last found one is
+ * checked first, so the sequential keys do not search at all.
+ *
+ * A container holding a few keys keeps their low bits in a sorted {@code char[]}, 2 bytes per key.
+ * Once it gets more than {@value #ARRAY_CONTAINER_MAX_SIZE} keys it is turned into a bitmap of all
+ * the 65536 low values, 8 KB whatever the number of keys, with the ranks of every 512 bits
+ * counted in advance. In both cases the values are packed into an {@code Object[]} in the order
+ * of the keys, so a value is found by the rank of its key. A bitmap container gets back to the
+ * array form when it is left with a half of that limit, an empty container is dropped.
+ *
+ * An insertion or a removal in the middle of a container shifts its values, so random updates of a
+ * dense container cost up to its size, while appending the growing IDs costs a constant.
+ */
+public class LongMapOnContainers<V> implements LongMap<V> {
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+    private static final int LOW_BITS = 16;
+    private static final int LOW_MASK = (1 << LOW_BITS) - 1;
+    private static final int DEFAULT_CONTAINERS_CAPACITY = 4;
+
+    private long[] highKeys = new long[DEFAULT_CONTAINERS_CAPACITY];
+    private Container[] containers = new Container[DEFAULT_CONTAINERS_CAPACITY];
+    private int containerCount;
+    private int lastContainerIndex;
+    private long size;
+    private int modifications;
+
+    @Override
+    public V put(long key, V value) {
+        long high = key >> LOW_BITS;
+        int low = (int) key & LOW_MASK;
+        int containerIndex = findContainer(high);
+        if (containerIndex < 0) {
+            containerIndex = -containerIndex - 1;
+            insertContainer(containerIndex, high, new ArrayContainer());
+        }
+        Container container = containers[containerIndex];
+        int index = container.indexOf(low);
+        if (index >= 0) {
+            V oldValue = (V) container.values[index];
+            container.values[index] = value;
+            return oldValue;
+        }
+        containers[containerIndex] = container.insert(-index - 1, low, value);
+        size++;
+        modifications++;
+        return null;
+    }
+
+    @Override
+    public V get(long key) {
+        int containerIndex = findContainer(key >> LOW_BITS);
+        if (containerIndex < 0) return null;
+        Container container = containers[containerIndex];
+        int index = container.indexOf((int) key & LOW_MASK);
+        return index < 0 ? null : (V) container.values[index];
+    }
+
+    @Override
+    public V remove(long key) {
+        int containerIndex = findContainer(key >> LOW_BITS);
+        if (containerIndex < 0) return null;
+        Container container = containers[containerIndex];
+        int low = (int) key & LOW_MASK;
+        int index = container.indexOf(low);
+        if (index < 0) return null;
+        V oldValue = (V) container.values[index];
+        if (container.size == 1) {
+            removeContainer(containerIndex);
+        } else {
+            containers[containerIndex] = container.remove(index, low);
+        }
+        size--;
+        modifications++;
+        return oldValue;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        int containerIndex = findContainer(key >> LOW_BITS);
+        return containerIndex >= 0
+            && containers[containerIndex].indexOf((int) key & LOW_MASK) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        for (int i = 0; i < containerCount; i++) {
+            Container container = containers[i];
+            for (int index = 0; index < container.size; index++) {
+                if (Objects.equals(value, container.values[index])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long[] keys() {
+        long[] result = new long[(int) size];
+        int position = 0;
+        for (int i = 0; i < containerCount; i++) {
+            position = containers[i].copyKeys(highKeys[i] << LOW_BITS, result, position);
+        }
+        return result;
+    }
+
+    @Override
+    public V[] values() {
+        Object[] result = new Object[(int) size];
+        int position = 0;
+        for (int i = 0; i < containerCount; i++) {
+            Container container = containers[i];
+            System.arraycopy(container.values, 0, result, position, container.size);
+            position += container.size;
+        }
+        return (V[]) result;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        highKeys = new long[DEFAULT_CONTAINERS_CAPACITY];
+        containers = new Container[DEFAULT_CONTAINERS_CAPACITY];
+        containerCount = 0;
+        lastContainerIndex = 0;
+        size = 0;
+        modifications++;
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new ContainerCursor();
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    /**
+     * @return the number of containers, which shows how well the keys are clustered
+     */
+    public int containerCount() {
+        return containerCount;
+    }
+
+    /**
+     * @return the index of the container of the high bits if it is present, otherwise
+     * {@code -(index + 1)} where index is the position to insert it at
+     */
+    private int findContainer(long high) {
+        int last = lastContainerIndex;
+        if (last < containerCount && highKeys[last] == high) {
+            return last;
+        }
+        int index = Arrays.binarySearch(highKeys, 0, containerCount, high);
+        if (index >= 0) {
+            lastContainerIndex = index;
+        }
+        return index;
+    }
+
+    private void insertContainer(int index, long high, Container container) {
+        if (containerCount == containers.length) {
+            int capacity = containerCount + (containerCount >> 1);
+            highKeys = Arrays.copyOf(highKeys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(highKeys, index, highKeys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        highKeys[index] = high;
+        containers[index] = container;
+        containerCount++;
+        lastContainerIndex = index;
+    }
+
+    private void removeContainer(int index) {
+        containerCount--;
+        System.arraycopy(highKeys, index + 1, highKeys, index, containerCount - index);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index);
+        containers[containerCount] = null;
+        lastContainerIndex = 0;
+    }
+
+    /**
+     * The low 16 bits of the keys sharing the same high bits with their values, which are packed
+     * in the order of the keys.
+     */
+    private abstract static class Container {
+        Object[] values;
+        int size;
+
+        Container(int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        /**
+         * @return the rank of the low bits if they are present, otherwise {@code -(rank + 1)}
+         * where rank is the position of the value to insert
+         */
+        abstract int indexOf(int low);
+
+        /**
+         * Adds the absent low bits with the value at the given rank.
+         *
+         * @return this container or the one it was converted to
+         */
+        abstract Container insert(int index, int low, Object value);
+
+        /**
+         * Removes the present low bits and their value at the given rank.
+         *
+         * @return this container or the one it was converted to
+         */
+        abstract Container remove(int index, int low);
+
+        /**
+         * @return the low bits of the key with the given rank, the low bits of the previous key
+         * are given as a hint, {@code -1} for the first key
+         */
+        abstract int lowAt(int index, int previousLow);
+
+        /**
+         * Puts all the keys of the container to the target.
+         *
+         * @return the position after the last put key
+         */
+        abstract int copyKeys(long highPart, long[] target, int position);
+
+        void insertValue(int index, Object value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+        }
+
+        void removeValue(int index) {
+            size--;
+            System.arraycopy(values, index + 1, values, index, size - index);
+            values[size] = null;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] lows;
+
+        ArrayContainer() {
+            this(4);
+        }
+
+        ArrayContainer(int capacity) {
+            super(capacity);
+            this.lows = new char[capacity];
+        }
+
+        @Override
+        int indexOf(int low) {
+            int from = 0;
+            int to = size - 1;
+            // the growing keys are appended, so the last key is checked first
+            if (size > 0 && lows[to] < low) {
+                return -(size + 1);
+            }
+            while (from <= to) {
+                int middle = (from + to) >>> 1;
+                int middleLow = lows[middle];
+                if (middleLow < low) {
+                    from = middle + 1;
+                } else if (middleLow > low) {
+                    to = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(from + 1);
+        }
+
+        @Override
+        Container insert(int index, int low, Object value) {
+            if (size == ARRAY_CONTAINER_MAX_SIZE) {
+                return new BitmapContainer(this).insert(index, low, value);
+            }
+            if (size == lows.length) {
+                lows = Arrays.copyOf(lows, Math.max(4, size + (size >> 1)));
+            }
+            System.arraycopy(lows, index, lows, index + 1, size - index);
+            lows[index] = (char) low;
+            insertValue(index, value);
+            return this;
+        }
+
+        @Override
+        Container remove(int index, int low) {
+            System.arraycopy(lows, index + 1, lows, index, size - index - 1);
+            removeValue(index);
+            return this;
+        }
+
+        @Override
+        int lowAt(int index, int previousLow) {
+            return lows[index];
+        }
+
+        @Override
+        int copyKeys(long highPart, long[] target, int position) {
+            for (int i = 0; i < size; i++) {
+                target[position++] = highPart | lows[i];
+            }
+            return position;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private static final int WORDS = (LOW_MASK + 1) / Long.SIZE;
+        private static final int WORDS_PER_BLOCK = 8;
+
+        private final long[] words = new long[WORDS];
+        // the number of keys before every block of words
+        private final int[] blockRanks = new int[WORDS / WORDS_PER_BLOCK];
+
+        private BitmapContainer(ArrayContainer source) {
+            super(source.size + (source.size >> 1));
+            for (int i = 0; i < source.size; i++) {
+                int low = source.lows[i];
+                words[low >>> 6] |= 1L << low;
+            }
+            System.arraycopy(source.values, 0, values, 0, source.size);
+            size = source.size;
+            countBlockRanks();
+        }
+
+        @Override
+        int indexOf(int low) {
+            int word = low >>> 6;
+            int block = word / WORDS_PER_BLOCK;
+            int rank = blockRanks[block];
+            for (int i = block * WORDS_PER_BLOCK; i < word; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            rank += Long.bitCount(words[word] & ((1L << low) - 1));
+            return (words[word] & (1L << low)) != 0 ? rank : -(rank + 1);
+        }
+
+        @Override
+        Container insert(int index, int low, Object value) {
+            words[low >>> 6] |= 1L << low;
+            for (int block = low / (WORDS_PER_BLOCK * Long.SIZE) + 1; block < blockRanks.length;
+                 block++) {
+                blockRanks[block]++;
+            }
+            insertValue(index, value);
+            return this;
+        }
+
+        @Override
+        Container remove(int index, int low) {
+            words[low >>> 6] &= ~(1L << low);
+            for (int block = low / (WORDS_PER_BLOCK * Long.SIZE) + 1; block < blockRanks.length;
+                 block++) {
+                blockRanks[block]--;
+            }
+            removeValue(index);
+            return size > ARRAY_CONTAINER_MAX_SIZE / 2 ? this : toArrayContainer();
+        }
+
+        @Override
+        int lowAt(int index, int previousLow) {
+            int from = previousLow + 1;
+            int word = from >>> 6;
+            long bits = words[word] & (-1L << from);
+            while (bits == 0) {
+                bits = words[++word];
+            }
+            return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        }
+
+        @Override
+        int copyKeys(long highPart, long[] target, int position) {
+            for (int word = 0; word < WORDS; word++) {
+                long bits = words[word];
+                while (bits != 0) {
+                    target[position++] = highPart | (word * Long.SIZE
+                        + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return position;
+        }
+
+        private void countBlockRanks() {
+            int rank = 0;
+            for (int block = 0; block < blockRanks.length; block++) {
+                blockRanks[block] = rank;
+                for (int i = block * WORDS_PER_BLOCK; i < (block + 1) * WORDS_PER_BLOCK; i++) {
+                    rank += Long.bitCount(words[i]);
+                }
+            }
+        }
+
+        private ArrayContainer toArrayContainer() {
+            ArrayContainer result = new ArrayContainer(size + (size >> 1));
+            int low = -1;
+            for (int i = 0; i < size; i++) {
+                low = lowAt(i, low);
+                result.lows[i] = (char) low;
+            }
+            System.arraycopy(values, 0, result.values, 0, size);
+            result.size = size;
+            return result;
+        }
+    }
+
+    /**
+     * Walks over the containers in the order of their high bits and over their keys in the order
+     * of the low bits.
+     */
+    private final class ContainerCursor implements LongMapCursor<V> {
+        private final int expectedModifications = modifications;
+        private int containerIndex;
+        private int index = -1;
+        private int low = -1;
+
+        @Override
+        public boolean advance() {
+            checkModifications();
+            if (containerIndex >= containerCount) return false;
+            index++;
+            if (index >= containers[containerIndex].size) {
+                containerIndex++;
+                index = 0;
+                low = -1;
+                if (containerIndex >= containerCount) return false;
+            }
+            low = containers[containerIndex].lowAt(index, low);
+            return true;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return highKeys[containerIndex] << LOW_BITS | low;
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) containers[containerIndex].values[index];
+        }
+
+        private void checkPosition() {
+            checkModifications();
+            if (index < 0 || containerIndex >= containerCount) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        private void checkModifications() {
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package de.comparus.opensource.longmap;
+
+import java.util.Arrays;
+
+/**
+ * The statistics of an InstrumentedLongMap taken at a moment, see
+ * {@link InstrumentedLongMap#stats()}. The probe lengths show how well the hash function spreads
+ * the keys: in a healthy table most of the entries are in their own cell or next to it, a long
+ * tail means clustered keys and calls for another LongHashFunction.
+ */
+public final class LongMapStats implements LongMapStatsMXBean {
+    private final long size;
+    private final int capacity;
+    private final float loadFactor;
+    private final long[] probeLengthHistogram;
+    private final long resizeCount;
+    private final long resizeTimeNanos;
+    private final long getHits;
+    private final long getMisses;
+    private final long containsKeyHits;
+    private final long containsKeyMisses;
+
+    LongMapStats(long size, int capacity, float loadFactor, long[] probeLengthHistogram,
+                 long resizeCount, long resizeTimeNanos, long getHits, long getMisses,
+                 long containsKeyHits, long containsKeyMisses) {
+        this.size = size;
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        this.probeLengthHistogram = probeLengthHistogram;
+        this.resizeCount = resizeCount;
+        this.resizeTimeNanos = resizeTimeNanos;
+        this.getHits = getHits;
+        this.getMisses = getMisses;
+        this.containsKeyHits = containsKeyHits;
+        this.containsKeyMisses = containsKeyMisses;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public float getLoadFactor() {
+        return loadFactor;
+    }
+
+    @Override
+    public double getFillRatio() {
+        return (double) size / capacity;
+    }
+
+    @Override
+    public long[] getProbeLengthHistogram() {
+        return probeLengthHistogram.clone();
+    }
+
+    /**
+     * @return the longest distance of an entry from its cell, the distances which do not fit into
+     * the histogram are counted as its last index
+     */
+    @Override
+    public int getMaxProbeLength() {
+        for (int length = probeLengthHistogram.length - 1; length > 0; length--) {
+            if (probeLengthHistogram[length] != 0) return length;
+        }
+        return 0;
+    }
+
+    @Override
+    public double getAverageProbeLength() {
+        long entries = 0;
+        long totalLength = 0;
+        for (int length = 0; length < probeLengthHistogram.length; length++) {
+            entries += probeLengthHistogram[length];
+            totalLength += length * probeLengthHistogram[length];
+        }
+        return entries == 0 ? 0 : (double) totalLength / entries;
+    }
+
+    @Override
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    @Override
+    public long getResizeTimeNanos() {
+        return resizeTimeNanos;
+    }
+
+    @Override
+    public long getGetHits() {
+        return getHits;
+    }
+
+    @Override
+    public long getGetMisses() {
+        return getMisses;
+    }
+
+    @Override
+    public long getContainsKeyHits() {
+        return containsKeyHits;
+    }
+
+    @Override
+    public long getContainsKeyMisses() {
+        return containsKeyMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "LongMapStats{size=" + size + ", capacity=" + capacity + ", loadFactor=" + loadFactor
+            + ", probeLengthHistogram=" + Arrays.toString(probeLengthHistogram)
+            + ", resizeCount=" + resizeCount + ", resizeTimeNanos=" + resizeTimeNanos
+            + ", getHits=" + getHits + ", getMisses=" + getMisses
+            + ", containsKeyHits=" + containsKeyHits + ", containsKeyMisses=" + containsKeyMisses
+            + '}';
+    }
+}
@@ -0,0 +1,51 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * The management interface of the statistics of an InstrumentedLongMap, see
+ * {@link InstrumentedLongMap#registerMBean(String)}.
+ */
+public interface LongMapStatsMXBean {
+
+    long getSize();
+
+    /**
+     * @return the number of cells of the table
+     */
+    int getCapacity();
+
+    /**
+     * @return the load factor the table grows at
+     */
+    float getLoadFactor();
+
+    /**
+     * @return the number of entries divided by the capacity
+     */
+    double getFillRatio();
+
+    /**
+     * @return the numbers of entries by their distance from the cell their hash points to, the
+     * last element counts all the entries displaced by its index or more
+     */
+    long[] getProbeLengthHistogram();
+
+    int getMaxProbeLength();
+
+    double getAverageProbeLength();
+
+    long getResizeCount();
+
+    /**
+     * @return the total time spent in resizes, the gradual migration of an incrementally resized
+     * table is not included
+     */
+    long getResizeTimeNanos();
+
+    long getGetHits();
+
+    long getGetMisses();
+
+    long getContainsKeyHits();
+
+    long getContainsKeyMisses();
+}
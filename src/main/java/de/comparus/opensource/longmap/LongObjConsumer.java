@@ -0,0 +1,9 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * An operation on a mapping of a LongMap, which takes the key unboxed.
+ */
+@FunctionalInterface
+public interface LongObjConsumer<V> {
+    void accept(long key, V value);
+}
@@ -0,0 +1,9 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * A function of a mapping of a LongMap, which takes the key unboxed.
+ */
+@FunctionalInterface
+public interface LongObjFunction<V, R> {
+    R apply(long key, V value);
+}
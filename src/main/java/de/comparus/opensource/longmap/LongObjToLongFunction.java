@@ -0,0 +1,9 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * A function of a mapping of a LongMap, which takes the key unboxed and produces a long.
+ */
+@FunctionalInterface
+public interface LongObjToLongFunction<V> {
+    long applyAsLong(long key, V value);
+}
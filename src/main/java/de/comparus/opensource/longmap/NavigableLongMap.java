@@ -0,0 +1,82 @@
+package de.comparus.opensource.longmap;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A LongMap keeping its keys in the ascending order. The navigation methods take and return
+ * primitive keys, a missing key is reported by NoSuchElementException.
+ *
+ * The sub-map views are backed by this map: changes of the map are seen in a view and vice versa.
+ * A view rejects putting a key outside of its range with IllegalArgumentException, while lookups
+ * and removals of such keys just find nothing.
+ */
+public interface NavigableLongMap<V> extends LongMap<V> {
+    /**
+     * @throws NoSuchElementException if the map is empty
+     */
+    long firstKey();
+
+    /**
+     * @throws NoSuchElementException if the map is empty
+     */
+    long lastKey();
+
+    /**
+     * @return the greatest key less than or equal to the given one
+     * @throws NoSuchElementException if there is no such key
+     */
+    long floorKey(long key);
+
+    /**
+     * @return the least key greater than or equal to the given one
+     * @throws NoSuchElementException if there is no such key
+     */
+    long ceilingKey(long key);
+
+    /**
+     * Returns a view of the mappings with the keys from fromKey to toKey, its cursor walks over
+     * the range only.
+     *
+     * @throws IllegalArgumentException if fromKey is greater than toKey, or if a bound lies outside
+     *     of the range of this map when this map is a view itself
+     */
+    NavigableLongMap<V> subMap(long fromKey, boolean fromInclusive, long toKey,
+                               boolean toInclusive);
+
+    /**
+     * @return the greatest key strictly less than the given one
+     * @throws NoSuchElementException if there is no such key
+     */
+    default long lowerKey(long key) {
+        if (key == Long.MIN_VALUE) {
+            throw new NoSuchElementException();
+        }
+        return floorKey(key - 1);
+    }
+
+    /**
+     * @return the least key strictly greater than the given one
+     * @throws NoSuchElementException if there is no such key
+     */
+    default long higherKey(long key) {
+        if (key == Long.MAX_VALUE) {
+            throw new NoSuchElementException();
+        }
+        return ceilingKey(key + 1);
+    }
+
+    /**
+     * The same as {@code subMap(fromKey, true, toKey, false)}.
+     */
+    default NavigableLongMap<V> subMap(long fromKey, long toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    default NavigableLongMap<V> headMap(long toKey, boolean inclusive) {
+        return subMap(Long.MIN_VALUE, true, toKey, inclusive);
+    }
+
+    default NavigableLongMap<V> tailMap(long fromKey, boolean inclusive) {
+        return subMap(fromKey, inclusive, Long.MAX_VALUE, true);
+    }
+}
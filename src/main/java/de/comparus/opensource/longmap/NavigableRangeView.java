@@ -0,0 +1,200 @@
+package de.comparus.opensource.longmap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * A view of the mappings of a NavigableLongMap with the keys from lowKey to highKey inclusive, the
+ * base of the sub-maps of the sorted maps of this package. A subclass only provides a cursor over
+ * the range; everything else is done by the navigation methods of the backing map. An empty range
+ * is kept as lowKey greater than highKey. The size of a view is not tracked, it is counted on
+ * demand, so keys and values collect the range in a single walk into growing arrays instead.
+ */
+abstract class NavigableRangeView<V> implements NavigableLongMap<V> {
+    private static final int INITIAL_RESULT_LENGTH = 16;
+
+    final long lowKey;
+    final long highKey;
+    private final NavigableLongMap<V> map;
+
+    NavigableRangeView(NavigableLongMap<V> map, long fromKey, boolean fromInclusive, long toKey,
+                       boolean toInclusive) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        this.map = map;
+        boolean isEmptyRange = (!fromInclusive && fromKey == Long.MAX_VALUE)
+            || (!toInclusive && toKey == Long.MIN_VALUE);
+        if (isEmptyRange) {
+            this.lowKey = 1;
+            this.highKey = 0;
+        } else {
+            this.lowKey = fromInclusive ? fromKey : fromKey + 1;
+            this.highKey = toInclusive ? toKey : toKey - 1;
+        }
+    }
+
+    /**
+     * @return a view of the backing map with the given range
+     */
+    abstract NavigableRangeView<V> createView(long fromKey, boolean fromInclusive, long toKey,
+                                              boolean toInclusive);
+
+    @Override
+    public V put(long key, V value) {
+        return map.put(checkInRange(key), value);
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        return map.putIfAbsent(checkInRange(key), value);
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        return isInRange(key) ? map.replace(key, value) : null;
+    }
+
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        return map.computeIfAbsent(checkInRange(key), mappingFunction);
+    }
+
+    @Override
+    public V get(long key) {
+        return isInRange(key) ? map.get(key) : null;
+    }
+
+    @Override
+    public V remove(long key) {
+        return isInRange(key) ? map.remove(key) : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !cursor().advance();
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return isInRange(key) && map.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            if (Objects.equals(value, cursor.value())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long[] keys() {
+        long[] result = new long[INITIAL_RESULT_LENGTH];
+        int position = 0;
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            if (position == result.length) {
+                result = Arrays.copyOf(result, position << 1);
+            }
+            result[position++] = cursor.key();
+        }
+        return position == result.length ? result : Arrays.copyOf(result, position);
+    }
+
+    @Override
+    public V[] values() {
+        Object[] result = new Object[INITIAL_RESULT_LENGTH];
+        int position = 0;
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            if (position == result.length) {
+                result = Arrays.copyOf(result, position << 1);
+            }
+            result[position++] = cursor.value();
+        }
+        return (V[]) (position == result.length ? result : Arrays.copyOf(result, position));
+    }
+
+    @Override
+    public long size() {
+        long count = 0;
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Collects the keys of the range in one walk and removes them afterwards, as the cursor does
+     * not survive a removal from the backing map.
+     */
+    @Override
+    public void clear() {
+        for (long key : keys()) {
+            map.remove(key);
+        }
+    }
+
+    @Override
+    public long firstKey() {
+        return ceilingKey(lowKey);
+    }
+
+    @Override
+    public long lastKey() {
+        return floorKey(highKey);
+    }
+
+    @Override
+    public long floorKey(long key) {
+        if (key < lowKey) {
+            throw new NoSuchElementException();
+        }
+        long floorKey = map.floorKey(Math.min(key, highKey));
+        if (floorKey < lowKey) {
+            throw new NoSuchElementException();
+        }
+        return floorKey;
+    }
+
+    @Override
+    public long ceilingKey(long key) {
+        if (key > highKey) {
+            throw new NoSuchElementException();
+        }
+        long ceilingKey = map.ceilingKey(Math.max(key, lowKey));
+        if (ceilingKey > highKey) {
+            throw new NoSuchElementException();
+        }
+        return ceilingKey;
+    }
+
+    @Override
+    public NavigableLongMap<V> subMap(long fromKey, boolean fromInclusive, long toKey,
+                                      boolean toInclusive) {
+        NavigableRangeView<V> view = createView(fromKey, fromInclusive, toKey, toInclusive);
+        if (view.lowKey <= view.highKey && (view.lowKey < lowKey || view.highKey > highKey)) {
+            throw new IllegalArgumentException("The range is out of the range of the view");
+        }
+        return view;
+    }
+
+    private boolean isInRange(long key) {
+        return key >= lowKey && key <= highKey;
+    }
+
+    private long checkInRange(long key) {
+        if (!isInRange(key)) {
+            throw new IllegalArgumentException(
+                "The key " + key + " is out of the range of the view");
+        }
+        return key;
+    }
+}
@@ -0,0 +1,623 @@
+package de.comparus.opensource.longmap;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * This is a persistent LongMap: it is never changed, {@link #with(long, Object)} and
+ * {@link #without(long)} return a new version instead, which shares all the nodes but the path to
+ * the changed key with the version it is made of. Every version stays valid and may be read by
+ * any number of threads, so readers pin the version they started with while writers move on.
+ *
+ * The map is a hash array mapped trie (in the CHAMP layout): every node takes 6 bits of the hash
+ * of a key and keeps, in two bitmaps, which of its 64 branches hold an entry and which hold a child
+ * node, with the entries and the children packed into arrays in the order of their bits. The hash
+ * is a bijection of the key, so keys never collide and the trie is at most 11 levels deep, while
+ * for n keys it is about log64(n) levels deep. An update copies these few nodes only, a version
+ * costs O(log n) memory rather than a copy of the whole map.
+ *
+ * Bulk edits are made by a {@link Transient}: a mutable LongMap which starts from a version,
+ * changes the nodes it has copied in place and copies only the shared ones, and then hands out a
+ * new version by {@link Transient#persistent()}. The modifying methods of LongMap throw
+ * UnsupportedOperationException on a persistent map.
+ */
+public final class PersistentLongMap<V> implements LongMap<V> {
+    private static final int BITS_PER_LEVEL = 6;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+    private static final int MAX_DEPTH = (Long.SIZE + BITS_PER_LEVEL - 1) / BITS_PER_LEVEL;
+    private static final Object ABSENT = new Object();
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final long size;
+
+    private PersistentLongMap(Node root, long size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    /**
+     * Copies the mappings of the map, which is only read by its cursor.
+     */
+    public static <V> PersistentLongMap<V> copyOf(LongMap<? extends V> map) {
+        if (map instanceof PersistentLongMap) {
+            return (PersistentLongMap<V>) map;
+        }
+        Transient<V> copy = PersistentLongMap.<V>empty().asTransient();
+        LongMapCursor<? extends V> cursor = map.cursor();
+        while (cursor.advance()) {
+            copy.put(cursor.key(), cursor.value());
+        }
+        return copy.persistent();
+    }
+
+    /**
+     * @return a version with the value mapped to the key, or this map if the key is already mapped
+     *     to the same value
+     */
+    public PersistentLongMap<V> with(long key, V value) {
+        Change change = new Change();
+        Node newRoot = root.put(null, key, mix(key), 0, value, change);
+        return change.isModified ? new PersistentLongMap<>(newRoot, size + change.sizeDelta) : this;
+    }
+
+    /**
+     * @return a version without the key, or this map if the key is not mapped
+     */
+    public PersistentLongMap<V> without(long key) {
+        Change change = new Change();
+        Node newRoot = root.remove(null, key, mix(key), 0, change);
+        return change.isModified ? new PersistentLongMap<>(newRoot, size + change.sizeDelta) : this;
+    }
+
+    /**
+     * @return a mutable map starting from this version, which is not changed by the edits of it
+     */
+    public Transient<V> asTransient() {
+        return new Transient<>(root, size);
+    }
+
+    @Override
+    public V get(long key) {
+        Object value = root.find(key, mix(key));
+        return value == ABSENT ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return root.find(key, mix(key)) != ABSENT;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return root.containsValue(value);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long[] keys() {
+        long[] result = new long[(int) size];
+        root.collectKeys(result, 0);
+        return result;
+    }
+
+    @Override
+    public V[] values() {
+        Object[] result = new Object[(int) size];
+        root.collectValues(result, 0);
+        return (V[]) result;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new NodeCursor<>(root);
+    }
+
+    @Override
+    public V put(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(long[] keys, V[] values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(long key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long removeAll(long[] keys) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * The 64-bit finalizer of MurmurHash3 (see LongHashFunction.MURMUR3) without the truncation to
+     * an int. Every step of it is invertible, so distinct keys always get distinct hashes.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * The mutable form of a PersistentLongMap for bulk edits. The nodes copied by this map are
+     * marked with its editor and changed in place by the following edits, so a series of puts
+     * copies every shared node at most once. {@link #persistent()} hands the current state out as
+     * a version and takes a new editor, so the nodes of the version are never changed afterwards
+     * and this map may go on being edited.
+     *
+     * Like the other mutable maps of this package it is not thread-safe.
+     */
+    public static final class Transient<V> implements LongMap<V> {
+        private Node root;
+        private long size;
+        private Object editor = new Object();
+        private int modifications;
+
+        private Transient(Node root, long size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * @return a version holding the current mappings of this map
+         */
+        public PersistentLongMap<V> persistent() {
+            editor = new Object();
+            return size == 0 ? empty() : new PersistentLongMap<>(root, size);
+        }
+
+        @Override
+        public V put(long key, V value) {
+            Change change = new Change();
+            root = root.put(editor, key, mix(key), 0, value, change);
+            if (change.sizeDelta != 0) {
+                size += change.sizeDelta;
+                modifications++;
+            }
+            return (V) change.previousValue;
+        }
+
+        @Override
+        public V remove(long key) {
+            Change change = new Change();
+            root = root.remove(editor, key, mix(key), 0, change);
+            if (change.sizeDelta != 0) {
+                size += change.sizeDelta;
+                modifications++;
+            }
+            return (V) change.previousValue;
+        }
+
+        @Override
+        public V get(long key) {
+            Object value = root.find(key, mix(key));
+            return value == ABSENT ? null : (V) value;
+        }
+
+        @Override
+        public boolean containsKey(long key) {
+            return root.find(key, mix(key)) != ABSENT;
+        }
+
+        @Override
+        public boolean containsValue(V value) {
+            return root.containsValue(value);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public long[] keys() {
+            long[] result = new long[(int) size];
+            root.collectKeys(result, 0);
+            return result;
+        }
+
+        @Override
+        public V[] values() {
+            Object[] result = new Object[(int) size];
+            root.collectValues(result, 0);
+            return (V[]) result;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            root = Node.EMPTY;
+            size = 0;
+            modifications++;
+        }
+
+        @Override
+        public LongMapCursor<V> cursor() {
+            int expectedModifications = modifications;
+            return new NodeCursor<V>(root) {
+                @Override
+                void checkForModification() {
+                    if (modifications != expectedModifications) {
+                        throw new ConcurrentModificationException();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * What an update has done: the value it has replaced or removed and whether the number of
+     * mappings has changed.
+     */
+    private static final class Change {
+        Object previousValue;
+        int sizeDelta;
+        boolean isModified;
+    }
+
+    /**
+     * A node of the trie. The nodes of a version are never changed, only a node with the editor of
+     * a Transient is changed in place by the edits of that Transient.
+     */
+    private static final class Node {
+        static final Node EMPTY = new Node(null, 0, 0, new long[0], new Object[0], new Node[0]);
+
+        final Object editor;
+        long entryMap;
+        long nodeMap;
+        long[] keys;
+        Object[] values;
+        Node[] children;
+
+        Node(Object editor, long entryMap, long nodeMap, long[] keys, Object[] values,
+             Node[] children) {
+            this.editor = editor;
+            this.entryMap = entryMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.values = values;
+            this.children = children;
+        }
+
+        Object find(long key, long hash) {
+            Node node = this;
+            for (int shift = 0; ; shift += BITS_PER_LEVEL) {
+                long bit = bitOf(hash, shift);
+                if ((node.entryMap & bit) != 0) {
+                    int index = node.entryIndex(bit);
+                    return node.keys[index] == key ? node.values[index] : ABSENT;
+                }
+                if ((node.nodeMap & bit) == 0) {
+                    return ABSENT;
+                }
+                node = node.children[node.nodeIndex(bit)];
+            }
+        }
+
+        Node put(Object editor, long key, long hash, int shift, Object value, Change change) {
+            long bit = bitOf(hash, shift);
+            if ((entryMap & bit) != 0) {
+                int index = entryIndex(bit);
+                long currentKey = keys[index];
+                if (currentKey == key) {
+                    Object currentValue = values[index];
+                    change.previousValue = currentValue;
+                    if (currentValue == value) {
+                        return this;
+                    }
+                    change.isModified = true;
+                    Node node = editable(editor);
+                    node.values[index] = value;
+                    return node;
+                }
+                Node child = pair(editor, currentKey, mix(currentKey), values[index], key, hash,
+                    value, shift + BITS_PER_LEVEL);
+                change.isModified = true;
+                change.sizeDelta = 1;
+                return replaceEntryWithNode(editor, bit, index, child);
+            }
+            if ((nodeMap & bit) != 0) {
+                int index = nodeIndex(bit);
+                Node child = children[index];
+                Node newChild = child.put(editor, key, hash, shift + BITS_PER_LEVEL, value, change);
+                if (!change.isModified || newChild == child) {
+                    return this;
+                }
+                Node node = editable(editor);
+                node.children[index] = newChild;
+                return node;
+            }
+            change.isModified = true;
+            change.sizeDelta = 1;
+            return insertEntry(editor, bit, key, value);
+        }
+
+        Node remove(Object editor, long key, long hash, int shift, Change change) {
+            long bit = bitOf(hash, shift);
+            if ((entryMap & bit) != 0) {
+                int index = entryIndex(bit);
+                if (keys[index] != key) {
+                    return this;
+                }
+                change.previousValue = values[index];
+                change.isModified = true;
+                change.sizeDelta = -1;
+                return removeEntry(editor, bit, index);
+            }
+            if ((nodeMap & bit) != 0) {
+                int index = nodeIndex(bit);
+                Node child = children[index];
+                Node newChild = child.remove(editor, key, hash, shift + BITS_PER_LEVEL, change);
+                if (!change.isModified) {
+                    return this;
+                }
+                if (newChild.nodeMap == 0 && newChild.keys.length == 1) {
+                    // a lone entry is moved up, so a trie has the same shape whatever the history
+                    return replaceNodeWithEntry(editor, bit, index, newChild.keys[0],
+                        newChild.values[0]);
+                }
+                if (newChild == child) {
+                    return this;
+                }
+                Node node = editable(editor);
+                node.children[index] = newChild;
+                return node;
+            }
+            return this;
+        }
+
+        boolean containsValue(Object value) {
+            for (Object currentValue : values) {
+                if (Objects.equals(value, currentValue)) return true;
+            }
+            for (Node child : children) {
+                if (child.containsValue(value)) return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the index after the last collected key
+         */
+        int collectKeys(long[] result, int index) {
+            System.arraycopy(keys, 0, result, index, keys.length);
+            index += keys.length;
+            for (Node child : children) {
+                index = child.collectKeys(result, index);
+            }
+            return index;
+        }
+
+        /**
+         * @return the index after the last collected value
+         */
+        int collectValues(Object[] result, int index) {
+            System.arraycopy(values, 0, result, index, values.length);
+            index += values.length;
+            for (Node child : children) {
+                index = child.collectValues(result, index);
+            }
+            return index;
+        }
+
+        private static Node pair(Object editor, long key1, long hash1, Object value1, long key2,
+                                 long hash2, Object value2, int shift) {
+            long bit1 = bitOf(hash1, shift);
+            long bit2 = bitOf(hash2, shift);
+            if (bit1 == bit2) {
+                Node child = pair(editor, key1, hash1, value1, key2, hash2, value2,
+                    shift + BITS_PER_LEVEL);
+                return new Node(editor, 0, bit1, EMPTY.keys, EMPTY.values, new Node[]{child});
+            }
+            if (Long.compareUnsigned(bit1, bit2) < 0) {
+                return new Node(editor, bit1 | bit2, 0, new long[]{key1, key2},
+                    new Object[]{value1, value2}, EMPTY.children);
+            }
+            return new Node(editor, bit1 | bit2, 0, new long[]{key2, key1},
+                new Object[]{value2, value1}, EMPTY.children);
+        }
+
+        private Node insertEntry(Object editor, long bit, long key, Object value) {
+            int index = entryIndex(bit);
+            long[] newKeys = new long[keys.length + 1];
+            Object[] newValues = new Object[newKeys.length];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            newKeys[index] = key;
+            newValues[index] = value;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(values, index, newValues, index + 1, values.length - index);
+            return update(editor, entryMap | bit, nodeMap, newKeys, newValues, children);
+        }
+
+        private Node removeEntry(Object editor, long bit, int index) {
+            long[] newKeys = new long[keys.length - 1];
+            Object[] newValues = new Object[newKeys.length];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, newKeys.length - index);
+            System.arraycopy(values, index + 1, newValues, index, newValues.length - index);
+            return update(editor, entryMap & ~bit, nodeMap, newKeys, newValues, children);
+        }
+
+        private Node replaceEntryWithNode(Object editor, long bit, int entryIndex, Node child) {
+            long[] newKeys = new long[keys.length - 1];
+            Object[] newValues = new Object[newKeys.length];
+            System.arraycopy(keys, 0, newKeys, 0, entryIndex);
+            System.arraycopy(values, 0, newValues, 0, entryIndex);
+            System.arraycopy(keys, entryIndex + 1, newKeys, entryIndex,
+                newKeys.length - entryIndex);
+            System.arraycopy(values, entryIndex + 1, newValues, entryIndex,
+                newValues.length - entryIndex);
+            int nodeIndex = nodeIndex(bit);
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, nodeIndex);
+            newChildren[nodeIndex] = child;
+            System.arraycopy(children, nodeIndex, newChildren, nodeIndex + 1,
+                children.length - nodeIndex);
+            return update(editor, entryMap & ~bit, nodeMap | bit, newKeys, newValues, newChildren);
+        }
+
+        private Node replaceNodeWithEntry(Object editor, long bit, int nodeIndex, long key,
+                                          Object value) {
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, nodeIndex);
+            System.arraycopy(children, nodeIndex + 1, newChildren, nodeIndex,
+                newChildren.length - nodeIndex);
+            int entryIndex = entryIndex(bit);
+            long[] newKeys = new long[keys.length + 1];
+            Object[] newValues = new Object[newKeys.length];
+            System.arraycopy(keys, 0, newKeys, 0, entryIndex);
+            System.arraycopy(values, 0, newValues, 0, entryIndex);
+            newKeys[entryIndex] = key;
+            newValues[entryIndex] = value;
+            System.arraycopy(keys, entryIndex, newKeys, entryIndex + 1, keys.length - entryIndex);
+            System.arraycopy(values, entryIndex, newValues, entryIndex + 1,
+                values.length - entryIndex);
+            return update(editor, entryMap | bit, nodeMap & ~bit, newKeys, newValues, newChildren);
+        }
+
+        /**
+         * @return this node if the editor owns it, otherwise a copy owned by the editor
+         */
+        private Node editable(Object editor) {
+            if (editor != null && this.editor == editor) {
+                return this;
+            }
+            return new Node(editor, entryMap, nodeMap, keys.clone(), values.clone(),
+                children.clone());
+        }
+
+        private Node update(Object editor, long entryMap, long nodeMap, long[] keys,
+                            Object[] values, Node[] children) {
+            if (editor != null && this.editor == editor) {
+                this.entryMap = entryMap;
+                this.nodeMap = nodeMap;
+                this.keys = keys;
+                this.values = values;
+                this.children = children;
+                return this;
+            }
+            return new Node(editor, entryMap, nodeMap, keys, values, children);
+        }
+
+        private int entryIndex(long bit) {
+            return Long.bitCount(entryMap & (bit - 1));
+        }
+
+        private int nodeIndex(long bit) {
+            return Long.bitCount(nodeMap & (bit - 1));
+        }
+
+        private static long bitOf(long hash, int shift) {
+            return 1L << ((hash >>> shift) & LEVEL_MASK);
+        }
+    }
+
+    /**
+     * Walks over the trie depth first, the entries of a node before its children, keeping the path
+     * from the root in arrays instead of recursion.
+     */
+    private static class NodeCursor<V> implements LongMapCursor<V> {
+        private final Node[] path = new Node[MAX_DEPTH];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private boolean hasEntry;
+        private long key;
+        private V value;
+
+        NodeCursor(Node root) {
+            path[0] = root;
+        }
+
+        @Override
+        public boolean advance() {
+            checkForModification();
+            while (depth >= 0) {
+                Node node = path[depth];
+                int position = positions[depth]++;
+                if (position < node.keys.length) {
+                    key = node.keys[position];
+                    value = (V) node.values[position];
+                    return hasEntry = true;
+                }
+                int childIndex = position - node.keys.length;
+                if (childIndex < node.children.length) {
+                    path[++depth] = node.children[childIndex];
+                    positions[depth] = 0;
+                } else {
+                    path[depth--] = null;
+                }
+            }
+            return hasEntry = false;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return key;
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return value;
+        }
+
+        void checkForModification() {
+        }
+
+        private void checkPosition() {
+            if (!hasEntry) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package de.comparus.opensource.longmap;
+
+import java.util.function.LongFunction;
+
+/**
+ * This is a read-only LongMap that reads the FrozenLongMap published last. A new version is built
+ * aside by the writer and then made visible by a single write of a volatile field, so readers
+ * neither lock nor wait and never see a half-built table.
+ *
+ * Every call of this map reads the current version anew, so two calls may see different versions.
+ * A reader that needs a consistent view over several calls takes {@link #current()} once and
+ * reads it instead. The modifying methods of LongMap throw UnsupportedOperationException.
+ */
+public class PublishedLongMap<V> implements LongMap<V> {
+    private volatile FrozenLongMap<V> current;
+
+    public PublishedLongMap() {
+        this.current = FrozenLongMap.empty();
+    }
+
+    public PublishedLongMap(LongMap<? extends V> map) {
+        this.current = FrozenLongMap.copyOf(map);
+    }
+
+    /**
+     * Freezes a copy of the map and makes it visible to the readers. The copy is made before the
+     * publication, so the map must not be changed concurrently with this call. Versions are
+     * expected to be published by one writer at a time.
+     *
+     * @return the version replaced by the new one
+     */
+    public FrozenLongMap<V> publish(LongMap<? extends V> map) {
+        return publish(FrozenLongMap.<V>copyOf(map));
+    }
+
+    /**
+     * @return the version replaced by the given one
+     */
+    public FrozenLongMap<V> publish(FrozenLongMap<V> map) {
+        if (map == null) {
+            throw new NullPointerException();
+        }
+        FrozenLongMap<V> previous = current;
+        current = map;
+        return previous;
+    }
+
+    /**
+     * @return the version published last
+     */
+    public FrozenLongMap<V> current() {
+        return current;
+    }
+
+    @Override
+    public V get(long key) {
+        return current.get(key);
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return current.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return current.containsValue(value);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current.isEmpty();
+    }
+
+    @Override
+    public long[] keys() {
+        return current.keys();
+    }
+
+    @Override
+    public V[] values() {
+        return current.values();
+    }
+
+    @Override
+    public long size() {
+        return current.size();
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return current.cursor();
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        current.forEach(action);
+    }
+
+    @Override
+    public void getAll(long[] keys, V[] result) {
+        current.getAll(keys, result);
+    }
+
+    @Override
+    public boolean containsAll(long[] keys) {
+        return current.containsAll(keys);
+    }
+
+    @Override
+    public FrozenLongMap<V> freeze() {
+        return current;
+    }
+
+    @Override
+    public V put(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(long[] keys, V[] values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(long key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long removeAll(long[] keys) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -1,44 +1,101 @@
 package de.comparus.opensource.longmap.alternative;
 
 import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
+import de.comparus.opensource.longmap.LongObjConsumer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 
 /**
- * This implementation of LongMap is based on using nested arrays as a storage of objects, their
- * indexes are using like keys of map. This implementation method is significantly outperformed by
- * tree-based implementations in terms of speed and memory usage. Therefore, it can only be
- * considered as an alternative.
+ * This implementation of LongMap is a paged direct-address table: the value of a key is stored in
+ * the array cell addressed by the key itself, so a lookup is a few array reads without hashing,
+ * probing or comparing keys.
+ *
+ * A key is split into three parts. Its low 12 bits are the slot in a page of 4096 values, the next
+ * 12 bits are the page in a directory of 4096 pages, and the high 40 bits select the directory.
+ * The directories are kept in an array sorted by their high bits and are found by binary search,
+ * the last found one is checked first, so the keys of one range of 16M IDs do not search at all.
+ * A page is allocated on the first key which falls into it and is freed with its last key, and so
+ * is a directory. Every page keeps a bitmap of its present keys, so null values can be stored.
+ *
+ * It is the fastest LongMap for dense keys, such as database IDs, but a page costs about 16 KB
+ * however few keys it holds, so scattered keys waste a lot of memory.
  */
 public class LongMapArraysImpl<V> implements LongMap<V> {
-    private Object[][][] dataStorage = new Object[3][][];
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int DIRECTORY_BITS = 12;
+    private static final int DIRECTORY_SIZE = 1 << DIRECTORY_BITS;
+    private static final int DIRECTORY_MASK = DIRECTORY_SIZE - 1;
+    private static final int DIRECTORY_SHIFT = PAGE_BITS + DIRECTORY_BITS;
+    private static final int DEFAULT_DIRECTORIES_CAPACITY = 4;
+
+    private long[] directoryKeys = new long[DEFAULT_DIRECTORIES_CAPACITY];
+    private Directory[] directories = new Directory[DEFAULT_DIRECTORIES_CAPACITY];
+    private int directoryCount;
+    private int lastDirectoryIndex;
     private long size;
+    private int modifications;
 
     @Override
     public V put(long key, V value) {
-        ComplexIndex complexIndex = calculateComplexIndex(key);
-        provideAvailability(complexIndex);
-        dataStorage[complexIndex.firstLevelIndex][complexIndex.secondLevelIndex][complexIndex.thirdLevelIndex] = value;
-        size++;
-        return value;
+        long directoryKey = key >> DIRECTORY_SHIFT;
+        int directoryIndex = findDirectory(directoryKey);
+        if (directoryIndex < 0) {
+            directoryIndex = -directoryIndex - 1;
+            insertDirectory(directoryIndex, directoryKey);
+        }
+        Directory directory = directories[directoryIndex];
+        int pageIndex = (int) (key >>> PAGE_BITS) & DIRECTORY_MASK;
+        Page page = directory.pages[pageIndex];
+        if (page == null) {
+            page = new Page();
+            directory.pages[pageIndex] = page;
+            directory.pageCount++;
+        }
+        int slot = (int) key & PAGE_MASK;
+        V oldValue = (V) page.values[slot];
+        page.values[slot] = value;
+        if (!page.isPresent(slot)) {
+            page.present[slot >>> 6] |= 1L << slot;
+            page.size++;
+            size++;
+            modifications++;
+        }
+        return oldValue;
     }
 
     @Override
     public V get(long key) {
-        ComplexIndex complexIndex = calculateComplexIndex(key);
-        if (dataStorage == null) return null;
-        return (V) dataStorage[complexIndex.firstLevelIndex][complexIndex.secondLevelIndex][complexIndex.thirdLevelIndex];
+        Page page = findPage(key);
+        return page == null ? null : (V) page.values[(int) key & PAGE_MASK];
     }
 
     @Override
     public V remove(long key) {
-        ComplexIndex complexIndex = calculateComplexIndex(key);
-        V toSend = (V) dataStorage[complexIndex.firstLevelIndex][complexIndex.secondLevelIndex][complexIndex.thirdLevelIndex];
-        dataStorage[complexIndex.firstLevelIndex][complexIndex.secondLevelIndex][complexIndex.thirdLevelIndex] = null;
-        this.size--;
-        return toSend;
+        int directoryIndex = findDirectory(key >> DIRECTORY_SHIFT);
+        if (directoryIndex < 0) return null;
+        Directory directory = directories[directoryIndex];
+        int pageIndex = (int) (key >>> PAGE_BITS) & DIRECTORY_MASK;
+        Page page = directory.pages[pageIndex];
+        int slot = (int) key & PAGE_MASK;
+        if (page == null || !page.isPresent(slot)) return null;
+        V oldValue = (V) page.values[slot];
+        page.values[slot] = null;
+        page.present[slot >>> 6] &= ~(1L << slot);
+        if (--page.size == 0) {
+            directory.pages[pageIndex] = null;
+            if (--directory.pageCount == 0) {
+                removeDirectory(directoryIndex);
+            }
+        }
+        size--;
+        modifications++;
+        return oldValue;
     }
 
     @Override
@@ -48,60 +105,49 @@ public class LongMapArraysImpl<V> implements LongMap<V> {
 
     @Override
     public boolean containsKey(long key) {
-        ComplexIndex complexIndex = calculateComplexIndex(key);
-        return dataStorage[complexIndex.firstLevelIndex][complexIndex.secondLevelIndex][complexIndex.thirdLevelIndex] != null;
+        Page page = findPage(key);
+        return page != null && page.isPresent((int) key & PAGE_MASK);
     }
 
     @Override
     public boolean containsValue(V value) {
-        List<V> values = getValues();
-        for (V val : values) {
-            if (val != null && val.equals(value)) return true;
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            if (Objects.equals(value, cursor.value())) return true;
         }
         return false;
     }
 
     @Override
     public long[] keys() {
-        ArrayList<Long> res = new ArrayList();
-        if (dataStorage == null) return new long[0];
-        for (int i = 0; i < dataStorage.length; i++) {
-            if (dataStorage[i] == null) continue;
-            for (int k = 0; k < dataStorage[i].length; k++) {
-                if (dataStorage[i][k] == null) continue;
-                for (int m = 0; m < dataStorage[i][k].length; m++) {
-                    if (dataStorage[i][k][m] != null) {
-                        res.add(calculateSimpleIndex(new ComplexIndex(i, k, m)));
-                    }
-                }
-            }
+        long[] result = new long[(int) size];
+        int position = 0;
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            result[position++] = cursor.key();
         }
-        return res.stream().mapToLong(l -> l).toArray();
+        return result;
     }
 
     @Override
     public V[] values() {
-        return (V[]) getValues().stream().filter(Objects::nonNull).toArray();
+        Object[] result = new Object[(int) size];
+        int position = 0;
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            result[position++] = cursor.value();
+        }
+        return (V[]) result;
     }
 
     @Override
     public void clear() {
-        dataStorage = null;
+        directoryKeys = new long[DEFAULT_DIRECTORIES_CAPACITY];
+        directories = new Directory[DEFAULT_DIRECTORIES_CAPACITY];
+        directoryCount = 0;
+        lastDirectoryIndex = 0;
         size = 0L;
-    }
-
-    private List<V> getValues() {
-        List<V> res = new ArrayList<>(0);
-        for (Object[][] obj : dataStorage) {
-            if (obj == null) continue;
-            for (Object[] obj2 : obj) {
-                if (obj2 == null) continue;
-                for (Object obj3 : obj2) {
-                    res.add((V)obj3);
-                }
-            }
-        }
-        return res;
+        modifications++;
     }
 
     @Override
@@ -109,74 +155,169 @@ public class LongMapArraysImpl<V> implements LongMap<V> {
         return this.size;
     }
 
-    private static ComplexIndex calculateComplexIndex(long simpleIndex) {
-        int maxInteger = Integer.MAX_VALUE;
-        long maxDoubleLevelArraySize = (long)maxInteger * maxInteger;
-        long firstLevelIndex = simpleIndex/(maxDoubleLevelArraySize * 2);
-        if ((simpleIndex - maxDoubleLevelArraySize * 2) > 0) {
-            firstLevelIndex += 1;
+    /**
+     * Iterates over the entries in the ascending order of their keys.
+     */
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new PageCursor();
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
         }
-        long remainder = simpleIndex - firstLevelIndex * maxDoubleLevelArraySize;
-        long secondLevelIndex = remainder/maxInteger;
-        long thirdLevelIndex = remainder % maxInteger;
-        return new ComplexIndex((int)firstLevelIndex, (int)secondLevelIndex, (int)thirdLevelIndex);
     }
 
-    private static long calculateSimpleIndex(ComplexIndex complexIndex) {
-        return (long) complexIndex.firstLevelIndex * complexIndex.secondLevelIndex * complexIndex.thirdLevelIndex;
+    /**
+     * @return the number of allocated pages, which shows how much memory the map takes
+     */
+    public long pageCount() {
+        long result = 0;
+        for (int i = 0; i < directoryCount; i++) {
+            result += directories[i].pageCount;
+        }
+        return result;
     }
 
-    private void provideAvailability(ComplexIndex complexIndex) {
-        int i = complexIndex.firstLevelIndex;
-        int k = complexIndex.secondLevelIndex;
-        int m = complexIndex.thirdLevelIndex;
+    private Page findPage(long key) {
+        int directoryIndex = findDirectory(key >> DIRECTORY_SHIFT);
+        if (directoryIndex < 0) return null;
+        return directories[directoryIndex].pages[(int) (key >>> PAGE_BITS) & DIRECTORY_MASK];
+    }
 
-        if (dataStorage == null) {
-            dataStorage = new Object[i][k][m];
-        }
-        if (dataStorage.length <= i) {
-            Object[][][] level1Storage = new Object[i][k][m];
-            System.arraycopy(dataStorage, 0, level1Storage, 0, dataStorage.length);
+    /**
+     * @return the index of the directory if it is present, otherwise {@code -(index + 1)} where
+     * index is the position to insert it at
+     */
+    private int findDirectory(long directoryKey) {
+        int last = lastDirectoryIndex;
+        if (last < directoryCount && directoryKeys[last] == directoryKey) {
+            return last;
         }
-        if (dataStorage[i] == null) {
-            dataStorage[i] = new Object[k + 1][m + 1];
+        int index = Arrays.binarySearch(directoryKeys, 0, directoryCount, directoryKey);
+        if (index >= 0) {
+            lastDirectoryIndex = index;
         }
-        if (dataStorage[i].length <= k) {
-            Object[][] level2Storage = new Object[k + 1][m + 1];
-            System.arraycopy(dataStorage[i], 0, level2Storage, 0, dataStorage[i].length);
-            dataStorage[i] = level2Storage;
+        return index;
+    }
+
+    private void insertDirectory(int index, long directoryKey) {
+        if (directoryCount == directories.length) {
+            int capacity = directoryCount + (directoryCount >> 1);
+            directoryKeys = Arrays.copyOf(directoryKeys, capacity);
+            directories = Arrays.copyOf(directories, capacity);
         }
-        if (dataStorage[i][k] == null) {
-            dataStorage[i][k] = new Object[m + 1];
+        System.arraycopy(directoryKeys, index, directoryKeys, index + 1, directoryCount - index);
+        System.arraycopy(directories, index, directories, index + 1, directoryCount - index);
+        directoryKeys[index] = directoryKey;
+        directories[index] = new Directory();
+        directoryCount++;
+        lastDirectoryIndex = index;
+    }
+
+    private void removeDirectory(int index) {
+        directoryCount--;
+        System.arraycopy(directoryKeys, index + 1, directoryKeys, index, directoryCount - index);
+        System.arraycopy(directories, index + 1, directories, index, directoryCount - index);
+        directories[directoryCount] = null;
+        lastDirectoryIndex = 0;
+    }
+
+    private static final class Directory {
+        private final Page[] pages = new Page[DIRECTORY_SIZE];
+        private int pageCount;
+    }
+
+    private static final class Page {
+        private final Object[] values = new Object[PAGE_SIZE];
+        private final long[] present = new long[PAGE_SIZE / Long.SIZE];
+        private int size;
+
+        private boolean isPresent(int slot) {
+            return (present[slot >>> 6] & (1L << slot)) != 0;
         }
-        if (dataStorage[i][k].length <= m) {
-            Object[] level3Storage = new Object[m + 1];
-            System.arraycopy(dataStorage[i][k], 0, level3Storage, 0, dataStorage[i][k].length);
-            dataStorage[i][k] = level3Storage;
+
+        /**
+         * @return the first present slot starting from the given one or {@code -1} if there is none
+         */
+        private int nextSlot(int from) {
+            int word = from >>> 6;
+            if (word >= present.length) return -1;
+            long bits = present[word] & (-1L << from);
+            while (bits == 0) {
+                if (++word == present.length) return -1;
+                bits = present[word];
+            }
+            return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
         }
     }
 
-    private static class ComplexIndex {
-        private final int firstLevelIndex;
-        private final int secondLevelIndex;
-        private final int thirdLevelIndex;
+    /**
+     * Walks over the directories, their pages and the present slots of the pages in order.
+     */
+    private final class PageCursor implements LongMapCursor<V> {
+        private final int expectedModifications = modifications;
+        private int directoryIndex;
+        private int pageIndex = -1;
+        private Page page;
+        private int slot = -1;
+
+        @Override
+        public boolean advance() {
+            checkModifications();
+            while (directoryIndex < directoryCount) {
+                if (page != null) {
+                    slot = page.nextSlot(slot + 1);
+                    if (slot >= 0) return true;
+                }
+                page = nextPage();
+                slot = -1;
+            }
+            page = null;
+            return false;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return directoryKeys[directoryIndex] << DIRECTORY_SHIFT
+                | (long) pageIndex << PAGE_BITS | slot;
+        }
 
-        public ComplexIndex(int firstLevelIndex, int secondLevelIndex, int thirdLevelIndex) {
-            this.firstLevelIndex = firstLevelIndex;
-            this.secondLevelIndex = secondLevelIndex;
-            this.thirdLevelIndex = thirdLevelIndex;
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) page.values[slot];
         }
 
-        public int getFirstLevelIndex() {
-            return firstLevelIndex;
+        /**
+         * Moves to the next allocated page, going over to the next directory if needed.
+         */
+        private Page nextPage() {
+            Page[] pages = directories[directoryIndex].pages;
+            while (++pageIndex < DIRECTORY_SIZE) {
+                if (pages[pageIndex] != null) return pages[pageIndex];
+            }
+            directoryIndex++;
+            pageIndex = -1;
+            return null;
         }
 
-        public int getSecondLevelIndex() {
-            return secondLevelIndex;
+        private void checkPosition() {
+            checkModifications();
+            if (page == null || slot < 0) {
+                throw new NoSuchElementException();
+            }
         }
 
-        public int getThirdLevelIndex() {
-            return thirdLevelIndex;
+        private void checkModifications() {
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
         }
     }
 }
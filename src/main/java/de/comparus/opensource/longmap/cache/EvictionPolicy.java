@@ -0,0 +1,22 @@
+package de.comparus.opensource.longmap.cache;
+
+/**
+ * The way LongCache chooses the entries to evict when it gets over its maximum weight.
+ */
+public enum EvictionPolicy {
+    /**
+     * Evicts the least recently used entries. It is the cheapest policy, but a single scan over
+     * many keys flushes all the frequently used entries out of the cache.
+     */
+    LRU,
+
+    /**
+     * Window TinyLFU: a new entry is kept in a small LRU window (1% of the maximum weight), and
+     * when it leaves the window it is admitted to the main space only if it has been used more
+     * often than the entry it would evict. The frequencies are estimated by a count-min sketch
+     * which is halved periodically, so the old popularity fades away. The main space is a
+     * segmented LRU: the entries used again get into the protected segment (80% of the main
+     * space), and the eviction takes the probation segment first.
+     */
+    W_TINY_LFU
+}
@@ -0,0 +1,444 @@
+package de.comparus.opensource.longmap.cache;
+
+import de.comparus.opensource.longmap.LongHashFunction;
+import de.comparus.opensource.longmap.LongIntMap;
+import de.comparus.opensource.longmap.LongIntMapImpl;
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
+import de.comparus.opensource.longmap.LongObjConsumer;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * This is a LongMap whose entries expire after a time to live, given for the whole map or for an
+ * entry by {@link #put(long, Object, long, TimeUnit)}. An expired entry is never returned.
+ *
+ * The entries live in slots of parallel arrays like in LongCache, the deadline of an entry is a
+ * {@code long} next to its key. The slots are linked into the buckets of a hierarchical timing
+ * wheel: 5 levels of 64 buckets, a bucket of the lowest level spans 2^20 ns (about 1 ms) and a
+ * bucket of every next level spans a whole lower level, so the wheel covers about 13 days and a
+ * longer time to live just goes round the top level. Every operation moves the wheel to the
+ * current time: the buckets passed by are detached, their expired entries are removed, and the
+ * rest are put to the lower levels. Every entry is moved at most once per level, so the expiration
+ * costs an amortised constant per entry, instead of a scan of the whole map.
+ *
+ * Reading an entry checks its deadline exactly, whereas the wheel removes it a bucket later at the
+ * latest, so {@link #size()} may count the entries expired during the last millisecond. An
+ * expiration removes an entry, so an operation which expires something fails the open cursors.
+ * The expiration listener is called after the entry is removed and must not modify the map.
+ *
+ * The map is not thread-safe. A map left alone can be cleaned by
+ * {@link #scheduleCleanUp(ScheduledExecutorService, long, TimeUnit)}, which synchronizes on the
+ * map, so then every other use of the map must synchronize on it as well.
+ */
+public class ExpiringLongMap<V> implements LongMap<V> {
+    private static final int NO_SLOT = -1;
+    private static final int NO_BUCKET = -1;
+    private static final int DEFAULT_SLOTS_CAPACITY = 16;
+    private static final int BUCKET_BITS = 6;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+    private static final int[] LEVEL_SHIFTS = {20, 26, 32, 38, 44};
+    // keeps the deadlines far enough from an overflow of the differences with the current time
+    private static final long MAXIMUM_TIME_TO_LIVE = Long.MAX_VALUE >> 2;
+
+    private final long timeToLiveNanos;
+    private final LongSupplier ticker;
+    // the times are counted from the creation of the map, so they do not overflow like the ticker
+    private final long startTime;
+    private final LongObjConsumer<? super V> expirationListener;
+    private final LongIntMap slotsByKey =
+        new LongIntMapImpl(DEFAULT_SLOTS_CAPACITY, 0.75f, LongHashFunction.SPREAD, NO_SLOT);
+    private long[] keys;
+    private Object[] values;
+    private long[] deadlines;
+    private int[] previous;
+    private int[] next;
+    private int[] buckets;
+    private int usedSlots;
+    private int freeSlot;
+    private final int[] bucketHeads = new int[LEVEL_SHIFTS.length * BUCKETS];
+    private long wheelTime;
+    private int modifications;
+    private long expirationCount;
+
+    public ExpiringLongMap(long timeToLive, TimeUnit unit) {
+        this(timeToLive, unit, System::nanoTime, (key, value) -> { });
+    }
+
+    /**
+     * @param timeToLive the time an entry lives after it is put, unless another one is given for
+     *     the entry
+     * @param ticker the source of the time in nanoseconds, {@link System#nanoTime()} by default
+     * @param expirationListener called with every expired entry
+     */
+    public ExpiringLongMap(long timeToLive, TimeUnit unit, LongSupplier ticker,
+                           LongObjConsumer<? super V> expirationListener) {
+        this.timeToLiveNanos = toNanos(timeToLive, unit);
+        this.ticker = Objects.requireNonNull(ticker);
+        this.expirationListener = Objects.requireNonNull(expirationListener);
+        this.startTime = ticker.getAsLong();
+        allocateSlots();
+    }
+
+    @Override
+    public V put(long key, V value) {
+        return put(key, value, timeToLiveNanos);
+    }
+
+    /**
+     * Puts the entry which expires after the given time instead of the time to live of the map.
+     */
+    public V put(long key, V value, long timeToLive, TimeUnit unit) {
+        return put(key, value, toNanos(timeToLive, unit));
+    }
+
+    @Override
+    public V get(long key) {
+        long now = advance();
+        int slot = slotsByKey.get(key);
+        if (slot == NO_SLOT) return null;
+        if (deadlines[slot] - now <= 0) {
+            expire(slot);
+            return null;
+        }
+        return (V) values[slot];
+    }
+
+    @Override
+    public V remove(long key) {
+        long now = advance();
+        int slot = slotsByKey.get(key);
+        if (slot == NO_SLOT) return null;
+        if (deadlines[slot] - now <= 0) {
+            expire(slot);
+            return null;
+        }
+        V oldValue = (V) values[slot];
+        slotsByKey.remove(key);
+        unlink(slot);
+        releaseSlot(slot);
+        modifications++;
+        return oldValue;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        long now = advance();
+        int slot = slotsByKey.get(key);
+        return slot != NO_SLOT && deadlines[slot] - now > 0;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        long now = advance();
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (isLive(slot, now) && Objects.equals(value, values[slot])) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long[] keys() {
+        long now = advance();
+        long[] result = new long[(int) slotsByKey.size()];
+        int position = 0;
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (isLive(slot, now)) {
+                result[position++] = keys[slot];
+            }
+        }
+        return position == result.length ? result : Arrays.copyOf(result, position);
+    }
+
+    @Override
+    public V[] values() {
+        long now = advance();
+        Object[] result = new Object[(int) slotsByKey.size()];
+        int position = 0;
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (isLive(slot, now)) {
+                result[position++] = values[slot];
+            }
+        }
+        return (V[]) (position == result.length ? result : Arrays.copyOf(result, position));
+    }
+
+    @Override
+    public long size() {
+        advance();
+        return slotsByKey.size();
+    }
+
+    @Override
+    public void clear() {
+        slotsByKey.clear();
+        allocateSlots();
+        modifications++;
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new SlotCursor(advance());
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        LongMapCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    /**
+     * Removes the entries expired by now, which are not removed by the other operations yet.
+     */
+    public void cleanUp() {
+        advance();
+    }
+
+    /**
+     * Cleans the map up periodically, holding the monitor of the map, so every other use of the
+     * map has to synchronize on it as well.
+     *
+     * @return the future to cancel the cleaning
+     */
+    public ScheduledFuture<?> scheduleCleanUp(ScheduledExecutorService executor, long period,
+                                              TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            synchronized (this) {
+                cleanUp();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * @return the number of entries removed as expired
+     */
+    public long expirationCount() {
+        return expirationCount;
+    }
+
+    private V put(long key, V value, long timeToLiveNanos) {
+        long now = advance();
+        int slot = slotsByKey.get(key);
+        V oldValue = null;
+        if (slot != NO_SLOT && deadlines[slot] - now <= 0) {
+            expire(slot);
+            slot = NO_SLOT;
+        }
+        if (slot == NO_SLOT) {
+            slot = allocateSlot();
+            slotsByKey.put(key, slot);
+            keys[slot] = key;
+            modifications++;
+        } else {
+            oldValue = (V) values[slot];
+            unlink(slot);
+        }
+        values[slot] = value;
+        deadlines[slot] = now + timeToLiveNanos;
+        schedule(slot);
+        return oldValue;
+    }
+
+    private boolean isLive(int slot, long now) {
+        return buckets[slot] != NO_BUCKET && deadlines[slot] - now > 0;
+    }
+
+    /**
+     * Moves the wheel to the current time. The buckets of every level passed since the previous
+     * move are processed, a level is not passed unless the level below it is passed as well.
+     *
+     * @return the current time
+     */
+    private long advance() {
+        long now = ticker.getAsLong() - startTime;
+        long previousTime = wheelTime;
+        if (now - previousTime <= 0) return now;
+        wheelTime = now;
+        for (int level = 0; level < LEVEL_SHIFTS.length; level++) {
+            long previousTicks = previousTime >> LEVEL_SHIFTS[level];
+            long currentTicks = now >> LEVEL_SHIFTS[level];
+            if (currentTicks == previousTicks) break;
+            long bucketCount = Math.min(currentTicks - previousTicks + 1, BUCKETS);
+            for (long ticks = currentTicks - bucketCount + 1; ticks <= currentTicks; ticks++) {
+                processBucket(level * BUCKETS + ((int) ticks & BUCKET_MASK), now);
+            }
+        }
+        return now;
+    }
+
+    /**
+     * Detaches the list of the bucket first, so the entries which are put back into the same
+     * bucket are not processed again.
+     */
+    private void processBucket(int bucket, long now) {
+        int slot = bucketHeads[bucket];
+        bucketHeads[bucket] = NO_SLOT;
+        while (slot != NO_SLOT) {
+            int nextSlot = next[slot];
+            if (deadlines[slot] - now <= 0) {
+                buckets[slot] = NO_BUCKET;
+                expire(slot);
+            } else {
+                schedule(slot);
+            }
+            slot = nextSlot;
+        }
+    }
+
+    private void schedule(int slot) {
+        long deadline = deadlines[slot];
+        long delay = deadline - wheelTime;
+        int level = 0;
+        while (level < LEVEL_SHIFTS.length - 1
+            && delay >= 1L << (LEVEL_SHIFTS[level] + BUCKET_BITS)) {
+            level++;
+        }
+        int bucket = level * BUCKETS + ((int) (deadline >> LEVEL_SHIFTS[level]) & BUCKET_MASK);
+        int head = bucketHeads[bucket];
+        previous[slot] = NO_SLOT;
+        next[slot] = head;
+        if (head != NO_SLOT) {
+            previous[head] = slot;
+        }
+        bucketHeads[bucket] = slot;
+        buckets[slot] = bucket;
+    }
+
+    private void unlink(int slot) {
+        int bucket = buckets[slot];
+        if (bucket == NO_BUCKET) return;
+        int previousSlot = previous[slot];
+        int nextSlot = next[slot];
+        if (previousSlot == NO_SLOT) {
+            bucketHeads[bucket] = nextSlot;
+        } else {
+            next[previousSlot] = nextSlot;
+        }
+        if (nextSlot != NO_SLOT) {
+            previous[nextSlot] = previousSlot;
+        }
+        buckets[slot] = NO_BUCKET;
+    }
+
+    private void expire(int slot) {
+        long key = keys[slot];
+        V value = (V) values[slot];
+        slotsByKey.remove(key);
+        unlink(slot);
+        releaseSlot(slot);
+        expirationCount++;
+        modifications++;
+        expirationListener.accept(key, value);
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NO_SLOT) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        if (usedSlots == keys.length) {
+            int capacity = usedSlots + (usedSlots >> 1);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            next = Arrays.copyOf(next, capacity);
+            buckets = Arrays.copyOf(buckets, capacity);
+        }
+        return usedSlots++;
+    }
+
+    /**
+     * Puts the unlinked slot to the list of free slots, which is linked through the next links.
+     */
+    private void releaseSlot(int slot) {
+        values[slot] = null;
+        buckets[slot] = NO_BUCKET;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+    }
+
+    private void allocateSlots() {
+        keys = new long[DEFAULT_SLOTS_CAPACITY];
+        values = new Object[DEFAULT_SLOTS_CAPACITY];
+        deadlines = new long[DEFAULT_SLOTS_CAPACITY];
+        previous = new int[DEFAULT_SLOTS_CAPACITY];
+        next = new int[DEFAULT_SLOTS_CAPACITY];
+        buckets = new int[DEFAULT_SLOTS_CAPACITY];
+        usedSlots = 0;
+        freeSlot = NO_SLOT;
+        Arrays.fill(bucketHeads, NO_SLOT);
+    }
+
+    private static long toNanos(long timeToLive, TimeUnit unit) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Illegal time to live: " + timeToLive);
+        }
+        return Math.min(unit.toNanos(timeToLive), MAXIMUM_TIME_TO_LIVE);
+    }
+
+    /**
+     * Walks over the slots in their order, skipping the free ones and the entries expired by the
+     * creation of the cursor.
+     */
+    private final class SlotCursor implements LongMapCursor<V> {
+        private final int expectedModifications = modifications;
+        private final long now;
+        private int slot = -1;
+
+        private SlotCursor(long now) {
+            this.now = now;
+        }
+
+        @Override
+        public boolean advance() {
+            checkModifications();
+            while (++slot < usedSlots) {
+                if (isLive(slot, now)) return true;
+            }
+            slot = usedSlots;
+            return false;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return keys[slot];
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) values[slot];
+        }
+
+        private void checkPosition() {
+            checkModifications();
+            if (slot < 0 || slot >= usedSlots) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        private void checkModifications() {
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
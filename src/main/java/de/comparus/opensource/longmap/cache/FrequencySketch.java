@@ -0,0 +1,86 @@
+package de.comparus.opensource.longmap.cache;
+
+import java.util.Arrays;
+
+/**
+ * A count-min sketch of 4-bit counters estimating how often the keys have been used. Every key
+ * has a counter in each of 4 rows, chosen by differently seeded hashes, and its frequency is the
+ * least of them, so the collisions can only overestimate it. Sixteen counters are packed into a
+ * {@code long}. After ten additions per counter word all the counters are halved, so the
+ * frequencies follow the recent use of the keys.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAXIMUM_COUNTER = 15;
+    private static final int MINIMUM_WORDS = 8;
+    private static final int MAXIMUM_WORDS = 1 << 20;
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys the number of keys to be told apart, usually the maximum size of the cache
+     */
+    FrequencySketch(long expectedKeys) {
+        int words = MINIMUM_WORDS;
+        while (words < expectedKeys && words < MAXIMUM_WORDS) {
+            words <<= 1;
+        }
+        this.table = new long[words];
+        this.counterMask = words * 16 - 1;
+        this.sampleSize = 10 * words;
+    }
+
+    int frequency(long key) {
+        long hash = spread(key);
+        int frequency = MAXIMUM_COUNTER;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+            int counter = (int) (table[index >>> 4] >>> ((index & 15) << 2)) & MAXIMUM_COUNTER;
+            frequency = Math.min(frequency, counter);
+        }
+        return frequency;
+    }
+
+    void increment(long key) {
+        long hash = spread(key);
+        boolean isAdded = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+            int shift = (index & 15) << 2;
+            if (((table[index >>> 4] >>> shift) & MAXIMUM_COUNTER) != MAXIMUM_COUNTER) {
+                table[index >>> 4] += 1L << shift;
+                isAdded = true;
+            }
+        }
+        if (isAdded && ++additions == sampleSize) {
+            halve();
+        }
+    }
+
+    void clear() {
+        Arrays.fill(table, 0L);
+        additions = 0;
+    }
+
+    private void halve() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(long hash, int row) {
+        long rowHash = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (rowHash >>> 32) & counterMask;
+    }
+
+    private static long spread(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+}
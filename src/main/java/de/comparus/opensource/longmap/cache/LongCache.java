@@ -0,0 +1,483 @@
+package de.comparus.opensource.longmap.cache;
+
+import de.comparus.opensource.longmap.LongHashFunction;
+import de.comparus.opensource.longmap.LongIntMap;
+import de.comparus.opensource.longmap.LongIntMapImpl;
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
+import de.comparus.opensource.longmap.LongObjConsumer;
+import de.comparus.opensource.longmap.LongObjToLongFunction;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * This is a LongMap bounded by a maximum weight (by default every entry weighs 1, so it is the
+ * maximum number of entries), which evicts entries by an EvictionPolicy when it gets heavier.
+ *
+ * The entries live in slots of parallel arrays (keys, values, weights and the links of the
+ * eviction queues), and the slot of a key is found by a LongIntMapImpl, so neither the keys nor
+ * the queue nodes are objects. The eviction queues are doubly linked lists of slot indexes. A
+ * free slot is reused by the next insertion.
+ *
+ * A hit moves the entry within its queue, so {@link #get(long)}, like in an access-ordered
+ * LinkedHashMap, is a modification for a cursor. {@link #containsKey(long)} does not count as a
+ * use of the entry. The eviction listener is called after the evicted entry is removed. It is not
+ * called for the entries removed by {@link #remove(long)} or {@link #clear()}, and it must not
+ * modify the cache.
+ *
+ * The hit and miss counters include the lookups of the default LongMap methods based on get,
+ * such as computeIfAbsent, which is the usual way to load a missing entry.
+ */
+public class LongCache<V> implements LongMap<V> {
+    private static final int NO_SLOT = -1;
+    private static final byte NOT_LINKED = -1;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int DEFAULT_SLOTS_CAPACITY = 16;
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final long maximumWeight;
+    private final EvictionPolicy policy;
+    private final LongObjToLongFunction<? super V> weigher;
+    private final LongObjConsumer<? super V> evictionListener;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final FrequencySketch sketch;
+    private final LongIntMap slotsByKey =
+        new LongIntMapImpl(DEFAULT_SLOTS_CAPACITY, 0.75f, LongHashFunction.SPREAD, NO_SLOT);
+    private long[] keys;
+    private Object[] values;
+    private long[] weights;
+    private int[] previous;
+    private int[] next;
+    private byte[] queues;
+    private int usedSlots;
+    private int freeSlot;
+    private final int[] heads = new int[3];
+    private final int[] tails = new int[3];
+    private final long[] queueWeights = new long[3];
+    private long totalWeight;
+    private int modifications;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a W-TinyLFU cache of at most the given number of entries.
+     */
+    public LongCache(long maximumSize) {
+        this(maximumSize, EvictionPolicy.W_TINY_LFU);
+    }
+
+    public LongCache(long maximumSize, EvictionPolicy policy) {
+        this(maximumSize, policy, (key, value) -> 1L, (key, value) -> { });
+    }
+
+    /**
+     * @param maximumWeight the maximum total weight of the entries
+     * @param weigher the weight of an entry, it is taken when the entry is put and must not be
+     *     negative
+     * @param evictionListener called with every evicted entry
+     */
+    public LongCache(long maximumWeight, EvictionPolicy policy,
+                     LongObjToLongFunction<? super V> weigher,
+                     LongObjConsumer<? super V> evictionListener) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Illegal maximum weight: " + maximumWeight);
+        }
+        this.maximumWeight = maximumWeight;
+        this.policy = Objects.requireNonNull(policy);
+        this.weigher = Objects.requireNonNull(weigher);
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+        if (policy == EvictionPolicy.W_TINY_LFU) {
+            this.windowMaximum = Math.max(1, (long) (maximumWeight * (WINDOW_PERCENT / 100.0)));
+            this.protectedMaximum =
+                (long) ((maximumWeight - windowMaximum) * (PROTECTED_PERCENT / 100.0));
+            this.sketch = new FrequencySketch(maximumWeight);
+        } else {
+            this.windowMaximum = maximumWeight;
+            this.protectedMaximum = 0;
+            this.sketch = null;
+        }
+        allocateSlots();
+    }
+
+    @Override
+    public V put(long key, V value) {
+        long weight = weigher.applyAsLong(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight " + weight + " of key " + key);
+        }
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        int slot = slotsByKey.get(key);
+        V oldValue = null;
+        if (slot == NO_SLOT) {
+            slot = allocateSlot();
+            slotsByKey.put(key, slot);
+            keys[slot] = key;
+            values[slot] = value;
+            weights[slot] = weight;
+            link(slot, WINDOW);
+            totalWeight += weight;
+            modifications++;
+        } else {
+            oldValue = (V) values[slot];
+            values[slot] = value;
+            long weightDelta = weight - weights[slot];
+            weights[slot] = weight;
+            queueWeights[queues[slot]] += weightDelta;
+            totalWeight += weightDelta;
+            recordAccess(slot);
+        }
+        evict();
+        return oldValue;
+    }
+
+    @Override
+    public V get(long key) {
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        int slot = slotsByKey.get(key);
+        if (slot == NO_SLOT) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        recordAccess(slot);
+        return (V) values[slot];
+    }
+
+    @Override
+    public V remove(long key) {
+        int slot = slotsByKey.remove(key);
+        if (slot == NO_SLOT) return null;
+        V oldValue = (V) values[slot];
+        unlink(slot);
+        totalWeight -= weights[slot];
+        releaseSlot(slot);
+        modifications++;
+        return oldValue;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return slotsByKey.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return slotsByKey.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        for (int queue = WINDOW; queue <= PROTECTED; queue++) {
+            for (int slot = heads[queue]; slot != NO_SLOT; slot = next[slot]) {
+                if (Objects.equals(value, values[slot])) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the keys of the cache, the ones to be evicted sooner come first within every queue
+     */
+    @Override
+    public long[] keys() {
+        long[] result = new long[(int) size()];
+        int position = 0;
+        for (int queue = WINDOW; queue <= PROTECTED; queue++) {
+            for (int slot = heads[queue]; slot != NO_SLOT; slot = next[slot]) {
+                result[position++] = keys[slot];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public V[] values() {
+        Object[] result = new Object[(int) size()];
+        int position = 0;
+        for (int queue = WINDOW; queue <= PROTECTED; queue++) {
+            for (int slot = heads[queue]; slot != NO_SLOT; slot = next[slot]) {
+                result[position++] = values[slot];
+            }
+        }
+        return (V[]) result;
+    }
+
+    @Override
+    public long size() {
+        return slotsByKey.size();
+    }
+
+    @Override
+    public void clear() {
+        slotsByKey.clear();
+        allocateSlots();
+        totalWeight = 0;
+        if (sketch != null) {
+            sketch.clear();
+        }
+        modifications++;
+    }
+
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new QueueCursor();
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        int modificationsBefore = modifications;
+        for (int queue = WINDOW; queue <= PROTECTED; queue++) {
+            for (int slot = heads[queue]; slot != NO_SLOT; slot = next[slot]) {
+                action.accept(keys[slot], (V) values[slot]);
+                if (modificationsBefore != modifications) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    public long weight() {
+        return totalWeight;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the part of the lookups which found the key, {@code 1} if there were no lookups
+     */
+    public double hitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Zeroes the hit, miss and eviction counters.
+     */
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    private void recordAccess(int slot) {
+        int queue = queues[slot];
+        if (queue == PROBATION) {
+            unlink(slot);
+            link(slot, PROTECTED);
+            while (queueWeights[PROTECTED] > protectedMaximum) {
+                int demoted = heads[PROTECTED];
+                unlink(demoted);
+                link(demoted, PROBATION);
+            }
+        } else if (tails[queue] != slot) {
+            unlink(slot);
+            link(slot, queue);
+        }
+        modifications++;
+    }
+
+    private void evict() {
+        if (policy == EvictionPolicy.W_TINY_LFU) {
+            while (queueWeights[WINDOW] > windowMaximum) {
+                admit(heads[WINDOW]);
+            }
+        }
+        // the window holds all the entries of LRU, and a grown weight of an entry of the main
+        // space may leave W-TinyLFU overweight as well
+        while (totalWeight > maximumWeight) {
+            int victim = heads[PROBATION];
+            if (victim == NO_SLOT) victim = heads[PROTECTED];
+            if (victim == NO_SLOT) victim = heads[WINDOW];
+            evictSlot(victim);
+        }
+    }
+
+    /**
+     * Moves the entry leaving the window to the main space, if it is used more often than the
+     * entries it has to evict there, otherwise evicts the entry itself.
+     */
+    private void admit(int candidate) {
+        unlink(candidate);
+        long mainMaximum = maximumWeight - windowMaximum;
+        int candidateFrequency = sketch.frequency(keys[candidate]);
+        while (queueWeights[PROBATION] + queueWeights[PROTECTED] + weights[candidate]
+            > mainMaximum) {
+            int victim = heads[PROBATION];
+            if (victim == NO_SLOT) victim = heads[PROTECTED];
+            if (victim == NO_SLOT || sketch.frequency(keys[victim]) >= candidateFrequency) {
+                evictSlot(candidate);
+                return;
+            }
+            evictSlot(victim);
+        }
+        link(candidate, PROBATION);
+    }
+
+    private void evictSlot(int slot) {
+        long key = keys[slot];
+        V value = (V) values[slot];
+        slotsByKey.remove(key);
+        if (queues[slot] != NOT_LINKED) {
+            unlink(slot);
+        }
+        totalWeight -= weights[slot];
+        releaseSlot(slot);
+        evictionCount++;
+        modifications++;
+        evictionListener.accept(key, value);
+    }
+
+    private void link(int slot, int queue) {
+        int tail = tails[queue];
+        previous[slot] = tail;
+        next[slot] = NO_SLOT;
+        if (tail == NO_SLOT) {
+            heads[queue] = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tails[queue] = slot;
+        queues[slot] = (byte) queue;
+        queueWeights[queue] += weights[slot];
+    }
+
+    private void unlink(int slot) {
+        int queue = queues[slot];
+        int previousSlot = previous[slot];
+        int nextSlot = next[slot];
+        if (previousSlot == NO_SLOT) {
+            heads[queue] = nextSlot;
+        } else {
+            next[previousSlot] = nextSlot;
+        }
+        if (nextSlot == NO_SLOT) {
+            tails[queue] = previousSlot;
+        } else {
+            previous[nextSlot] = previousSlot;
+        }
+        queues[slot] = NOT_LINKED;
+        queueWeights[queue] -= weights[slot];
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NO_SLOT) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        if (usedSlots == keys.length) {
+            int capacity = usedSlots + (usedSlots >> 1);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            next = Arrays.copyOf(next, capacity);
+            queues = Arrays.copyOf(queues, capacity);
+        }
+        return usedSlots++;
+    }
+
+    /**
+     * Puts the slot to the list of free slots, which is linked through the next links.
+     */
+    private void releaseSlot(int slot) {
+        values[slot] = null;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+    }
+
+    private void allocateSlots() {
+        keys = new long[DEFAULT_SLOTS_CAPACITY];
+        values = new Object[DEFAULT_SLOTS_CAPACITY];
+        weights = new long[DEFAULT_SLOTS_CAPACITY];
+        previous = new int[DEFAULT_SLOTS_CAPACITY];
+        next = new int[DEFAULT_SLOTS_CAPACITY];
+        queues = new byte[DEFAULT_SLOTS_CAPACITY];
+        usedSlots = 0;
+        freeSlot = NO_SLOT;
+        Arrays.fill(heads, NO_SLOT);
+        Arrays.fill(tails, NO_SLOT);
+        Arrays.fill(queueWeights, 0L);
+    }
+
+    /**
+     * Walks over the queues from the entries to be evicted sooner.
+     */
+    private final class QueueCursor implements LongMapCursor<V> {
+        private final int expectedModifications = modifications;
+        private int queue = WINDOW;
+        private int slot = NO_SLOT;
+        private boolean isStarted;
+
+        @Override
+        public boolean advance() {
+            checkModifications();
+            if (!isStarted) {
+                isStarted = true;
+                slot = heads[queue];
+            } else if (slot != NO_SLOT) {
+                slot = next[slot];
+            } else {
+                return false;
+            }
+            while (slot == NO_SLOT && queue < PROTECTED) {
+                slot = heads[++queue];
+            }
+            return slot != NO_SLOT;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return keys[slot];
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) values[slot];
+        }
+
+        private void checkPosition() {
+            checkModifications();
+            if (slot == NO_SLOT) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        private void checkModifications() {
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package de.comparus.opensource.longmap.concurrent;
+
+import de.comparus.opensource.longmap.LongHashFunction;
+import de.comparus.opensource.longmap.LongKeyTable;
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * This is a thread-safe implementation of LongMap based on lock striping. The keys are distributed
+ * among a fixed number of segments, every segment is a small open-addressing hash table (the same
+ * layout as LongMapImpl has) guarded by its own lock, so writers of different segments never block
+ * each other and every segment grows on its own.
+ *
+ * Reads do not take locks: a reader probes the segment table optimistically and validates
+ * afterwards that no writer has modified the segment meanwhile (see StampedLock), only a read
+ * overlapping a write of the same segment falls back to the read lock.
+ *
+ * Null values are not supported, so a null result always means that there is no mapping. Bulk
+ * operations (keys, values, containsValue, clear, cursor, forEach) visit the segments one by one
+ * and are therefore only weakly consistent.
+ */
+public class ConcurrentLongMap<V> implements LongMap<V> {
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+    private static final int MAXIMUM_SEGMENT_NUMBER = 1 << 16;
+    private static final LongHashFunction HASH_FUNCTION = LongHashFunction.MURMUR3;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+
+    public ConcurrentLongMap() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    public ConcurrentLongMap(int expectedSize) {
+        this(expectedSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param concurrencyLevel the expected number of concurrently writing threads, the number of
+     *     segments is the nearest power of two not less than it
+     */
+    public ConcurrentLongMap(int expectedSize, int concurrencyLevel) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Illegal concurrency level: " + concurrencyLevel);
+        }
+        int segmentNumber = 1;
+        while (segmentNumber < concurrencyLevel && segmentNumber < MAXIMUM_SEGMENT_NUMBER) {
+            segmentNumber <<= 1;
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentNumber);
+        this.segmentMask = segmentNumber - 1;
+        this.segments = newSegmentArray(segmentNumber);
+        int segmentSize = expectedSize / segmentNumber + 1;
+        for (int i = 0; i < segmentNumber; i++) {
+            segments[i] = new Segment<>(segmentSize);
+        }
+    }
+
+    @Override
+    public V put(long key, V value) {
+        Objects.requireNonNull(value);
+        return segmentFor(key).put(key, value, false);
+    }
+
+    @Override
+    public V get(long key) {
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public V remove(long key) {
+        return segmentFor(key).remove(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment<V> segment : segments) {
+            if (segment.size != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        if (value == null) return false;
+        for (Segment<V> segment : segments) {
+            if (segment.containsValue(value)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long[] keys() {
+        long[][] segmentKeys = new long[segments.length][];
+        int length = 0;
+        for (int i = 0; i < segments.length; i++) {
+            segmentKeys[i] = segments[i].keys();
+            length += segmentKeys[i].length;
+        }
+        long[] result = new long[length];
+        int position = 0;
+        for (long[] keys : segmentKeys) {
+            System.arraycopy(keys, 0, result, position, keys.length);
+            position += keys.length;
+        }
+        return result;
+    }
+
+    @Override
+    public V[] values() {
+        Object[][] segmentValues = new Object[segments.length][];
+        int length = 0;
+        for (int i = 0; i < segments.length; i++) {
+            segmentValues[i] = segments[i].values();
+            length += segmentValues[i].length;
+        }
+        Object[] result = new Object[length];
+        int position = 0;
+        for (Object[] values : segmentValues) {
+            System.arraycopy(values, 0, result, position, values.length);
+            position += values.length;
+        }
+        return (V[]) result;
+    }
+
+    /**
+     * The cursor copies the mappings of one segment at a time under the read lock of the segment
+     * into buffers reused for all the segments, so the actions performed on the mappings never run
+     * under a lock and may modify this map.
+     */
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new SegmentCursor();
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        Objects.requireNonNull(value);
+        return segmentFor(key).put(key, value, true);
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        Objects.requireNonNull(value);
+        return segmentFor(key).replace(key, value);
+    }
+
+    /**
+     * The mapping function is called under the lock of the key segment, so it has to be short and
+     * must not modify this map.
+     */
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V value = get(key);
+        if (value != null) return value;
+        return segmentFor(key).computeIfAbsent(key, mappingFunction);
+    }
+
+    private final class SegmentCursor implements LongMapCursor<V> {
+        private final EntryBuffer buffer = new EntryBuffer();
+        private int segmentIndex;
+        private int index = -1;
+
+        @Override
+        public boolean advance() {
+            if (index < buffer.length) {
+                index++;
+            }
+            while (index == buffer.length && segmentIndex < segments.length) {
+                segments[segmentIndex++].copyEntries(buffer);
+                index = 0;
+            }
+            return index < buffer.length;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return buffer.keys[index];
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) buffer.values[index];
+        }
+
+        private void checkPosition() {
+            if (index < 0 || index >= buffer.length) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    private static final class EntryBuffer {
+        private long[] keys = new long[0];
+        private Object[] values = new Object[0];
+        private int length;
+    }
+
+    private Segment<V> segmentFor(long key) {
+        // the segment is chosen by a hash independent of the one choosing the cell in the segment
+        return segments[(LongHashFunction.FIBONACCI.hash(key) >>> segmentShift) & segmentMask];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Segment<V>[] newSegmentArray(int length) {
+        return (Segment<V>[]) new Segment<?>[length];
+    }
+
+    /**
+     * An open-addressing table of a segment. The arrays are replaced only together with the whole
+     * table, so a reader never sees keys of one table with the mask of another one.
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final Object[] values;
+        private final int mask;
+        private final int threshold;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+            this.threshold = capacity >> 1;
+        }
+    }
+
+    private static final class Segment<V> {
+        private static final long FREE_KEY = 0L;
+        private static final int MINIMUM_CAPACITY = 4;
+
+        private final StampedLock lock = new StampedLock();
+        private final int startCapacity;
+        private volatile Table table;
+        private volatile int size;
+        private boolean hasZeroKey;
+        private Object zeroValue;
+
+        private Segment(int expectedSize) {
+            int capacity = MINIMUM_CAPACITY;
+            while (capacity >> 1 < expectedSize && capacity < (1 << 30)) {
+                capacity <<= 1;
+            }
+            this.startCapacity = capacity;
+            this.table = new Table(capacity);
+        }
+
+        private V get(long key) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object value = find(key);
+                if (lock.validate(stamp)) {
+                    return (V) value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return (V) find(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probes the table without any lock. Under a concurrent write the result may be wrong, but
+         * the probing always terminates and stays within the arrays of a single table.
+         */
+        private Object find(long key) {
+            if (key == FREE_KEY) {
+                return zeroValue;
+            }
+            Table currentTable = this.table;
+            long[] keys = currentTable.keys;
+            int mask = currentTable.mask;
+            int index = HASH_FUNCTION.index(key, mask);
+            for (int probes = 0; probes <= mask; probes++) {
+                long currentKey = keys[index];
+                if (currentKey == key) {
+                    return currentTable.values[index];
+                }
+                if (currentKey == FREE_KEY) {
+                    return null;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private V put(long key, V value, boolean onlyIfAbsent) {
+            long stamp = lock.writeLock();
+            try {
+                if (key == FREE_KEY) {
+                    V oldValue = (V) zeroValue;
+                    if (oldValue == null || !onlyIfAbsent) {
+                        zeroValue = value;
+                        hasZeroKey = true;
+                        if (oldValue == null) size++;
+                    }
+                    return oldValue;
+                }
+                Table currentTable = this.table;
+                int index = findOrCreateIndex(currentTable, key);
+                if (index >= 0) {
+                    V oldValue = (V) currentTable.values[index];
+                    if (!onlyIfAbsent) {
+                        currentTable.values[index] = value;
+                    }
+                    return oldValue;
+                }
+                insertAt(currentTable, -index - 1, key, value);
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private V replace(long key, V value) {
+            long stamp = lock.writeLock();
+            try {
+                if (key == FREE_KEY) {
+                    V oldValue = (V) zeroValue;
+                    if (hasZeroKey) {
+                        zeroValue = value;
+                    }
+                    return oldValue;
+                }
+                Table currentTable = this.table;
+                int index = LongKeyTable.findIndex(currentTable.keys, currentTable.mask,
+                    HASH_FUNCTION, key);
+                if (index < 0) return null;
+                V oldValue = (V) currentTable.values[index];
+                currentTable.values[index] = value;
+                return oldValue;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+            long stamp = lock.writeLock();
+            try {
+                if (key == FREE_KEY) {
+                    if (!hasZeroKey) {
+                        zeroValue = mappingFunction.apply(key);
+                        if (zeroValue != null) {
+                            hasZeroKey = true;
+                            size++;
+                        }
+                    }
+                    return (V) zeroValue;
+                }
+                Table currentTable = this.table;
+                int index = findOrCreateIndex(currentTable, key);
+                if (index >= 0) {
+                    return (V) currentTable.values[index];
+                }
+                V value = mappingFunction.apply(key);
+                if (value != null) {
+                    insertAt(currentTable, -index - 1, key, value);
+                }
+                return value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private V remove(long key) {
+            long stamp = lock.writeLock();
+            try {
+                if (key == FREE_KEY) {
+                    V oldValue = (V) zeroValue;
+                    if (hasZeroKey) {
+                        hasZeroKey = false;
+                        zeroValue = null;
+                        size--;
+                    }
+                    return oldValue;
+                }
+                Table currentTable = this.table;
+                int index = LongKeyTable.findIndex(currentTable.keys, currentTable.mask,
+                    HASH_FUNCTION, key);
+                if (index < 0) return null;
+                V oldValue = (V) currentTable.values[index];
+                shiftKeysBack(currentTable, index);
+                size--;
+                return oldValue;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private boolean containsValue(Object value) {
+            long stamp = lock.readLock();
+            try {
+                if (hasZeroKey && value.equals(zeroValue)) return true;
+                Table currentTable = this.table;
+                for (int i = 0; i < currentTable.keys.length; i++) {
+                    if (currentTable.keys[i] != FREE_KEY && value.equals(currentTable.values[i])) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private long[] keys() {
+            long stamp = lock.readLock();
+            try {
+                long[] result = new long[size];
+                int position = 0;
+                if (hasZeroKey) {
+                    result[position++] = FREE_KEY;
+                }
+                for (long key : table.keys) {
+                    if (key != FREE_KEY) {
+                        result[position++] = key;
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private Object[] values() {
+            long stamp = lock.readLock();
+            try {
+                Object[] result = new Object[size];
+                int position = 0;
+                if (hasZeroKey) {
+                    result[position++] = zeroValue;
+                }
+                Table currentTable = this.table;
+                for (int i = 0; i < currentTable.keys.length; i++) {
+                    if (currentTable.keys[i] != FREE_KEY) {
+                        result[position++] = currentTable.values[i];
+                    }
+                }
+                return result;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Replaces the content of the buffer with the mappings of this segment, the buffer arrays
+         * are only reallocated if they are too small.
+         */
+        private void copyEntries(EntryBuffer buffer) {
+            long stamp = lock.readLock();
+            try {
+                if (buffer.keys.length < size) {
+                    buffer.keys = new long[size];
+                    buffer.values = new Object[size];
+                }
+                int position = 0;
+                if (hasZeroKey) {
+                    buffer.keys[position] = FREE_KEY;
+                    buffer.values[position++] = zeroValue;
+                }
+                Table currentTable = this.table;
+                for (int i = 0; i < currentTable.keys.length; i++) {
+                    if (currentTable.keys[i] != FREE_KEY) {
+                        buffer.keys[position] = currentTable.keys[i];
+                        buffer.values[position++] = currentTable.values[i];
+                    }
+                }
+                if (position < buffer.length) {
+                    // the values of the previous segment must not be kept reachable
+                    Arrays.fill(buffer.values, position, buffer.length, null);
+                }
+                buffer.length = position;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void clear() {
+            long stamp = lock.writeLock();
+            try {
+                table = new Table(startCapacity);
+                hasZeroKey = false;
+                zeroValue = null;
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private static int findOrCreateIndex(Table table, long key) {
+            return LongKeyTable.findOrCreateIndex(table.keys, table.mask, HASH_FUNCTION, key);
+        }
+
+        private void insertAt(Table currentTable, int index, long key, Object value) {
+            currentTable.values[index] = value;
+            currentTable.keys[index] = key;
+            size++;
+            if (size > currentTable.threshold) {
+                resize(currentTable);
+            }
+        }
+
+        /**
+         * Moves the entries straight into a table of the double capacity and publishes it, the
+         * readers still probing the previous table are invalidated by the write lock.
+         */
+        private void resize(Table oldTable) {
+            if (oldTable.keys.length >= (1 << 30)) {
+                throw new IllegalStateException("ConcurrentLongMap segment is full");
+            }
+            Table newTable = new Table(oldTable.keys.length << 1);
+            for (int i = 0; i < oldTable.keys.length; i++) {
+                long key = oldTable.keys[i];
+                if (key != FREE_KEY) {
+                    int index = LongKeyTable.findFreeCell(newTable.keys, newTable.mask,
+                        HASH_FUNCTION, key);
+                    newTable.keys[index] = key;
+                    newTable.values[index] = oldTable.values[i];
+                }
+            }
+            this.table = newTable;
+        }
+
+        private static void shiftKeysBack(Table table, int gap) {
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            int mask = table.mask;
+            int index;
+            while ((index = LongKeyTable.findShiftedCell(keys, mask, HASH_FUNCTION, gap)) >= 0) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                gap = index;
+            }
+            keys[gap] = FREE_KEY;
+            values[gap] = null;
+        }
+    }
+}
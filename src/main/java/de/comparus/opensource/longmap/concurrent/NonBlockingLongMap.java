@@ -0,0 +1,543 @@
+package de.comparus.opensource.longmap.concurrent;
+
+import de.comparus.opensource.longmap.LongHashFunction;
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * This is a non-blocking implementation of LongMap in the spirit of Cliff Click's
+ * NonBlockingHashMapLong. Neither reads nor writes ever take a lock, every state change of a cell
+ * is a single CAS:
+ *    1. a key cell goes from free to the key only once and never changes afterwards in this table;
+ *    2. a removed value is replaced with a tombstone, so probe sequences are never broken;
+ *    3. a full table (tombstones included) is migrated into a new one cooperatively: every writer
+ *       touching a table under migration copies a chunk of cells. A copied value is frozen first,
+ *       so no write can get lost between the tables, and then marked as moved.
+ *
+ * The table layout is the same as in LongMapImpl (parallel arrays of keys and values with linear
+ * probing, the key {@code 0} is kept aside), only the arrays are atomic ones.
+ *
+ * Null values are not supported, so a null result always means that there is no mapping. Bulk
+ * operations (keys, values, containsValue, cursor, forEach) finish a running migration first and
+ * are weakly consistent under concurrent writes.
+ */
+public class NonBlockingLongMap<V> implements LongMap<V> {
+    private static final int DEFAULT_TABLE_CAPACITY = 16;
+    private static final int MINIMUM_TABLE_CAPACITY = 64;
+    private static final int MAXIMUM_TABLE_CAPACITY = 1 << 30;
+    private static final int COPY_CHUNK = 256;
+    private static final long FREE_KEY = 0L;
+
+    private static final Object TOMBSTONE = new Object();
+    private static final Object MOVED = new Object();
+    // a cell which is migrated without ever having had a value
+    private static final Object MOVED_UNSET = new Object();
+
+    // conditions of putIfMatch
+    private static final Object MATCH_ANY = new Object();
+    private static final Object MATCH_ABSENT = new Object();
+    private static final Object MATCH_PRESENT = new Object();
+    private static final Object MATCH_NEVER_SET = new Object();
+
+    private final LongHashFunction hashFunction;
+    private final AtomicReference<Table> root = new AtomicReference<>();
+    private final AtomicReference<Object> zeroValue = new AtomicReference<>();
+
+    public NonBlockingLongMap() {
+        this(DEFAULT_TABLE_CAPACITY);
+    }
+
+    public NonBlockingLongMap(int startCapacity) {
+        this(startCapacity, LongHashFunction.SPREAD);
+    }
+
+    public NonBlockingLongMap(int startCapacity, LongHashFunction hashFunction) {
+        if (startCapacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + startCapacity);
+        }
+        this.hashFunction = Objects.requireNonNull(hashFunction);
+        this.root.set(new Table(calculateTableCapacity(startCapacity * 2L), new LongAdder()));
+    }
+
+    @Override
+    public V put(long key, V value) {
+        return putValue(key, Objects.requireNonNull(value), MATCH_ANY);
+    }
+
+    @Override
+    public V get(long key) {
+        if (key == FREE_KEY) {
+            return (V) zeroValue.get();
+        }
+        return (V) get(root.get(), key);
+    }
+
+    @Override
+    public V remove(long key) {
+        return putValue(key, TOMBSTONE, MATCH_ANY);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        if (value == null) return false;
+        if (value.equals(zeroValue.get())) return true;
+        Table table = settledTable();
+        for (int i = 0; i < table.capacity; i++) {
+            if (value.equals(liveValue(table.values.get(i)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long[] keys() {
+        Table table = settledTable();
+        boolean hasZeroKey = zeroValue.get() != null;
+        long[] result = new long[countLiveValues(table) + (hasZeroKey ? 1 : 0)];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = FREE_KEY;
+        }
+        for (int i = 0; i < table.capacity && position < result.length; i++) {
+            if (liveValue(table.values.get(i)) != null) {
+                result[position++] = table.keys.get(i);
+            }
+        }
+        return position == result.length ? result : Arrays.copyOf(result, position);
+    }
+
+    @Override
+    public V[] values() {
+        Table table = settledTable();
+        Object currentZeroValue = zeroValue.get();
+        Object[] result = new Object[countLiveValues(table) + (currentZeroValue != null ? 1 : 0)];
+        int position = 0;
+        if (currentZeroValue != null) {
+            result[position++] = currentZeroValue;
+        }
+        for (int i = 0; i < table.capacity && position < result.length; i++) {
+            Object value = liveValue(table.values.get(i));
+            if (value != null) {
+                result[position++] = value;
+            }
+        }
+        return (V[]) (position == result.length ? result : Arrays.copyOf(result, position));
+    }
+
+    /**
+     * The cursor reads every value once when it moves to its cell, so the key and the value it
+     * reports always belong to the same mapping even under concurrent writes.
+     */
+    @Override
+    public LongMapCursor<V> cursor() {
+        return new TableCursor<>(settledTable(), zeroValue.get());
+    }
+
+    @Override
+    public long size() {
+        return root.get().tableSize.sum() + (zeroValue.get() == null ? 0 : 1);
+    }
+
+    /**
+     * Replaces the table with an empty one. Writes racing with the clear may survive it or not; the
+     * ones which do not are counted by the detached tables only, so the size is not affected.
+     */
+    @Override
+    public void clear() {
+        Table table = root.get();
+        Table emptyTable = new Table(calculateTableCapacity(DEFAULT_TABLE_CAPACITY * 2L),
+            new LongAdder());
+        while (!root.compareAndSet(table, emptyTable)) {
+            table = root.get();
+        }
+        zeroValue.set(null);
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        return putValue(key, Objects.requireNonNull(value), MATCH_ABSENT);
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        return putValue(key, Objects.requireNonNull(value), MATCH_PRESENT);
+    }
+
+    /**
+     * Under contention the mapping function may be called by several threads for the same key, but
+     * only one of the computed values gets into the map and is returned to all of them.
+     */
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        V value = get(key);
+        if (value != null) return value;
+        V newValue = mappingFunction.apply(key);
+        if (newValue == null) return null;
+        V currentValue = putIfAbsent(key, newValue);
+        return currentValue == null ? newValue : currentValue;
+    }
+
+    private V putValue(long key, Object value, Object expected) {
+        if (key == FREE_KEY) {
+            return putZeroValue(value, expected);
+        }
+        Object oldValue = putIfMatch(root.get(), key, value, expected);
+        return (V) liveValue(oldValue);
+    }
+
+    private V putZeroValue(Object value, Object expected) {
+        Object newValue = value == TOMBSTONE ? null : value;
+        while (true) {
+            Object oldValue = zeroValue.get();
+            boolean isMatched = expected == MATCH_ANY
+                || (expected == MATCH_ABSENT && oldValue == null)
+                || (expected == MATCH_PRESENT && oldValue != null);
+            if (!isMatched || zeroValue.compareAndSet(oldValue, newValue)) {
+                return (V) oldValue;
+            }
+        }
+    }
+
+    private Object get(Table table, long key) {
+        search:
+        while (true) {
+            int mask = table.mask;
+            int index = calculateIndex(key, mask);
+            int probes = 0;
+            while (true) {
+                long currentKey = table.keys.get(index);
+                if (currentKey == key) {
+                    Object value = table.values.get(index);
+                    if (isMoved(value)) {
+                        table = table.next;
+                        continue search;
+                    }
+                    return liveValue(value);
+                }
+                if (currentKey == FREE_KEY || ++probes > table.reprobeLimit) {
+                    // a key missing here might have been put straight into the next table
+                    table = table.next;
+                    if (table == null) return null;
+                    continue search;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Puts the value (TOMBSTONE to remove) if the current value of the key meets the expected
+     * condition. A write finding the table under migration helps it and goes to the next table.
+     *
+     * @return the previous value of the key in its raw form (null, TOMBSTONE or a value)
+     */
+    private Object putIfMatch(Table table, long key, Object putValue, Object expected) {
+        search:
+        while (true) {
+            int mask = table.mask;
+            int index = calculateIndex(key, mask);
+            int probes = 0;
+            while (true) {
+                long currentKey = table.keys.get(index);
+                if (currentKey == FREE_KEY) {
+                    if (putValue == TOMBSTONE || expected == MATCH_PRESENT) {
+                        // there is nothing to remove or replace in this table
+                        if (table.next == null) return null;
+                        table = helpCopy(table);
+                        continue search;
+                    }
+                    if (table.keys.compareAndSet(index, FREE_KEY, key)) {
+                        if (table.usedSlots.incrementAndGet() > table.threshold) {
+                            resize(table, false);
+                        }
+                        break;
+                    }
+                    currentKey = table.keys.get(index);
+                }
+                if (currentKey == key) {
+                    break;
+                }
+                if (++probes > table.reprobeLimit) {
+                    resize(table, true);
+                    table = helpCopy(table);
+                    continue search;
+                }
+                index = (index + 1) & mask;
+            }
+
+            while (true) {
+                Object currentValue = table.values.get(index);
+                if (currentValue == MOVED && expected == MATCH_NEVER_SET) {
+                    // the cell had a value before it moved on, so the key has been copied here
+                    // already and has been written afterwards: this copy is a late one
+                    return currentValue;
+                }
+                if (isMoved(currentValue) || currentValue instanceof Frozen
+                    || (table.next != null && expected != MATCH_NEVER_SET)) {
+                    // the cell is migrating, the write has to go to the next table
+                    copySlot(table, index);
+                    table = helpCopy(table);
+                    continue search;
+                }
+                if (!isMatched(currentValue, expected)
+                    || (putValue == TOMBSTONE && liveValue(currentValue) == null)) {
+                    return currentValue;
+                }
+                if (table.values.compareAndSet(index, currentValue, putValue)) {
+                    if (expected != MATCH_NEVER_SET) {
+                        boolean wasLive = liveValue(currentValue) != null;
+                        boolean isLive = putValue != TOMBSTONE;
+                        if (!wasLive && isLive) {
+                            table.tableSize.increment();
+                        } else if (wasLive && !isLive) {
+                            table.tableSize.decrement();
+                        }
+                    }
+                    return currentValue;
+                }
+            }
+        }
+    }
+
+    private static boolean isMatched(Object currentValue, Object expected) {
+        if (expected == MATCH_ANY) return true;
+        if (expected == MATCH_NEVER_SET) return currentValue == null;
+        boolean isPresent = currentValue != null && currentValue != TOMBSTONE;
+        return expected == MATCH_PRESENT ? isPresent : !isPresent;
+    }
+
+    /**
+     * Starts the migration of the table if it has not been started yet. The new table is sized by
+     * the number of live entries, so a table full of tombstones is just cleaned (tables never
+     * shrink here, only clear does it), but a table with too long probe sequences is always
+     * doubled.
+     *
+     * @return the table the entries are migrated to
+     */
+    private Table resize(Table table, boolean isCrowded) {
+        Table next = table.next;
+        if (next != null) {
+            return next;
+        }
+        long liveSize = table.tableSize.sum();
+        int newCapacity = Math.max(table.capacity, calculateTableCapacity(liveSize * 4));
+        if (isCrowded) {
+            newCapacity = Math.max(newCapacity, calculateTableCapacity(table.capacity * 2L));
+        }
+        if (newCapacity == MAXIMUM_TABLE_CAPACITY && liveSize >= (MAXIMUM_TABLE_CAPACITY >> 1)) {
+            throw new IllegalStateException("NonBlockingLongMap cannot hold more than "
+                + (MAXIMUM_TABLE_CAPACITY >> 1) + " non-zero keys");
+        }
+        Table newTable = new Table(newCapacity, table.tableSize);
+        if (Table.NEXT_UPDATER.compareAndSet(table, null, newTable)) {
+            return newTable;
+        }
+        return table.next;
+    }
+
+    /**
+     * Copies the next not yet claimed chunk of the table and promotes the next table to the root
+     * once all the chunks are copied.
+     *
+     * @return the next table
+     */
+    private Table helpCopy(Table table) {
+        int start = table.copyIndex.getAndAdd(COPY_CHUNK);
+        if (start < table.capacity) {
+            int end = Math.min(table.capacity, start + COPY_CHUNK);
+            for (int i = start; i < end; i++) {
+                copySlot(table, i);
+            }
+            if (table.copyDone.addAndGet(end - start) == table.capacity) {
+                promote();
+            }
+        }
+        return table.next;
+    }
+
+    private void copySlot(Table table, int index) {
+        while (true) {
+            Object value = table.values.get(index);
+            if (isMoved(value)) {
+                return;
+            }
+            if (value instanceof Frozen) {
+                Object frozenValue = ((Frozen) value).value;
+                putIfMatch(table.next, table.keys.get(index), frozenValue, MATCH_NEVER_SET);
+                table.values.compareAndSet(index, value, MOVED);
+            } else {
+                // a live value is frozen before copying, nothing can be written to it afterwards
+                Object frozen = value == null ? MOVED_UNSET
+                    : liveValue(value) == null ? MOVED : new Frozen(value);
+                table.values.compareAndSet(index, value, frozen);
+            }
+        }
+    }
+
+    private void promote() {
+        Table table;
+        while ((table = root.get()).next != null && table.copyDone.get() >= table.capacity) {
+            root.compareAndSet(table, table.next);
+        }
+    }
+
+    /**
+     * Completes the running migrations, so that the root table holds all the entries.
+     */
+    private Table settledTable() {
+        Table table;
+        while ((table = root.get()).next != null) {
+            for (int i = 0; i < table.capacity; i++) {
+                copySlot(table, i);
+            }
+            root.compareAndSet(table, table.next);
+        }
+        return table;
+    }
+
+    private static int countLiveValues(Table table) {
+        int count = 0;
+        for (int i = 0; i < table.capacity; i++) {
+            if (liveValue(table.values.get(i)) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Object liveValue(Object value) {
+        if (value instanceof Frozen) {
+            value = ((Frozen) value).value;
+        }
+        return (value == TOMBSTONE || isMoved(value)) ? null : value;
+    }
+
+    private static boolean isMoved(Object value) {
+        return value == MOVED || value == MOVED_UNSET;
+    }
+
+    private int calculateIndex(long key, int mask) {
+        return hashFunction.index(key, mask);
+    }
+
+    private static int calculateTableCapacity(long expectedSlots) {
+        if (expectedSlots >= MAXIMUM_TABLE_CAPACITY) return MAXIMUM_TABLE_CAPACITY;
+        int capacity = MINIMUM_TABLE_CAPACITY;
+        while (capacity < expectedSlots) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static final class TableCursor<V> implements LongMapCursor<V> {
+        private final Table table;
+        private Object zeroValue;
+        // -1 stands for the zero key, which is kept aside the table
+        private int index = -2;
+        private Object value;
+
+        private TableCursor(Table table, Object zeroValue) {
+            this.table = table;
+            this.zeroValue = zeroValue;
+        }
+
+        @Override
+        public boolean advance() {
+            if (index == -2) {
+                index = -1;
+                value = zeroValue;
+                zeroValue = null;
+                if (value != null) return true;
+            }
+            while (index < table.capacity) {
+                if (++index < table.capacity
+                    && (value = liveValue(table.values.get(index))) != null) {
+                    return true;
+                }
+            }
+            value = null;
+            return false;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return index < 0 ? FREE_KEY : table.keys.get(index);
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return (V) value;
+        }
+
+        private void checkPosition() {
+            if (value == null) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    private static final class Table {
+        private static final AtomicReferenceFieldUpdater<Table, Table> NEXT_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "next");
+
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int capacity;
+        private final int mask;
+        private final int threshold;
+        private final int reprobeLimit;
+        // the number of live entries, shared by the tables a table is migrated to, so the entries
+        // written into a table detached by clear are never counted by the root one
+        private final LongAdder tableSize;
+        private final AtomicInteger usedSlots = new AtomicInteger();
+        private final AtomicInteger copyIndex = new AtomicInteger();
+        private final AtomicInteger copyDone = new AtomicInteger();
+        private volatile Table next;
+
+        private Table(int capacity, LongAdder tableSize) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.threshold = capacity >> 1;
+            this.reprobeLimit = 10 + (capacity >> 2);
+            this.tableSize = tableSize;
+        }
+    }
+
+    /**
+     * A value being copied to the next table.
+     */
+    private static final class Frozen {
+        private final Object value;
+
+        private Frozen(Object value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.comparus.opensource.longmap.offheap;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Allocates and frees direct buffers. The memory of a direct buffer is normally returned only when
+ * the garbage collector finds the buffer unreachable, so here it is released explicitly through the
+ * cleaner of the buffer (sun.misc.Unsafe#invokeCleaner since Java 9, DirectBuffer#cleaner before).
+ * If neither is accessible, the memory is left to the garbage collector.
+ */
+final class DirectMemory {
+    private static final Cleaner CLEANER = findCleaner();
+
+    private DirectMemory() {
+    }
+
+    static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    static void free(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect()) {
+            CLEANER.clean(buffer);
+        }
+    }
+
+    private static Cleaner findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8
+        }
+        try {
+            Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleanMethod.invoke(cleaner);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return buffer -> {
+                // left to the garbage collector
+            };
+        }
+    }
+
+    private interface Cleaner {
+        void invoke(ByteBuffer buffer) throws ReflectiveOperationException;
+
+        default void clean(ByteBuffer buffer) {
+            try {
+                invoke(buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // the buffer stays allocated until it is collected
+            }
+        }
+    }
+}
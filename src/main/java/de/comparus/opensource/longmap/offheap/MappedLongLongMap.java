@@ -0,0 +1,308 @@
+package de.comparus.opensource.longmap.offheap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This is a persistent implementation of LongLongMap: the table of OffHeapLongLongMap is mapped
+ * from a file, so every write goes straight to the file and reopening an existing file costs only
+ * mapping it again, nothing is re-inserted.
+ *
+ * The file starts with a header (see the offsets below) followed by the table cells, all numbers
+ * are little-endian. The number of entries is written to the header by {@link #force()} and
+ * {@link #close()}; a file which has not been closed properly is recognized on reopening and its
+ * entries are recounted by a scan of the table. A growing table is written into a new file
+ * (path + ".resizing") which replaces the old one when it is filled, so a crash during the resize
+ * leaves the old file intact.
+ *
+ * The file must not be opened by several maps at the same time.
+ */
+public class MappedLongLongMap extends OffHeapLongLongMap {
+    public static final int FORMAT_VERSION = 1;
+
+    private static final long MAGIC = 0x214C4C50414D4C4CL; // "LLMAPLL!"
+    private static final int HEADER_SIZE = 4096;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int NO_VALUE_OFFSET = 16;
+    private static final int TABLE_SIZE_OFFSET = 24;
+    private static final int FLAGS_OFFSET = 28;
+    private static final int ZERO_VALUE_OFFSET = 32;
+    private static final int HAS_ZERO_KEY_FLAG = 1;
+    private static final int CLOSED_PROPERLY_FLAG = 2;
+
+    private Path path;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private TableFile resizedFile;
+
+    private MappedLongLongMap(TableFile file, ByteBuffer[] pages, int capacity, long noValue) {
+        super(pages, capacity, noValue);
+        this.path = file.path;
+        this.channel = file.channel;
+        this.header = file.header;
+        this.hasZeroKey = (header.getInt(FLAGS_OFFSET) & HAS_ZERO_KEY_FLAG) != 0;
+        this.zeroPayload = header.getLong(ZERO_VALUE_OFFSET);
+        if ((header.getInt(FLAGS_OFFSET) & CLOSED_PROPERLY_FLAG) != 0) {
+            this.tableSize = header.getInt(TABLE_SIZE_OFFSET);
+        } else {
+            this.tableSize = countKeys();
+        }
+        // until it is closed, the file is considered as not closed properly
+        writeHeader(false);
+        header.force();
+    }
+
+    public static MappedLongLongMap open(Path path) throws IOException {
+        return open(path, DEFAULT_TABLE_CAPACITY, 0L);
+    }
+
+    /**
+     * Opens the map stored in the file or creates a new one if the file does not exist or is empty.
+     *
+     * @param startCapacity the expected number of entries, used only if a new file is created
+     * @param noValue the value returned for missing keys, used only if a new file is created
+     * @throws IOException if the file cannot be mapped or is not a map file of a known version
+     */
+    public static MappedLongLongMap open(Path path, int startCapacity, long noValue)
+        throws IOException {
+        TableFile file = TableFile.open(path);
+        try {
+            int capacity;
+            if (file.isNew) {
+                capacity = calculateTableCapacity(startCapacity);
+                file.initializeHeader(capacity, noValue, true);
+            } else {
+                capacity = file.readCapacity();
+                noValue = file.header.getLong(NO_VALUE_OFFSET);
+            }
+            ByteBuffer[] pages = file.mapPages(capacity);
+            return new MappedLongLongMap(file, pages, capacity, noValue);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long put(long key, long value) {
+        long oldValue = super.put(key, value);
+        if (key == FREE_KEY) writeHeader(false);
+        return oldValue;
+    }
+
+    @Override
+    public long remove(long key) {
+        long oldValue = super.remove(key);
+        if (key == FREE_KEY) writeHeader(false);
+        return oldValue;
+    }
+
+    @Override
+    public long addTo(long key, long delta) {
+        long newValue = super.addTo(key, delta);
+        if (key == FREE_KEY) writeHeader(false);
+        return newValue;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        writeHeader(false);
+    }
+
+    /**
+     * Writes all the changes of the mapping through to the storage device.
+     */
+    public void force() {
+        ensureOpen();
+        writeHeader(false);
+        for (ByteBuffer page : pages()) {
+            ((MappedByteBuffer) page).force();
+        }
+        header.force();
+    }
+
+    /**
+     * Flushes the table, marks the file as closed properly and unmaps it.
+     */
+    @Override
+    public void close() {
+        if (channel == null) return;
+        force();
+        writeHeader(true);
+        header.force();
+        super.close();
+        try {
+            TableFile.close(channel, header);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            channel = null;
+            header = null;
+        }
+    }
+
+    /**
+     * Maps the pages of the growing table from a new file, which replaces the current one in
+     * {@link #releasePages(ByteBuffer[])}. The new file is written through to the device, zero key
+     * included, before it replaces the current one, so a crash right after the move leaves a
+     * complete file, which is recounted on reopening.
+     */
+    @Override
+    ByteBuffer[] allocatePages(int capacity) {
+        Path resizedPath = path.resolveSibling(path.getFileName() + ".resizing");
+        try {
+            Files.deleteIfExists(resizedPath);
+            resizedFile = TableFile.open(resizedPath);
+            // the file is not complete until it replaces the current one, so its entries are
+            // recounted if it is ever opened as it is
+            resizedFile.initializeHeader(capacity, getNoValue(), false);
+            return resizedFile.mapPages(capacity);
+        } catch (IOException e) {
+            if (resizedFile != null) {
+                resizedFile.close();
+                resizedFile = null;
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    void releasePages(ByteBuffer[] pages) {
+        for (ByteBuffer page : pages) {
+            DirectMemory.free(page);
+        }
+        if (resizedFile == null) return;
+        try {
+            writeHeader(resizedFile.header, false);
+            for (ByteBuffer page : pages()) {
+                ((MappedByteBuffer) page).force();
+            }
+            resizedFile.header.force();
+            TableFile.close(channel, header);
+            Files.move(resizedFile.path, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            channel = resizedFile.channel;
+            header = resizedFile.header;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            resizedFile = null;
+        }
+    }
+
+    private void writeHeader(boolean isClosedProperly) {
+        writeHeader(header, isClosedProperly);
+    }
+
+    private void writeHeader(MappedByteBuffer header, boolean isClosedProperly) {
+        int flags = (hasZeroKey ? HAS_ZERO_KEY_FLAG : 0)
+            | (isClosedProperly ? CLOSED_PROPERLY_FLAG : 0);
+        header.putInt(CAPACITY_OFFSET, capacity());
+        header.putInt(TABLE_SIZE_OFFSET, tableSize);
+        header.putLong(ZERO_VALUE_OFFSET, zeroPayload);
+        header.putInt(FLAGS_OFFSET, flags);
+    }
+
+    private int countKeys() {
+        int count = 0;
+        for (int i = 0; i < capacity(); i++) {
+            if (keyAt(i) != FREE_KEY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * An open file of a table with its mapped header.
+     */
+    private static final class TableFile {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer header;
+        private final boolean isNew;
+
+        private TableFile(Path path, FileChannel channel, MappedByteBuffer header, boolean isNew) {
+            this.path = path;
+            this.channel = channel;
+            this.header = header;
+            this.isNew = isNew;
+        }
+
+        private static TableFile open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                boolean isNew = channel.size() == 0;
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                return new TableFile(path, channel, header, isNew);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private void initializeHeader(int capacity, long noValue, boolean isClosedProperly) {
+            header.putLong(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, FORMAT_VERSION);
+            header.putInt(CAPACITY_OFFSET, capacity);
+            header.putLong(NO_VALUE_OFFSET, noValue);
+            header.putInt(TABLE_SIZE_OFFSET, 0);
+            header.putInt(FLAGS_OFFSET, isClosedProperly ? CLOSED_PROPERLY_FLAG : 0);
+            header.putLong(ZERO_VALUE_OFFSET, 0L);
+        }
+
+        private int readCapacity() throws IOException {
+            if (header.getLong(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException(path + " is not a MappedLongLongMap file");
+            }
+            int version = header.getInt(VERSION_OFFSET);
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version " + version + " of " + path);
+            }
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            if (capacity < 4 || capacity > MAXIMUM_TABLE_CAPACITY || Integer.bitCount(capacity) != 1
+                || channel.size() < HEADER_SIZE + (long) capacity * CELL_SIZE) {
+                throw new IOException("Corrupted header of " + path);
+            }
+            return capacity;
+        }
+
+        private ByteBuffer[] mapPages(int capacity) throws IOException {
+            int pageCapacity = pageCapacity(capacity);
+            long pageSize = (long) pageCapacity * CELL_SIZE;
+            ByteBuffer[] pages = new ByteBuffer[capacity / pageCapacity];
+            for (int i = 0; i < pages.length; i++) {
+                // the file is extended by zeros, so the cells of a new table are free
+                pages[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * pageSize,
+                    pageSize).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return pages;
+        }
+
+        private void close() {
+            try {
+                close(channel, header);
+            } catch (IOException e) {
+                // the original failure is more important
+            }
+        }
+
+        private static void close(FileChannel channel, MappedByteBuffer header) throws IOException {
+            DirectMemory.free(header);
+            channel.close();
+        }
+    }
+}
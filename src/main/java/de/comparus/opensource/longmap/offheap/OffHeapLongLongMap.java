@@ -0,0 +1,129 @@
+package de.comparus.opensource.longmap.offheap;
+
+import de.comparus.opensource.longmap.LongLongMap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This is an implementation of LongLongMap whose table lives in direct memory: the value is kept
+ * right in the table cell next to its key, so an entry costs 16 bytes off the heap and nothing on
+ * it. The memory is freed deterministically by {@link #close()}.
+ */
+public class OffHeapLongLongMap extends OffHeapTable implements LongLongMap {
+    private final long noValue;
+
+    public OffHeapLongLongMap() {
+        this(DEFAULT_TABLE_CAPACITY, 0L);
+    }
+
+    /**
+     * @param noValue the value returned for missing keys
+     */
+    public OffHeapLongLongMap(int startCapacity, long noValue) {
+        super(startCapacity);
+        this.noValue = noValue;
+    }
+
+    /**
+     * Adopts the pages of an existing table.
+     */
+    OffHeapLongLongMap(ByteBuffer[] pages, int capacity, long noValue) {
+        super(pages, capacity);
+        this.noValue = noValue;
+    }
+
+    @Override
+    public long put(long key, long value) {
+        ensureOpen();
+        if (key == FREE_KEY) {
+            long oldValue = hasZeroKey ? zeroPayload : noValue;
+            zeroPayload = value;
+            hasZeroKey = true;
+            return oldValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            insertAt(-index - 1, key, value);
+            return noValue;
+        }
+        long oldValue = payloadAt(index);
+        setPayloadAt(index, value);
+        return oldValue;
+    }
+
+    @Override
+    public long get(long key) {
+        ensureOpen();
+        if (key == FREE_KEY) {
+            return hasZeroKey ? zeroPayload : noValue;
+        }
+        int index = findIndex(key);
+        return index < 0 ? noValue : payloadAt(index);
+    }
+
+    @Override
+    public long remove(long key) {
+        ensureOpen();
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) return noValue;
+            hasZeroKey = false;
+            return zeroPayload;
+        }
+        int index = findIndex(key);
+        if (index < 0) return noValue;
+        long oldValue = payloadAt(index);
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public boolean containsValue(long value) {
+        ensureOpen();
+        if (hasZeroKey && zeroPayload == value) return true;
+        for (int i = 0; i < capacity(); i++) {
+            if (keyAt(i) != FREE_KEY && payloadAt(i) == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long[] values() {
+        ensureOpen();
+        long[] result = new long[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = zeroPayload;
+        }
+        for (int i = 0; i < capacity(); i++) {
+            if (keyAt(i) != FREE_KEY) {
+                result[position++] = payloadAt(i);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long getNoValue() {
+        return noValue;
+    }
+
+    @Override
+    public long addTo(long key, long delta) {
+        ensureOpen();
+        if (key == FREE_KEY) {
+            zeroPayload = hasZeroKey ? zeroPayload + delta : delta;
+            hasZeroKey = true;
+            return zeroPayload;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            insertAt(-index - 1, key, delta);
+            return delta;
+        }
+        long newValue = payloadAt(index) + delta;
+        setPayloadAt(index, newValue);
+        return newValue;
+    }
+}
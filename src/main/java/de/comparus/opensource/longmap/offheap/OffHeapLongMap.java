@@ -0,0 +1,219 @@
+package de.comparus.opensource.longmap.offheap;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
+import de.comparus.opensource.longmap.LongObjConsumer;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * This is an implementation of LongMap which keeps both the table and the values in direct memory:
+ * a value is serialized by the codec into a byte slice of a ValueArena and the table cell of the
+ * key holds the reference to the slice. The garbage collector sees only a handful of objects no
+ * matter how many entries the map holds, the price is a decoding on every read of a value.
+ *
+ * Null values are not supported. The memory is freed deterministically by {@link #close()}.
+ */
+public class OffHeapLongMap<V> extends OffHeapTable implements LongMap<V> {
+    private final ValueCodec<V> codec;
+    private ValueArena arena = new ValueArena();
+
+    public OffHeapLongMap(ValueCodec<V> codec) {
+        this(DEFAULT_TABLE_CAPACITY, codec);
+    }
+
+    public OffHeapLongMap(int startCapacity, ValueCodec<V> codec) {
+        super(startCapacity);
+        this.codec = Objects.requireNonNull(codec);
+    }
+
+    @Override
+    public V put(long key, V value) {
+        ensureOpen();
+        Objects.requireNonNull(value);
+        if (key == FREE_KEY) {
+            V oldValue = hasZeroKey ? releaseValue(zeroPayload) : null;
+            zeroPayload = storeValue(value);
+            hasZeroKey = true;
+            compactIfWorth();
+            return oldValue;
+        }
+        int index = findOrCreateIndex(key);
+        if (index < 0) {
+            insertAt(-index - 1, key, storeValue(value));
+            return null;
+        }
+        V oldValue = releaseValue(payloadAt(index));
+        setPayloadAt(index, storeValue(value));
+        compactIfWorth();
+        return oldValue;
+    }
+
+    @Override
+    public V get(long key) {
+        ensureOpen();
+        if (key == FREE_KEY) {
+            return hasZeroKey ? readValue(zeroPayload) : null;
+        }
+        int index = findIndex(key);
+        return index < 0 ? null : readValue(payloadAt(index));
+    }
+
+    @Override
+    public V remove(long key) {
+        ensureOpen();
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) return null;
+            hasZeroKey = false;
+            V oldValue = releaseValue(zeroPayload);
+            compactIfWorth();
+            return oldValue;
+        }
+        int index = findIndex(key);
+        if (index < 0) return null;
+        V oldValue = releaseValue(payloadAt(index));
+        removeAt(index);
+        compactIfWorth();
+        return oldValue;
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        ensureOpen();
+        if (value == null) return false;
+        if (hasZeroKey && value.equals(readValue(zeroPayload))) return true;
+        for (int i = 0; i < capacity(); i++) {
+            if (keyAt(i) != FREE_KEY && value.equals(readValue(payloadAt(i)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V[] values() {
+        ensureOpen();
+        Object[] result = new Object[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = readValue(zeroPayload);
+        }
+        for (int i = 0; i < capacity(); i++) {
+            if (keyAt(i) != FREE_KEY) {
+                result[position++] = readValue(payloadAt(i));
+            }
+        }
+        return (V[]) result;
+    }
+
+    /**
+     * The cursor decodes a value only when {@link LongMapCursor#value()} is called, so a scan over
+     * the keys alone creates no objects at all.
+     */
+    @Override
+    public LongMapCursor<V> cursor() {
+        ensureOpen();
+        return new TableCursor();
+    }
+
+    @Override
+    public void forEach(LongObjConsumer<? super V> action) {
+        ensureOpen();
+        Objects.requireNonNull(action);
+        if (hasZeroKey) {
+            action.accept(FREE_KEY, readValue(zeroPayload));
+        }
+        for (int i = 0; i < capacity(); i++) {
+            long key = keyAt(i);
+            if (key != FREE_KEY) {
+                action.accept(key, readValue(payloadAt(i)));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        arena.close();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        arena.close();
+    }
+
+    private long storeValue(V value) {
+        long reference = arena.allocate(codec.sizeOf(value));
+        codec.write(value, arena.slice(reference));
+        return reference;
+    }
+
+    private V readValue(long reference) {
+        return codec.read(arena.slice(reference));
+    }
+
+    private V releaseValue(long reference) {
+        V value = readValue(reference);
+        arena.release(reference);
+        return value;
+    }
+
+    /**
+     * Moves the live values into a new arena once the released slices take most of the old one.
+     */
+    private void compactIfWorth() {
+        if (!arena.isWorthCompacting()) return;
+        ValueArena newArena = new ValueArena();
+        if (hasZeroKey) {
+            zeroPayload = newArena.copy(arena.slice(zeroPayload));
+        }
+        for (int i = 0; i < capacity(); i++) {
+            if (keyAt(i) != FREE_KEY) {
+                setPayloadAt(i, newArena.copy(arena.slice(payloadAt(i))));
+            }
+        }
+        arena.close();
+        arena = newArena;
+    }
+
+    private final class TableCursor implements LongMapCursor<V> {
+        // -1 stands for the zero key, which is kept aside the table
+        private int index = -2;
+
+        @Override
+        public boolean advance() {
+            ensureOpen();
+            if (index == -2) {
+                index = -1;
+                if (hasZeroKey) return true;
+            }
+            while (index < capacity()) {
+                if (++index < capacity() && keyAt(index) != FREE_KEY) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long key() {
+            checkPosition();
+            return index < 0 ? FREE_KEY : keyAt(index);
+        }
+
+        @Override
+        public V value() {
+            checkPosition();
+            return readValue(index < 0 ? zeroPayload : payloadAt(index));
+        }
+
+        private void checkPosition() {
+            ensureOpen();
+            if (index == -2 || index >= capacity()) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+}
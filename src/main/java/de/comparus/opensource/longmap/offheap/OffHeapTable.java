@@ -0,0 +1,266 @@
+package de.comparus.opensource.longmap.offheap;
+
+import de.comparus.opensource.longmap.LongHashFunction;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An open-addressing hash table living in direct memory. Every cell takes 16 bytes: the key and an
+ * 8-byte payload whose meaning is up to a subclass (a value itself or a reference to it). The
+ * cells are spread over pages of at most 2^20 cells, so the table is not limited by the 2 GB size
+ * of a single buffer. Probing is the same as in LongMapImpl: linear probing with backward-shift
+ * deletion, the key {@code 0} marks a free cell and its mapping is stored aside.
+ *
+ * The memory is freed by {@link #close()}; any use of a closed table throws IllegalStateException.
+ */
+abstract class OffHeapTable implements AutoCloseable {
+    static final long FREE_KEY = 0L;
+    static final int DEFAULT_TABLE_CAPACITY = 16;
+    static final float LOAD_FACTOR = 0.75f;
+    static final int CELL_SIZE = 16;
+    static final int PAGE_SHIFT = 20;
+    static final int MAXIMUM_TABLE_CAPACITY = 1 << 30;
+
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private final int startCapacity;
+    private ByteBuffer[] pages;
+    private int capacity;
+    private int mask;
+    private int threshold;
+    int tableSize;
+    boolean hasZeroKey;
+    long zeroPayload;
+    private boolean isClosed;
+
+    OffHeapTable(int startCapacity) {
+        this.startCapacity = calculateTableCapacity(startCapacity);
+        this.pages = allocateDirectPages(this.startCapacity);
+        setCapacity(this.startCapacity);
+    }
+
+    /**
+     * Adopts the pages of an existing table.
+     */
+    OffHeapTable(ByteBuffer[] pages, int capacity) {
+        this.startCapacity = capacity;
+        this.pages = pages;
+        setCapacity(capacity);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public long size() {
+        ensureOpen();
+        return hasZeroKey ? tableSize + 1L : tableSize;
+    }
+
+    public boolean containsKey(long key) {
+        ensureOpen();
+        if (key == FREE_KEY) return hasZeroKey;
+        return findIndex(key) >= 0;
+    }
+
+    public long[] keys() {
+        ensureOpen();
+        long[] result = new long[(int) size()];
+        int position = 0;
+        if (hasZeroKey) {
+            result[position++] = FREE_KEY;
+        }
+        for (int i = 0; i < capacity; i++) {
+            long key = keyAt(i);
+            if (key != FREE_KEY) {
+                result[position++] = key;
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        ensureOpen();
+        ByteBuffer[] oldPages = pages;
+        pages = allocatePages(startCapacity);
+        setCapacity(startCapacity);
+        releasePages(oldPages);
+        tableSize = 0;
+        hasZeroKey = false;
+        zeroPayload = 0;
+    }
+
+    /**
+     * Frees the direct memory of the table. Closing a closed table does nothing.
+     */
+    @Override
+    public void close() {
+        if (isClosed) return;
+        isClosed = true;
+        releasePages(pages);
+        pages = null;
+    }
+
+    final void ensureOpen() {
+        if (isClosed) {
+            throw new IllegalStateException("The map has been closed");
+        }
+    }
+
+    final int capacity() {
+        return capacity;
+    }
+
+    final ByteBuffer[] pages() {
+        return pages;
+    }
+
+    final long keyAt(int index) {
+        return pages[index >>> PAGE_SHIFT].getLong((index & PAGE_MASK) * CELL_SIZE);
+    }
+
+    final long payloadAt(int index) {
+        return pages[index >>> PAGE_SHIFT].getLong((index & PAGE_MASK) * CELL_SIZE + 8);
+    }
+
+    final void setPayloadAt(int index, long payload) {
+        pages[index >>> PAGE_SHIFT].putLong((index & PAGE_MASK) * CELL_SIZE + 8, payload);
+    }
+
+    final int findIndex(long key) {
+        int index = calculateIndex(key, mask);
+        long currentKey;
+        while ((currentKey = keyAt(index)) != FREE_KEY) {
+            if (currentKey == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the key if it is present, otherwise {@code -(index + 1)} where index is
+     *     the free cell where the key has to be inserted
+     */
+    final int findOrCreateIndex(long key) {
+        int index = calculateIndex(key, mask);
+        long currentKey;
+        while ((currentKey = keyAt(index)) != FREE_KEY) {
+            if (currentKey == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -index - 1;
+    }
+
+    final void insertAt(int index, long key, long payload) {
+        setCell(pages, index, key, payload);
+        if (++tableSize > threshold) {
+            resizeTable(capacity << 1);
+        }
+    }
+
+    final void removeAt(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            long currentKey = keyAt(index);
+            if (currentKey == FREE_KEY) {
+                break;
+            }
+            int home = calculateIndex(currentKey, mask);
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                setCell(pages, gap, currentKey, payloadAt(index));
+                gap = index;
+            }
+        }
+        setCell(pages, gap, FREE_KEY, 0L);
+        tableSize--;
+    }
+
+    private void resizeTable(int newCapacity) {
+        if (capacity >= MAXIMUM_TABLE_CAPACITY) {
+            if (tableSize >= MAXIMUM_TABLE_CAPACITY - 1) {
+                throw new IllegalStateException("The table cannot hold more than "
+                    + (MAXIMUM_TABLE_CAPACITY - 1) + " non-zero keys");
+            }
+            threshold = MAXIMUM_TABLE_CAPACITY - 2;
+            return;
+        }
+        ByteBuffer[] oldPages = pages;
+        int oldCapacity = capacity;
+        pages = allocatePages(newCapacity);
+        setCapacity(newCapacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            ByteBuffer page = oldPages[i >>> PAGE_SHIFT];
+            int offset = (i & PAGE_MASK) * CELL_SIZE;
+            long key = page.getLong(offset);
+            if (key != FREE_KEY) {
+                int index = calculateIndex(key, mask);
+                while (keyAt(index) != FREE_KEY) {
+                    index = (index + 1) & mask;
+                }
+                setCell(pages, index, key, page.getLong(offset + 8));
+            }
+        }
+        releasePages(oldPages);
+    }
+
+    private void setCapacity(int capacity) {
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.threshold = Math.min(capacity - 2, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static void setCell(ByteBuffer[] pages, int index, long key, long payload) {
+        ByteBuffer page = pages[index >>> PAGE_SHIFT];
+        int offset = (index & PAGE_MASK) * CELL_SIZE;
+        page.putLong(offset, key);
+        page.putLong(offset + 8, payload);
+    }
+
+    /**
+     * Provides zeroed pages for a table of the given capacity. The pages of the current table stay
+     * untouched until {@link #releasePages(ByteBuffer[])} is called for them.
+     */
+    ByteBuffer[] allocatePages(int capacity) {
+        return allocateDirectPages(capacity);
+    }
+
+    void releasePages(ByteBuffer[] pages) {
+        for (ByteBuffer page : pages) {
+            DirectMemory.free(page);
+        }
+    }
+
+    static int pageCapacity(int capacity) {
+        return Math.min(capacity, 1 << PAGE_SHIFT);
+    }
+
+    static int calculateTableCapacity(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + expectedSize);
+        }
+        int capacity = 4;
+        while (capacity * LOAD_FACTOR < expectedSize && capacity < MAXIMUM_TABLE_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static ByteBuffer[] allocateDirectPages(int capacity) {
+        int pageCapacity = pageCapacity(capacity);
+        ByteBuffer[] pages = new ByteBuffer[capacity / pageCapacity];
+        for (int i = 0; i < pages.length; i++) {
+            // a direct buffer is zeroed, so all its cells are free
+            pages[i] = DirectMemory.allocate(pageCapacity * CELL_SIZE);
+        }
+        return pages;
+    }
+
+    private static int calculateIndex(long key, int mask) {
+        return LongHashFunction.MURMUR3.hash(key) & mask;
+    }
+}
@@ -0,0 +1,82 @@
+package de.comparus.opensource.longmap.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An append-only store of byte slices in direct memory. A slice is addressed by a long reference
+ * (the chunk index in the upper half and the offset in the lower one) and is prefixed by its
+ * length. Released slices are only counted, the space is reclaimed by copying the live slices into
+ * a new arena.
+ */
+final class ValueArena implements AutoCloseable {
+    private static final int LENGTH_SIZE = 4;
+    private static final int FIRST_CHUNK_SIZE = 1 << 16;
+    private static final int MAXIMUM_CHUNK_SIZE = 1 << 24;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private ByteBuffer currentChunk;
+    private long usedBytes;
+    private long releasedBytes;
+
+    /**
+     * @return the reference to a new slice of the given length
+     */
+    long allocate(int length) {
+        int slotSize = LENGTH_SIZE + length;
+        if (currentChunk == null || currentChunk.remaining() < slotSize) {
+            int chunkSize = currentChunk == null ? FIRST_CHUNK_SIZE
+                : Math.min(MAXIMUM_CHUNK_SIZE, currentChunk.capacity() << 1);
+            currentChunk = DirectMemory.allocate(Math.max(chunkSize, slotSize));
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = currentChunk;
+        }
+        int offset = currentChunk.position();
+        currentChunk.putInt(length);
+        currentChunk.position(offset + slotSize);
+        usedBytes += slotSize;
+        return ((long) (chunks.length - 1) << 32) | offset;
+    }
+
+    /**
+     * @return a view of the slice positioned at its start and limited by its end
+     */
+    ByteBuffer slice(long reference) {
+        ByteBuffer chunk = chunks[(int) (reference >>> 32)];
+        int offset = (int) reference;
+        int length = chunk.getInt(offset);
+        ByteBuffer slice = chunk.duplicate();
+        slice.limit(offset + LENGTH_SIZE + length).position(offset + LENGTH_SIZE);
+        return slice;
+    }
+
+    void release(long reference) {
+        releasedBytes += LENGTH_SIZE + chunks[(int) (reference >>> 32)].getInt((int) reference);
+    }
+
+    boolean isWorthCompacting() {
+        return releasedBytes > FIRST_CHUNK_SIZE && releasedBytes > usedBytes / 2;
+    }
+
+    /**
+     * Copies the slice into this arena.
+     *
+     * @return the reference to the copy
+     */
+    long copy(ByteBuffer slice) {
+        long reference = allocate(slice.remaining());
+        slice(reference).put(slice);
+        return reference;
+    }
+
+    @Override
+    public void close() {
+        for (ByteBuffer chunk : chunks) {
+            DirectMemory.free(chunk);
+        }
+        chunks = new ByteBuffer[0];
+        currentChunk = null;
+        usedBytes = 0;
+        releasedBytes = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package de.comparus.opensource.longmap.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts values of an off-heap map to byte slices and back.
+ */
+public interface ValueCodec<V> {
+
+    ValueCodec<String> UTF8_STRING = new ValueCodec<String>() {
+        @Override
+        public int sizeOf(String value) {
+            return value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void write(String value, ByteBuffer target) {
+            target.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer source) {
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+        @Override
+        public int sizeOf(byte[] value) {
+            return value.length;
+        }
+
+        @Override
+        public void write(byte[] value, ByteBuffer target) {
+            target.put(value);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer source) {
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+            return bytes;
+        }
+    };
+
+    /**
+     * @return the exact number of bytes {@link #write(Object, ByteBuffer)} is going to write
+     */
+    int sizeOf(V value);
+
+    /**
+     * Writes the value at the current position of the target.
+     */
+    void write(V value, ByteBuffer target);
+
+    /**
+     * Reads the value from the source, whose remaining bytes are exactly the slice of the value.
+     */
+    V read(ByteBuffer source);
+}
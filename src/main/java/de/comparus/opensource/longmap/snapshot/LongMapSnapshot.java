@@ -0,0 +1,330 @@
+package de.comparus.opensource.longmap.snapshot;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
+import de.comparus.opensource.longmap.LongMapOnBalancedTree;
+import de.comparus.opensource.longmap.NavigableLongMap;
+import de.comparus.opensource.longmap.offheap.ValueCodec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the entries of a LongMap to a channel in a compact binary form and reads them back.
+ *
+ * A snapshot starts with a header: the magic number, the format version and the number of
+ * entries, all little-endian. The entries follow in the ascending order of their keys: the first
+ * key is written as a zigzag varint, every next key as the unsigned varint of its difference from
+ * the previous one, so dense keys take a single byte. Each key is followed by the size of the value
+ * plus one as a varint ({@code 0} stands for {@code null}) and the bytes of the value written by
+ * the codec. The snapshot ends with the CRC32 of everything before it.
+ *
+ * Both directions go through a fixed buffer, only a value larger than the buffer gets a buffer of
+ * its own. Reading inserts the entries by {@link LongMap#putAll(long[], Object[])} in ascending
+ * batches, so LongMapImpl grows once per batch and LongMapOnBalancedTree is built from the sorted
+ * entries instead of rebalancing after every insertion.
+ */
+public final class LongMapSnapshot {
+    public static final int FORMAT_VERSION = 1;
+
+    private static final long MAGIC = 0x2150414E534D4C4CL; // "LLMSNAP!"
+    private static final int HEADER_SIZE = 20;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_VARINT_SIZE = 10;
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final int MAX_BATCH_SIZE = Integer.MAX_VALUE - 8;
+
+    private LongMapSnapshot() {
+    }
+
+    /**
+     * Writes all the entries of the map to the channel. The map must not be modified meanwhile;
+     * the keys of a map which is not a {@link NavigableLongMap} are sorted before writing.
+     *
+     * @return the number of written entries
+     * @throws ConcurrentModificationException if the number of entries changed during writing
+     */
+    public static <V> long write(LongMap<? extends V> map, ValueCodec<? super V> codec,
+                                 WritableByteChannel channel) throws IOException {
+        Writer<V> writer = new Writer<>(codec, channel);
+        if (map instanceof NavigableLongMap) {
+            long count = map.size();
+            writer.writeHeader(count);
+            long written = 0;
+            LongMapCursor<? extends V> cursor = map.cursor();
+            while (cursor.advance()) {
+                writer.writeEntry(cursor.key(), cursor.value());
+                written++;
+            }
+            if (written != count) {
+                throw new ConcurrentModificationException(
+                    "The map had " + count + " entries, but " + written + " were written");
+            }
+        } else {
+            long[] keys = map.keys();
+            Arrays.sort(keys);
+            writer.writeHeader(keys.length);
+            for (long key : keys) {
+                writer.writeEntry(key, map.get(key));
+            }
+        }
+        return writer.finish();
+    }
+
+    /**
+     * Reads the entries of a snapshot written by {@link #write(LongMap, ValueCodec,
+     * WritableByteChannel)} into the target map. The entries of the target with the same keys are
+     * replaced, the others are kept.
+     *
+     * The number of entries in the header is not trusted for any allocation, the batches grow with
+     * the entries actually read. The checksum is verified before the last batch is put, so a
+     * LongMapOnBalancedTree, which gets all the entries in one batch, and any target of a snapshot
+     * with fewer than 65536 entries is left unchanged by a corrupted snapshot. Larger snapshots are
+     * put batch by batch and may have updated the target when the checksum fails; to keep the
+     * target intact in any case, read into an empty map and replace the target with it.
+     *
+     * @return the number of read entries
+     * @throws IOException if the stream is not a snapshot of a known version, is truncated or does
+     *                     not match its checksum
+     */
+    public static <V> long read(ReadableByteChannel channel, ValueCodec<? extends V> codec,
+                                LongMap<V> target) throws IOException {
+        Reader reader = new Reader(channel);
+        long count = reader.readHeader();
+        // the bulk insertion of LongMapOnBalancedTree rebuilds the whole tree from the merged
+        // entries, so it gets all the entries in a single batch
+        boolean isSingleBatch = target instanceof LongMapOnBalancedTree;
+        long[] keys = new long[(int) Math.min(count, BATCH_SIZE)];
+        @SuppressWarnings("unchecked")
+        V[] values = (V[]) new Object[keys.length];
+        int batchSize = 0;
+        long previousKey = 0;
+        for (long read = 0; read < count; read++) {
+            long key;
+            if (read == 0) {
+                key = decodeZigZag(reader.readVarLong());
+            } else {
+                long delta = reader.readVarLong();
+                key = previousKey + delta;
+                if (delta == 0 || key <= previousKey) {
+                    throw new IOException("The keys of the snapshot are not ascending");
+                }
+            }
+            V value = reader.readValue(codec);
+            if (batchSize == keys.length) {
+                if (isSingleBatch && keys.length < MAX_BATCH_SIZE) {
+                    int length = (int) Math.min(Math.min(count, MAX_BATCH_SIZE), keys.length * 2L);
+                    keys = Arrays.copyOf(keys, length);
+                    values = Arrays.copyOf(values, length);
+                } else {
+                    target.putAll(keys, values);
+                    batchSize = 0;
+                }
+            }
+            keys[batchSize] = key;
+            values[batchSize++] = value;
+            previousKey = key;
+        }
+        reader.checkTrailer();
+        if (batchSize > 0) {
+            target.putAll(Arrays.copyOf(keys, batchSize), Arrays.copyOf(values, batchSize));
+        }
+        return count;
+    }
+
+    private static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer<V> {
+        private final ValueCodec<? super V> codec;
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer =
+            ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 checksum = new CRC32();
+        private long count;
+        private long previousKey;
+
+        Writer(ValueCodec<? super V> codec, WritableByteChannel channel) {
+            this.codec = codec;
+            this.channel = channel;
+        }
+
+        void writeHeader(long count) {
+            buffer.putLong(MAGIC).putInt(FORMAT_VERSION).putLong(count);
+        }
+
+        void writeEntry(long key, V value) throws IOException {
+            int valueSize = value == null ? 0 : codec.sizeOf(value);
+            if (buffer.remaining() < 2 * MAX_VARINT_SIZE) {
+                flush();
+            }
+            putVarLong(count == 0 ? encodeZigZag(key) : key - previousKey);
+            putVarLong(value == null ? 0 : valueSize + 1L);
+            if (value != null) {
+                if (buffer.remaining() < valueSize) {
+                    flush();
+                }
+                if (buffer.remaining() < valueSize) {
+                    ByteBuffer valueBuffer =
+                        ByteBuffer.allocate(valueSize).order(ByteOrder.LITTLE_ENDIAN);
+                    codec.write(value, valueBuffer);
+                    valueBuffer.flip();
+                    checksum.update(valueBuffer.array(), 0, valueBuffer.limit());
+                    writeFully(valueBuffer);
+                } else {
+                    codec.write(value, buffer);
+                }
+            }
+            previousKey = key;
+            count++;
+        }
+
+        long finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+            return count;
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.array(), 0, buffer.limit());
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer =
+            ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 checksum = new CRC32();
+
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        long readHeader() throws IOException {
+            require(HEADER_SIZE);
+            if (buffer.getLong() != MAGIC) {
+                throw new IOException("The stream is not a LongMap snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + version);
+            }
+            long count = buffer.getLong();
+            if (count < 0) {
+                throw new IOException("Invalid number of entries " + count);
+            }
+            return count;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in the snapshot");
+        }
+
+        <V> V readValue(ValueCodec<? extends V> codec) throws IOException {
+            long sizeAndOne = readVarLong();
+            if (sizeAndOne == 0) {
+                return null;
+            }
+            if (sizeAndOne < 0 || sizeAndOne > Integer.MAX_VALUE) {
+                throw new IOException("Invalid value size " + (sizeAndOne - 1));
+            }
+            int size = (int) (sizeAndOne - 1);
+            if (size <= buffer.capacity()) {
+                require(size);
+                ByteBuffer slice = buffer.slice();
+                slice.limit(size);
+                buffer.position(buffer.position() + size);
+                return codec.read(slice.order(ByteOrder.LITTLE_ENDIAN));
+            }
+            ByteBuffer valueBuffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            int buffered = buffer.remaining();
+            valueBuffer.put(buffer);
+            readFully(valueBuffer);
+            checksum.update(valueBuffer.array(), buffered, size - buffered);
+            valueBuffer.flip();
+            return codec.read(valueBuffer);
+        }
+
+        void checkTrailer() throws IOException {
+            require(CHECKSUM_SIZE);
+            checksum.update(buffer.array(), 0, buffer.position());
+            int expected = buffer.getInt();
+            if (expected != (int) checksum.getValue()) {
+                throw new IOException("The checksum of the snapshot does not match");
+            }
+        }
+
+        /**
+         * Makes at least the given number of bytes remaining in the buffer, the consumed bytes are
+         * added to the checksum before they are discarded.
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            checksum.update(buffer.array(), 0, buffer.position());
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("The snapshot is truncated");
+                }
+            }
+            buffer.flip();
+        }
+
+        /**
+         * Fills the target from the channel, a large value is read past the buffer. The remaining
+         * bytes of the buffer must already be moved to the target.
+         */
+        private void readFully(ByteBuffer target) throws IOException {
+            checksum.update(buffer.array(), 0, buffer.position());
+            buffer.clear().flip();
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    throw new IOException("The snapshot is truncated");
+                }
+            }
+        }
+    }
+}
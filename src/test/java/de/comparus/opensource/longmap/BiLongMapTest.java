@@ -0,0 +1,123 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against BiLongMap and checks the value index against the forward
+ * mappings.
+ */
+public class BiLongMapTest extends LongMapContractTest {
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new BiLongMap<>();
+    }
+
+    @Test
+    public void shouldFindKeysByValue() {
+        BiLongMap<String> map = new BiLongMap<>();
+        map.put(1L, "one");
+        map.put(2L, "even");
+        map.put(4L, "even");
+        map.put(6L, "even");
+        map.put(7L, null);
+
+        assertArrayEquals(new long[]{1L}, map.keysOf("one"));
+        assertArrayEquals(new long[]{2L, 4L, 6L}, sorted(map.keysOf("even")));
+        assertArrayEquals(new long[]{7L}, map.keysOf(null));
+        assertArrayEquals(new long[0], map.keysOf("odd"));
+        assertEquals(3, map.valueCount());
+
+        map.put(4L, "four");
+        map.remove(6L);
+        map.put(7L, "seven");
+
+        assertArrayEquals(new long[]{2L}, map.keysOf("even"));
+        assertArrayEquals(new long[]{4L}, map.keysOf("four"));
+        assertFalse(map.containsValue(null));
+        assertTrue(map.containsValue("seven"));
+    }
+
+    @Test
+    public void shouldIndexWrappedMap() {
+        LongMap<String> tree = new LongMapOnBalancedTree<>();
+        tree.put(3L, "three");
+        tree.put(30L, "three");
+
+        BiLongMap<String> map = new BiLongMap<>(tree);
+
+        assertArrayEquals(new long[]{3L, 30L}, sorted(map.keysOf("three")));
+        assertArrayEquals(new long[]{3L, 30L}, map.keys());
+    }
+
+    @Test
+    public void shouldMatchScanUnderRandomUpdates() {
+        BiLongMap<Integer> map = new BiLongMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(31);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(3000);
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else if (operation == 1) {
+                map.putIfAbsent(key, random.nextInt(100));
+                expected.putIfAbsent(key, map.get(key));
+            } else {
+                Integer value = random.nextInt(10) == 0 ? null : random.nextInt(100);
+                map.put(key, value);
+                expected.put(key, value);
+            }
+        }
+
+        Map<Integer, Long> keyCounts = new HashMap<>();
+        expected.values().forEach(value -> keyCounts.merge(value, 1L, Long::sum));
+        assertEquals(keyCounts.size(), map.valueCount());
+        for (Map.Entry<Integer, Long> entry : keyCounts.entrySet()) {
+            long[] keys = map.keysOf(entry.getKey());
+            assertEquals(entry.getValue().longValue(), keys.length);
+            for (long key : keys) {
+                assertEquals(entry.getKey(), expected.get(key));
+            }
+        }
+        assertFalse(map.containsValue(1000));
+    }
+
+    @Test
+    public void shouldIndexManyValuesOfCollidingHashCodes() {
+        BiLongMap<Long> map = new BiLongMap<>();
+        int count = 20_000;
+        for (long i = 1; i <= count; i++) {
+            // i and i << 32 have the same hashCode
+            map.put(i, i);
+            map.put(-i, i << 32);
+        }
+        for (long i = 1; i <= count; i += 2) {
+            map.remove(i);
+        }
+
+        assertEquals(count + count / 2, map.valueCount());
+        for (long i = 1; i <= count; i++) {
+            assertArrayEquals(i % 2 == 0 ? new long[]{i} : new long[0], map.keysOf(i));
+            assertArrayEquals(new long[]{-i}, map.keysOf(i << 32));
+        }
+        map.clear();
+        assertEquals(0, map.valueCount());
+        assertFalse(map.containsValue(2L));
+    }
+
+    private static long[] sorted(long[] keys) {
+        Arrays.sort(keys);
+        return keys;
+    }
+}
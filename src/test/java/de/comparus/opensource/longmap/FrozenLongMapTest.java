@@ -0,0 +1,160 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+public class FrozenLongMapTest {
+
+    @Test
+    public void shouldCopyHashMapInKeyOrder() {
+        LongMap<String> map = new LongMapImpl<>();
+        map.put(30L, "thirty");
+        map.put(-10L, "minus ten");
+        map.put(20L, null);
+
+        FrozenLongMap<String> frozen = map.freeze();
+        map.put(40L, "forty");
+
+        assertEquals(3, frozen.size());
+        assertArrayEquals(new long[]{-10L, 20L, 30L}, frozen.keys());
+        assertArrayEquals(new Object[]{"minus ten", null, "thirty"}, frozen.values());
+        assertTrue(frozen.containsKey(20L));
+        assertNull(frozen.get(20L));
+        assertTrue(frozen.containsValue(null));
+        assertFalse(frozen.containsKey(40L));
+        assertSame(frozen, frozen.freeze());
+    }
+
+    @Test
+    public void shouldMatchTreeMapForSkewedKeys() {
+        LongMap<Long> map = new LongMapImpl<>();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random random = new Random(23);
+        for (int i = 0; i < 20_000; i++) {
+            // clusters of dense keys far apart, so the interpolation guesses are often wrong
+            long key = random.nextInt(3) == 0 ? random.nextLong()
+                : ((long) random.nextInt(4) << 40) + random.nextInt(1000);
+            map.put(key, (long) i);
+            expected.put(key, (long) i);
+        }
+        map.put(Long.MIN_VALUE, 0L);
+        expected.put(Long.MIN_VALUE, 0L);
+        map.put(Long.MAX_VALUE, 0L);
+        expected.put(Long.MAX_VALUE, 0L);
+
+        FrozenLongMap<Long> frozen = FrozenLongMap.copyOf(map);
+
+        assertEquals(expected.size(), frozen.size());
+        int position = 0;
+        long[] keys = frozen.keys();
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getKey().longValue(), keys[position++]);
+            assertEquals(entry.getValue(), frozen.get(entry.getKey()));
+        }
+        for (int i = 0; i < 20_000; i++) {
+            long key = i % 2 == 0 ? random.nextLong() : ((long) random.nextInt(4) << 40)
+                + random.nextInt(1000);
+            assertEquals(expected.get(key), frozen.get(key));
+            Long floorKey = expected.floorKey(key);
+            if (floorKey != null) {
+                assertEquals(floorKey.longValue(), frozen.floorKey(key));
+            }
+            Long ceilingKey = expected.ceilingKey(key);
+            if (ceilingKey != null) {
+                assertEquals(ceilingKey.longValue(), frozen.ceilingKey(key));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFindRandomKeys() {
+        LongMap<Long> map = new LongMapImpl<>();
+        Random random = new Random(31);
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextLong();
+            map.put(key, key);
+        }
+        map.put(0L, 0L);
+        map.put(Long.MIN_VALUE, Long.MIN_VALUE);
+        map.put(Long.MAX_VALUE, Long.MAX_VALUE);
+
+        FrozenLongMap<Long> frozen = map.freeze();
+
+        for (long key : map.keys()) {
+            assertEquals(Long.valueOf(key), frozen.get(key));
+            assertTrue(frozen.containsKey(key));
+            assertEquals(key, frozen.floorKey(key));
+        }
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextLong();
+            assertEquals(map.get(key), frozen.get(key));
+            assertEquals(map.containsKey(key), frozen.containsKey(key));
+        }
+        assertFalse(frozen.containsKey(1L));
+    }
+
+    @Test
+    public void shouldWalkOverRange() {
+        LongMap<Long> map = new LongMapOnBPlusTree<>();
+        for (long key = 0; key < 100; key++) {
+            map.put(key * 10, key);
+        }
+
+        NavigableLongMap<Long> subMap = map.freeze().subMap(95L, true, 305L, false);
+        LongMapCursor<Long> cursor = subMap.cursor();
+        for (long key = 100; key <= 300; key += 10) {
+            assertTrue(cursor.advance());
+            assertEquals(key, cursor.key());
+            assertEquals(Long.valueOf(key / 10), cursor.value());
+        }
+        assertFalse(cursor.advance());
+        assertEquals(21L, subMap.size());
+        assertEquals(100L, subMap.firstKey());
+        assertNull(subMap.get(310L));
+        assertTrue(map.freeze().subMap(0L, false, 10L, false).isEmpty());
+    }
+
+    @Test
+    public void shouldPublishNewVersion() {
+        LongMap<String> map = new LongMapImpl<>();
+        map.put(1L, "one");
+        PublishedLongMap<String> published = new PublishedLongMap<>(map);
+        FrozenLongMap<String> first = published.current();
+
+        map.put(2L, "two");
+        assertSame(first, published.publish(map));
+
+        assertEquals("two", published.get(2L));
+        assertEquals(2, published.size());
+        assertFalse(first.containsKey(2L));
+        assertTrue(new PublishedLongMap<String>().isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void shouldRejectMissingFloorKey() {
+        LongMap<Long> map = new LongMapImpl<>();
+        map.put(1L, 1L);
+
+        map.freeze().floorKey(0L);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectPut() {
+        new LongMapImpl<String>().freeze().put(1L, "one");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectPutToPublishedMap() {
+        new PublishedLongMap<String>().putIfAbsent(1L, "one");
+    }
+}
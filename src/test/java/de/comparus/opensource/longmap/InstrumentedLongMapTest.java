@@ -0,0 +1,109 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against InstrumentedLongMap and checks its statistics.
+ */
+public class InstrumentedLongMapTest extends LongMapContractTest {
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new InstrumentedLongMap<>();
+    }
+
+    @Test
+    public void shouldCountLookups() {
+        InstrumentedLongMap<String> map = new InstrumentedLongMap<>();
+        map.put(1L, "one");
+        map.put(2L, null);
+
+        map.get(1L);
+        map.get(2L);
+        map.get(3L);
+        map.get(0L);
+        map.containsKey(0L);
+        map.containsKey(1L);
+
+        LongMapStats stats = map.stats();
+        assertEquals(2, stats.getGetHits());
+        assertEquals(2, stats.getGetMisses());
+        assertEquals(1, stats.getContainsKeyHits());
+        assertEquals(1, stats.getContainsKeyMisses());
+
+        map.resetStats();
+
+        assertEquals(0, map.stats().getGetHits());
+    }
+
+    @Test
+    public void shouldCountLookupsWhileResizingIncrementally() {
+        InstrumentedLongMap<Long> map = new InstrumentedLongMap<>(16, 0.75f, true);
+        for (long key = 0; key < 1000; key++) {
+            map.put(key, key % 2 == 0 ? null : key);
+        }
+
+        for (long key = 0; key < 2000; key++) {
+            map.get(key);
+        }
+
+        assertEquals(1000, map.stats().getGetHits());
+        assertEquals(1000, map.stats().getGetMisses());
+    }
+
+    @Test
+    public void shouldCountResizes() {
+        InstrumentedLongMap<Long> map = new InstrumentedLongMap<>(16, 0.75f);
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, key);
+        }
+
+        LongMapStats stats = map.stats();
+        assertEquals(1000, stats.getSize());
+        assertEquals(2048, stats.getCapacity());
+        assertEquals(6, stats.getResizeCount());
+        assertTrue(stats.getResizeTimeNanos() > 0);
+        assertEquals(1000.0 / 2048, stats.getFillRatio(), 1e-9);
+    }
+
+    @Test
+    public void shouldCountProbeLengths() {
+        // all the keys fall into the same cell and line up after each other
+        InstrumentedLongMap<Long> map = new InstrumentedLongMap<>(16, 0.75f, false, key -> 0);
+        for (long key = 1; key <= 4; key++) {
+            map.put(key, key);
+        }
+        map.put(0L, 0L);
+
+        long[] histogram = map.stats().getProbeLengthHistogram();
+        assertArrayEquals(new long[]{2, 1, 1, 1}, Arrays.copyOf(histogram, 4));
+        assertEquals(3, map.stats().getMaxProbeLength());
+        assertEquals(6.0 / 5, map.stats().getAverageProbeLength(), 1e-9);
+    }
+
+    @Test
+    public void shouldExposeStatsThroughJmx() throws Exception {
+        InstrumentedLongMap<Long> map = new InstrumentedLongMap<>();
+        map.put(5L, 5L);
+        map.get(5L);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        ObjectName name = map.registerMBean("test");
+        try {
+            assertEquals(1L, server.getAttribute(name, "Size"));
+            assertEquals(1L, server.getAttribute(name, "GetHits"));
+            map.put(6L, 6L);
+            assertEquals(2L, server.getAttribute(name, "Size"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
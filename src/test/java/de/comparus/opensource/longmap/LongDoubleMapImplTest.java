@@ -0,0 +1,106 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+/**
+ * Runs the LongKeyTable contract against LongDoubleMapImpl and checks the values the contract
+ * cannot express as longs: fractions, the signed zeros and NaN.
+ */
+public class LongDoubleMapImplTest extends LongKeyTableContractTest {
+
+    @Override
+    protected LongKeyTable createTestedInstance(long noValue) {
+        return new LongDoubleMapImpl(16, 0.75f, LongHashFunction.SPREAD, noValue);
+    }
+
+    @Override
+    protected long put(long key, long value) {
+        return (long) map().put(key, value);
+    }
+
+    @Override
+    protected long get(long key) {
+        return (long) map().get(key);
+    }
+
+    @Override
+    protected long remove(long key) {
+        return (long) map().remove(key);
+    }
+
+    @Override
+    protected long addTo(long key, long delta) {
+        return (long) map().addTo(key, delta);
+    }
+
+    @Override
+    protected boolean containsValue(long value) {
+        return map().containsValue(value);
+    }
+
+    @Override
+    protected long[] values() {
+        return Arrays.stream(map().values()).mapToLong(value -> (long) value).toArray();
+    }
+
+    @Test
+    public void shouldAddFractionalDeltas() {
+        LongDoubleMap map = new LongDoubleMapImpl();
+
+        assertEquals(0.25, map.addTo(1L, 0.25), 0);
+        assertEquals(0.75, map.addTo(1L, 0.5), 0);
+        assertEquals(-0.5, map.addTo(0L, -0.5), 0);
+        assertEquals(-0.375, map.addTo(0L, 0.125), 0);
+
+        assertEquals(0.75, map.get(1L), 0);
+        assertEquals(-0.375, map.get(0L), 0);
+        assertTrue(map.containsValue(0.75));
+        assertFalse(map.containsValue(0.5));
+    }
+
+    @Test
+    public void shouldTellNegativeZeroFromZero() {
+        LongDoubleMap map = new LongDoubleMapImpl();
+        map.put(1L, -0.0);
+        map.put(0L, -0.0);
+
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(map.get(1L)));
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(map.get(0L)));
+        assertTrue(map.containsValue(-0.0));
+        assertFalse(map.containsValue(0.0));
+
+        map.put(1L, 0.0);
+        map.remove(0L);
+
+        assertTrue(map.containsValue(0.0));
+        assertFalse(map.containsValue(-0.0));
+    }
+
+    @Test
+    public void shouldUseNaNAsNoValue() {
+        LongDoubleMap map = new LongDoubleMapImpl(16, 0.75f, LongHashFunction.SPREAD, Double.NaN);
+
+        assertTrue(Double.isNaN(map.getNoValue()));
+        assertTrue(Double.isNaN(map.get(1L)));
+        assertTrue(Double.isNaN(map.put(1L, 1.5)));
+        assertTrue(Double.isNaN(map.remove(2L)));
+        assertTrue(Double.isNaN(map.remove(0L)));
+        assertFalse(map.containsValue(Double.NaN));
+
+        map.put(2L, Double.NaN);
+
+        assertTrue(map.containsKey(2L));
+        assertTrue(map.containsValue(Double.NaN));
+        assertEquals(1.5, map.remove(1L), 0);
+        assertTrue(Double.isNaN(map.get(1L)));
+    }
+
+    private LongDoubleMap map() {
+        return (LongDoubleMap) testedInstance;
+    }
+}
@@ -0,0 +1,48 @@
+package de.comparus.opensource.longmap;
+
+import java.util.Arrays;
+
+/**
+ * Runs the LongKeyTable contract against LongIntMapImpl.
+ */
+public class LongIntMapImplTest extends LongKeyTableContractTest {
+
+    @Override
+    protected LongKeyTable createTestedInstance(long noValue) {
+        return new LongIntMapImpl(16, 0.75f, LongHashFunction.SPREAD, (int) noValue);
+    }
+
+    @Override
+    protected long put(long key, long value) {
+        return map().put(key, (int) value);
+    }
+
+    @Override
+    protected long get(long key) {
+        return map().get(key);
+    }
+
+    @Override
+    protected long remove(long key) {
+        return map().remove(key);
+    }
+
+    @Override
+    protected long addTo(long key, long delta) {
+        return map().addTo(key, (int) delta);
+    }
+
+    @Override
+    protected boolean containsValue(long value) {
+        return map().containsValue((int) value);
+    }
+
+    @Override
+    protected long[] values() {
+        return Arrays.stream(map().values()).asLongStream().toArray();
+    }
+
+    private LongIntMap map() {
+        return (LongIntMap) testedInstance;
+    }
+}
@@ -0,0 +1,119 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The behaviour shared by the hash tables with primitive values. The tests use small whole
+ * numbers as values, which every value type holds exactly, so a subclass only converts them to
+ * its value type and back.
+ */
+public abstract class LongKeyTableContractTest {
+    protected LongKeyTable testedInstance;
+
+    @Before
+    public void init() {
+        testedInstance = createTestedInstance(-1L);
+        put(1L, 10L);
+        put(5L, 50L);
+    }
+
+    /**
+     * @param noValue the value returned for missing keys
+     */
+    protected abstract LongKeyTable createTestedInstance(long noValue);
+
+    protected abstract long put(long key, long value);
+
+    protected abstract long get(long key);
+
+    protected abstract long remove(long key);
+
+    protected abstract long addTo(long key, long delta);
+
+    protected abstract boolean containsValue(long value);
+
+    protected abstract long[] values();
+
+    @Test
+    public void shouldSaveAndGetData() {
+        assertEquals(-1L, put(10L, 100L));
+        assertEquals(10L, put(1L, 11L));
+
+        assertEquals(100L, get(10L));
+        assertEquals(11L, get(1L));
+        assertEquals(-1L, get(2L));
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldDeleteData() {
+        assertEquals(50L, remove(5L));
+        assertEquals(-1L, remove(5L));
+
+        assertFalse(testedInstance.containsKey(5L));
+        assertEquals(1L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldKeepZeroKey() {
+        assertEquals(-1L, get(0L));
+        put(0L, 7L);
+
+        assertTrue(testedInstance.containsKey(0L));
+        assertEquals(7L, remove(0L));
+        assertFalse(testedInstance.containsKey(0L));
+    }
+
+    @Test
+    public void shouldAddToValues() {
+        assertEquals(15L, addTo(1L, 5L));
+        assertEquals(3L, addTo(2L, 3L));
+        assertEquals(4L, addTo(0L, 4L));
+
+        assertEquals(15L, get(1L));
+        assertEquals(4L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldShowContainsValueCorrectly() {
+        assertTrue(containsValue(50L));
+        assertFalse(containsValue(60L));
+    }
+
+    @Test
+    public void shouldGetKeysAndValues() {
+        assertArrayEquals(new long[] {1L, 5L}, testedInstance.keys());
+        assertArrayEquals(new long[] {10L, 50L}, values());
+    }
+
+    @Test
+    public void shouldKeepAllEntriesWhileGrowingAndShrinking() {
+        testedInstance = createTestedInstance(0L);
+        for (long key = -5000; key <= 5000; key++) {
+            addTo(key, 1);
+            addTo(key, 1);
+        }
+        for (long key = -5000; key <= 5000; key += 2) {
+            remove(key);
+        }
+
+        assertEquals(5000L, testedInstance.size());
+        for (long key = -4999; key <= 4999; key += 2) {
+            assertEquals(2L, get(key));
+        }
+    }
+
+    @Test
+    public void shouldClearData() {
+        testedInstance.clear();
+
+        assertTrue(testedInstance.isEmpty());
+        assertFalse(testedInstance.containsKey(1L));
+    }
+}
@@ -0,0 +1,46 @@
+package de.comparus.opensource.longmap;
+
+/**
+ * Runs the LongKeyTable contract against LongLongMapImpl.
+ */
+public class LongLongMapImplTest extends LongKeyTableContractTest {
+
+    @Override
+    protected LongKeyTable createTestedInstance(long noValue) {
+        return new LongLongMapImpl(16, 0.75f, LongHashFunction.SPREAD, noValue);
+    }
+
+    @Override
+    protected long put(long key, long value) {
+        return map().put(key, value);
+    }
+
+    @Override
+    protected long get(long key) {
+        return map().get(key);
+    }
+
+    @Override
+    protected long remove(long key) {
+        return map().remove(key);
+    }
+
+    @Override
+    protected long addTo(long key, long delta) {
+        return map().addTo(key, delta);
+    }
+
+    @Override
+    protected boolean containsValue(long value) {
+        return map().containsValue(value);
+    }
+
+    @Override
+    protected long[] values() {
+        return map().values();
+    }
+
+    private LongLongMap map() {
+        return (LongLongMap) testedInstance;
+    }
+}
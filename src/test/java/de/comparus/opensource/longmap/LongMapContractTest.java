@@ -0,0 +1,332 @@
+package de.comparus.opensource.longmap;
+
+import static junit.framework.TestCase.assertNull;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import de.comparus.opensource.longmap.model.TestObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The behaviour every LongMap has to show, run against the map made by createTestedInstance. A
+ * test of an implementation extends it and adds the tests of its own features.
+ */
+public abstract class LongMapContractTest {
+    protected LongMap<TestObject> testedInstance;
+    protected TestObject testObject1;
+    protected TestObject testObject2;
+    protected TestObject testObject3;
+    protected TestObject testObject4;
+
+    @Before
+    public void init() {
+        testedInstance = createTestedInstance();
+        testObject1 = new TestObject(1L, "Car");
+        testedInstance.put(testObject1.getId(), testObject1);
+        testObject2 = new TestObject(5L, "Bus");
+        testedInstance.put(testObject2.getId(), testObject2);
+        testObject3 = new TestObject(10L, "Plain");
+        testObject4 = new TestObject(0L, "Boat");
+    }
+
+    protected abstract <T> LongMap<T> createTestedInstance();
+
+    @Test
+    public void shouldSaveData() {
+        TestObject result = testedInstance.put(testObject3.getId(), testObject3);
+
+        assertNull(result);
+        assertEquals(testObject3, testedInstance.get(testObject3.getId()));
+    }
+
+    @Test
+    public void shouldGetSavedData() {
+        testedInstance.put(testObject3.getId(), testObject3);
+
+        assertNotNull(testedInstance.get(testObject3.getId()));
+        assertEquals(testObject3, testedInstance.get(testObject3.getId()));
+    }
+
+    @Test
+    public void shouldDeleteData() {
+
+        assertNotNull(testedInstance.get(testObject2.getId()));
+        assertEquals(testObject2, testedInstance.get(testObject2.getId()));
+
+        testedInstance.remove(testObject2.getId());
+
+        assertNull(testedInstance.get(testObject2.getId()));
+    }
+
+    @Test
+    public void shouldClearData() {
+
+        assertNotNull(testedInstance.get(testObject1.getId()));
+        assertNotNull(testedInstance.get(testObject2.getId()));
+
+        testedInstance.clear();
+
+        assertNull(testedInstance.get(testObject1.getId()));
+        assertNull(testedInstance.get(testObject2.getId()));
+    }
+
+    @Test
+    public void shouldCangedSize() {
+
+        assertEquals(2L, testedInstance.size());
+
+        testedInstance.remove(testObject1.getId());
+
+        assertEquals(1L, testedInstance.size());
+
+        testedInstance.put(testObject3.getId(), testObject3);
+        testedInstance.put(testObject4.getId(), testObject4);
+
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldShowContainsKeyCorrectly() {
+
+        assertFalse(testedInstance.containsKey(testObject3.getId()));
+
+        testedInstance.put(testObject3.getId(), testObject3);
+
+        assertTrue(testedInstance.containsKey(testObject3.getId()));
+
+        testedInstance.remove(testObject3.getId());
+
+        assertFalse(testedInstance.containsKey(testObject3.getId()));
+    }
+
+    @Test
+    public void shouldShowContainsValueCorrectly() {
+
+        assertFalse(testedInstance.containsValue(testObject3));
+
+        testedInstance.put(testObject3.getId(), testObject3);
+
+        assertTrue(testedInstance.containsValue(testObject3));
+
+        testedInstance.remove(testObject3.getId());
+
+        assertFalse(testedInstance.containsValue(testObject3));
+    }
+
+    @Test
+    public void shouldGetKeys() {
+        long[] result = testedInstance.keys();
+
+        assertNotNull(result);
+        assertEquals(2, result.length);
+        assertEquals(testObject1.getId(), result[0]);
+        assertEquals(testObject2.getId(), result[1]);
+    }
+
+    @Test
+    public void shouldGetValues() {
+        Object[] result = testedInstance.values();
+
+        assertNotNull(result);
+        assertEquals(2, result.length);
+        assertEquals(testObject1, result[0]);
+        assertEquals(testObject2, result[1]);
+    }
+
+    @Test
+    public void shouldSnowIsEmpty() {
+
+        assertFalse(testedInstance.isEmpty());
+
+        testedInstance.remove(testObject1.getId());
+        testedInstance.remove(testObject2.getId());
+
+        assertTrue(testedInstance.isEmpty());
+
+        testedInstance.put(testObject3.getId(), testObject3);
+
+        assertFalse(testedInstance.isEmpty());
+    }
+
+    @Test
+    public void shouldChangeValue() {
+
+        testedInstance.put(testObject3.getId(), testObject3);
+
+        assertEquals(testObject3,testedInstance.get(testObject3.getId()));
+
+        testedInstance.put(testObject4.getId(), testObject4);
+
+        assertEquals(testObject4, testedInstance.get(testObject4.getId()));
+    }
+
+    @Test
+    public void shouldReturnValueWhenRemove() {
+
+        TestObject result1 = testedInstance.remove(testObject2.getId());
+
+        assertEquals(testObject2, result1);
+
+        TestObject result2 = testedInstance.remove(testObject2.getId());
+
+        assertNull(result2);
+    }
+
+    @Test
+    public void shouldKeepZeroAndNegativeKeys() {
+        testedInstance.put(testObject4.getId(), testObject4);
+        testedInstance.put(-1L, testObject3);
+        testedInstance.put(Long.MIN_VALUE, testObject1);
+
+        assertEquals(testObject4, testedInstance.get(0L));
+        assertEquals(testObject3, testedInstance.get(-1L));
+        assertEquals(testObject1, testedInstance.get(Long.MIN_VALUE));
+        assertEquals(5L, testedInstance.size());
+
+        assertEquals(testObject4, testedInstance.remove(0L));
+        assertFalse(testedInstance.containsKey(0L));
+        assertEquals(4L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldKeepAllEntriesWhileGrowingAndShrinking() {
+        LongMap<Long> map = createTestedInstance();
+        int count = 10_000;
+        for (long i = 1; i <= count; i++) {
+            map.put(i * 1024, i);
+        }
+
+        assertEquals(count, map.size());
+        for (long i = 1; i <= count; i += 2) {
+            assertEquals(Long.valueOf(i), map.remove(i * 1024));
+        }
+        assertEquals(count / 2, map.size());
+        for (long i = 1; i <= count; i++) {
+            if (i % 2 == 0) {
+                assertEquals(Long.valueOf(i), map.get(i * 1024));
+            } else {
+                assertFalse(map.containsKey(i * 1024));
+            }
+        }
+        assertEquals(count / 2, map.keys().length);
+        Object[] values = map.values();
+        assertEquals(count / 2, values.length);
+    }
+
+    @Test
+    public void shouldReturnPreviousValueWhenOverwrite() {
+        TestObject result = testedInstance.put(testObject1.getId(), testObject3);
+
+        assertEquals(testObject1, result);
+        assertEquals(testObject3, testedInstance.get(testObject1.getId()));
+        assertEquals(2L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldPutIfAbsent() {
+        assertEquals(testObject1, testedInstance.putIfAbsent(testObject1.getId(), testObject3));
+        assertEquals(testObject1, testedInstance.get(testObject1.getId()));
+
+        assertNull(testedInstance.putIfAbsent(testObject3.getId(), testObject3));
+        assertEquals(testObject3, testedInstance.get(testObject3.getId()));
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldReplaceOnlyExistingKeys() {
+        assertNull(testedInstance.replace(testObject3.getId(), testObject3));
+        assertFalse(testedInstance.containsKey(testObject3.getId()));
+
+        assertEquals(testObject2, testedInstance.replace(testObject2.getId(), testObject3));
+        assertEquals(testObject3, testedInstance.get(testObject2.getId()));
+        assertEquals(2L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldComputeIfAbsent() {
+        assertEquals(testObject1, testedInstance.computeIfAbsent(testObject1.getId(), k -> testObject3));
+        assertEquals(testObject3, testedInstance.computeIfAbsent(testObject3.getId(), k -> testObject3));
+        assertNull(testedInstance.computeIfAbsent(testObject4.getId(), k -> null));
+
+        assertEquals(testObject3, testedInstance.get(testObject3.getId()));
+        assertFalse(testedInstance.containsKey(testObject4.getId()));
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldVisitEveryMappingWithCursor() {
+        testedInstance.put(testObject4.getId(), testObject4);
+        long[] keys = testedInstance.keys();
+        Object[] values = testedInstance.values();
+
+        LongMapCursor<TestObject> cursor = testedInstance.cursor();
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(cursor.advance());
+            assertEquals(keys[i], cursor.key());
+            assertEquals(values[i], cursor.value());
+        }
+        assertFalse(cursor.advance());
+        assertFalse(cursor.advance());
+    }
+
+    @Test
+    public void shouldVisitEveryMappingWithForEach() {
+        testedInstance.put(testObject4.getId(), testObject4);
+        long[] keys = testedInstance.keys();
+        Object[] values = testedInstance.values();
+        List<Long> visitedKeys = new ArrayList<>();
+        List<TestObject> visitedValues = new ArrayList<>();
+
+        testedInstance.forEach((key, value) -> {
+            visitedKeys.add(key);
+            visitedValues.add(value);
+        });
+
+        assertEquals(keys.length, visitedKeys.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(Long.valueOf(keys[i]), visitedKeys.get(i));
+            assertEquals(values[i], visitedValues.get(i));
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void shouldRejectReadingCursorBeforeAdvance() {
+        testedInstance.cursor().key();
+    }
+
+    @Test
+    public void shouldPutGetAndRemoveInBatches() {
+        LongMap<Long> map = createTestedInstance();
+        long[] keys = new long[10_000];
+        Long[] values = new Long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (i - 5000L) * 7;
+            values[i] = (long) i;
+        }
+
+        map.putAll(keys, values);
+        Long[] result = new Long[keys.length];
+        map.getAll(keys, result);
+
+        assertEquals(keys.length, map.size());
+        assertArrayEquals(values, result);
+        assertTrue(map.containsAll(keys));
+        assertFalse(map.containsAll(new long[] {keys[0], 1L}));
+        assertEquals(keys.length / 2, map.removeAll(Arrays.copyOf(keys, keys.length / 2)));
+        assertEquals(0L, map.removeAll(new long[] {keys[0], 1L}));
+        assertEquals(keys.length / 2, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBatchOfDifferentLengths() {
+        testedInstance.putAll(new long[] {1L, 2L}, new TestObject[] {testObject3});
+    }
+}
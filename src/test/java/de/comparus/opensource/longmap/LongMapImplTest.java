@@ -1,170 +1,215 @@
 package de.comparus.opensource.longmap;
 
-import static junit.framework.TestCase.assertNull;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import de.comparus.opensource.longmap.model.TestObject;
-import org.junit.Before;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
 import org.junit.Test;
 
-public class LongMapImplTest {
-    private LongMap<TestObject> testedInstance;
-    private TestObject testObject1;
-    private TestObject testObject2;
-    private TestObject testObject3;
-    private TestObject testObject4;
-
-    @Before
-    public void init() {
-        testedInstance = new LongMapImpl<>();
-        testObject1 = new TestObject(1L, "Car");
-        testedInstance.put(testObject1.getId(), testObject1);
-        testObject2 = new TestObject(5L, "Bus");
-        testedInstance.put(testObject2.getId(), testObject2);
-        testObject3 = new TestObject(10L, "Plain");
-        testObject4 = new TestObject(0L, "Boat");
-    }
-
-    @Test
-    public void shouldSaveData() {
-        TestObject result = testedInstance.put(testObject3.getId(), testObject3);
+/**
+ * Runs the LongMap contract against LongMapImpl and checks the features of the hash table: the
+ * hash functions, the incremental resizing, the fail-fast cursor and the parallel bulk operations.
+ */
+public class LongMapImplTest extends LongMapContractTest {
 
-        assertNotNull(result);
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new LongMapImpl<>();
     }
 
     @Test
-    public void shouldGetSavedData() {
-        testedInstance.put(testObject3.getId(), testObject3);
-
-        assertNotNull(testedInstance.get(testObject3.getId()));
-        assertEquals(testObject3, testedInstance.get(testObject3.getId()));
+    public void shouldKeepAllEntriesWhileResizingIncrementally() {
+        LongMap<Long> map = new LongMapImpl<>(2, 0.75f, true);
+        int count = 10_000;
+        for (long i = 1; i <= count; i++) {
+            map.put(i * 31, i);
+            assertEquals(Long.valueOf(i), map.get(i * 31));
+            assertEquals(Long.valueOf(1), map.get(31));
+            if (i % 3 == 0) {
+                assertEquals(Long.valueOf(i - 1), map.remove((i - 1) * 31));
+            }
+        }
+
+        assertEquals(count - count / 3, map.size());
+        for (long i = 1; i <= count; i++) {
+            boolean isRemoved = (i + 1) % 3 == 0 && i + 1 <= count;
+            assertEquals(!isRemoved, map.containsKey(i * 31));
+        }
+        assertEquals(count - count / 3, map.keys().length);
     }
 
     @Test
-    public void shouldDeleteData() {
-
-        assertNotNull(testedInstance.get(testObject2.getId()));
-        assertEquals(testObject2, testedInstance.get(testObject2.getId()));
-
-        testedInstance.remove(testObject2.getId());
-
-        assertNull(testedInstance.get(testObject2.getId()));
+    public void shouldKeepStridedKeysWithEveryHashFunction() {
+        LongHashFunction[] hashFunctions = {
+            LongHashFunction.SPREAD, LongHashFunction.FIBONACCI, LongHashFunction.MURMUR3};
+        for (LongHashFunction hashFunction : hashFunctions) {
+            LongMap<Long> map = new LongMapImpl<>(16, 0.5f, false, hashFunction);
+            for (long i = -1000; i <= 1000; i++) {
+                map.put(i << 32, i);
+            }
+
+            assertEquals(2001L, map.size());
+            for (long i = -1000; i <= 1000; i++) {
+                assertEquals(Long.valueOf(i), map.get(i << 32));
+            }
+        }
+
+        // SPREAD folds only the upper half onto the lower one, the strides of the upper bits are
+        // left to the functions mixing every bit of the key
+        for (LongHashFunction hashFunction : Arrays.asList(LongHashFunction.FIBONACCI,
+            LongHashFunction.MURMUR3)) {
+            for (int shift : new int[] {40, 48}) {
+                LongMapImpl<Long> map = new LongMapImpl<>(16, 0.5f, false, hashFunction);
+                for (long i = 1; i <= 20_000; i++) {
+                    map.put(i << shift, i);
+                }
+
+                long[] probeLengths = map.countProbeLengths(33);
+                assertEquals(hashFunction + " << " + shift, 0L, probeLengths[32]);
+                for (long i = 1; i <= 20_000; i++) {
+                    assertEquals(Long.valueOf(i), map.get(i << shift));
+                }
+            }
+        }
     }
 
-    @Test
-    public void shouldClearData() {
-
-        assertNotNull(testedInstance.get(testObject1.getId()));
-        assertNotNull(testedInstance.get(testObject2.getId()));
-
-        testedInstance.clear();
-
-        assertNull(testedInstance.get(testObject1.getId()));
-        assertNull(testedInstance.get(testObject2.getId()));
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectFullLoadFactor() {
+        new LongMapImpl<TestObject>(16, 1.0f);
     }
 
     @Test
-    public void shouldCangedSize() {
-
-        assertEquals(2L, testedInstance.size());
-
-        testedInstance.remove(testObject1.getId());
-
-        assertEquals(1L, testedInstance.size());
-
-        testedInstance.put(testObject3.getId(), testObject3);
-        testedInstance.put(testObject4.getId(), testObject4);
-
-        assertEquals(3L, testedInstance.size());
+    public void shouldNotGrowTableForRejectedBatch() {
+        LongMapImpl<Long> map = new LongMapImpl<>();
+        int capacity = map.capacity();
+
+        try {
+            map.putAll(new long[1000], new Long[999]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(capacity, map.capacity());
+            assertTrue(map.isEmpty());
+        }
     }
 
-    @Test
-    public void shouldShowContainsKeyCorrectly() {
-
-        assertFalse(testedInstance.containsKey(testObject3.getId()));
-
-        testedInstance.put(testObject3.getId(), testObject3);
-
-        assertTrue(testedInstance.containsKey(testObject3.getId()));
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailCursorAfterModification() {
+        LongMap<TestObject> map = new LongMapImpl<>();
+        map.put(testObject1.getId(), testObject1);
+        LongMapCursor<TestObject> cursor = map.cursor();
+        assertTrue(cursor.advance());
 
-        testedInstance.remove(testObject3.getId());
+        map.put(testObject3.getId(), testObject3);
 
-        assertFalse(testedInstance.containsKey(testObject3.getId()));
+        cursor.advance();
     }
 
-    @Test
-    public void shouldShowContainsValueCorrectly() {
-
-        assertFalse(testedInstance.containsValue(testObject3));
-
-        testedInstance.put(testObject3.getId(), testObject3);
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailCursorParkedOnZeroKeyAfterItsRemoval() {
+        LongMap<TestObject> map = new LongMapImpl<>();
+        map.put(0L, testObject1);
+        map.put(testObject3.getId(), testObject3);
+        LongMapCursor<TestObject> cursor = map.cursor();
+        assertTrue(cursor.advance());
+        assertEquals(0L, cursor.key());
 
-        assertTrue(testedInstance.containsValue(testObject3));
+        map.remove(0L);
 
-        testedInstance.remove(testObject3.getId());
-
-        assertFalse(testedInstance.containsValue(testObject3));
+        cursor.value();
     }
 
-    @Test
-    public void shouldGetKeys() {
-        long[] result = testedInstance.keys();
-
-        assertNotNull(result);
-        assertEquals(2, result.length);
-        assertEquals(testObject1.getId(), result[0]);
-        assertEquals(testObject2.getId(), result[1]);
-    }
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailCursorAfterZeroKeyInsertion() {
+        LongMap<TestObject> map = new LongMapImpl<>();
+        map.put(testObject3.getId(), testObject3);
+        LongMapCursor<TestObject> cursor = map.cursor();
 
-    @Test
-    public void shouldGetValues() {
-        Object[] result = testedInstance.values();
+        map.putIfAbsent(0L, testObject1);
 
-        assertNotNull(result);
-        assertEquals(2, result.length);
-        assertEquals(testObject1, result[0]);
-        assertEquals(testObject2, result[1]);
+        cursor.advance();
     }
 
     @Test
-    public void shouldSnowIsEmpty() {
-
-        assertFalse(testedInstance.isEmpty());
-
-        testedInstance.remove(testObject1.getId());
-        testedInstance.remove(testObject2.getId());
-
-        assertTrue(testedInstance.isEmpty());
-
-        testedInstance.put(testObject3.getId(), testObject3);
-
-        assertFalse(testedInstance.isEmpty());
+    public void shouldAggregateInParallel() {
+        LongMapImpl<Long> map = new LongMapImpl<>();
+        int count = 100_000;
+        for (long key = 0; key < count; key++) {
+            map.put(key, key * 2);
+        }
+        AtomicLong forEachSum = new AtomicLong();
+
+        map.parallelForEach((key, value) -> forEachSum.addAndGet(value));
+        Long reducedSum = map.parallelReduce((key, value) -> value, Long::sum);
+        long reducedKeySum = map.parallelReduceToLong((key, value) -> key, 0, Long::sum);
+
+        long expectedKeySum = (long) count * (count - 1) / 2;
+        assertEquals(expectedKeySum * 2, forEachSum.get());
+        assertEquals(Long.valueOf(expectedKeySum * 2), reducedSum);
+        assertEquals(expectedKeySum, reducedKeySum);
     }
 
     @Test
-    public void shouldChangeValue() {
-
-        testedInstance.put(testObject3.getId(), testObject3);
-
-        assertEquals(testObject3,testedInstance.get(testObject3.getId()));
-
-        testedInstance.put(testObject4.getId(), testObject4);
-
-        assertEquals(testObject4, testedInstance.get(testObject4.getId()));
+    public void shouldSplitKeysWithExactSizes() {
+        LongMapImpl<Long> map = new LongMapImpl<>();
+        for (long key = 0; key <= 50_000; key++) {
+            map.put(key * 3, key);
+        }
+
+        Spliterator.OfLong spliterator = map.keySpliterator();
+        Spliterator.OfLong prefix = spliterator.trySplit();
+
+        long prefixSize = prefix.estimateSize();
+
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+        assertEquals(50_001L, prefixSize + spliterator.estimateSize());
+        assertEquals(prefixSize, StreamSupport.longStream(prefix, false).toArray().length);
+        assertEquals(0L, prefix.estimateSize());
+
+        long[] keys = map.parallelKeys();
+        long[] expectedKeys = map.keys();
+        Arrays.sort(keys);
+        Arrays.sort(expectedKeys);
+        assertArrayEquals(expectedKeys, keys);
+        assertEquals(50_001L, StreamSupport.longStream(map.keySpliterator(), true).count());
     }
 
     @Test
-    public void shouldReturnValueWhenRemove() {
-
-        TestObject result1 = testedInstance.remove(testObject2.getId());
+    public void shouldSplitLargeTableIntoBalancedParts() {
+        LongMapImpl<Long> map = new LongMapImpl<>(16, 0.75f, false, LongHashFunction.MURMUR3);
+        for (long key = 0; key < 1_000_000; key++) {
+            map.put(key, key);
+        }
 
-        assertEquals(testObject2, result1);
-
-        TestObject result2 = testedInstance.remove(testObject2.getId());
+        assertEquals(1_000_000L, splitAndCount(map.keySpliterator(), 8));
+    }
 
-        assertNull(result2);
+    /**
+     * Splits the spliterator to the depth checking that the parts are exactly sized and about
+     * equal, as the keys are hashed evenly over the table.
+     *
+     * @return the number of the keys walked over
+     */
+    private static long splitAndCount(Spliterator.OfLong spliterator, int depth) {
+        long size = spliterator.estimateSize();
+        if (depth == 0) {
+            long[] count = new long[1];
+            spliterator.forEachRemaining((long key) -> count[0]++);
+            assertEquals(size, count[0]);
+            return count[0];
+        }
+        Spliterator.OfLong prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        long prefixSize = prefix.estimateSize();
+        assertEquals(size, prefixSize + spliterator.estimateSize());
+        assertTrue(prefixSize + " of " + size, Math.abs(size - 2 * prefixSize) <= size / 10);
+        return splitAndCount(prefix, depth - 1) + splitAndCount(spliterator, depth - 1);
     }
 }
@@ -0,0 +1,131 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against LongMapOnBPlusTree and checks the sorted order and the node
+ * splitting and merging against TreeMap.
+ */
+public class LongMapOnBPlusTreeTest extends LongMapContractTest {
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new LongMapOnBPlusTree<>();
+    }
+
+    @Test
+    public void shouldMatchTreeMapUnderRandomUpdates() {
+        NavigableLongMap<Long> map = new LongMapOnBPlusTree<>(4);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5000) - 2500;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        long[] keys = map.keys();
+        Object[] values = map.values();
+        int position = 0;
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getKey().longValue(), keys[position]);
+            assertEquals(entry.getValue(), values[position++]);
+        }
+        for (long key = expected.firstKey(); key <= expected.lastKey(); key += 7) {
+            assertEquals(expected.floorKey(key).longValue(), map.floorKey(key));
+            assertEquals(expected.ceilingKey(key).longValue(), map.ceilingKey(key));
+        }
+    }
+
+    @Test
+    public void shouldEmptyTreeByRemovals() {
+        LongMap<Long> map = new LongMapOnBPlusTree<>(4);
+        for (long key = 0; key < 1000; key++) {
+            map.put(key, key);
+        }
+        for (long key = 999; key >= 0; key -= 2) {
+            map.remove(key);
+        }
+        for (long key = 0; key < 1000; key += 2) {
+            assertEquals(Long.valueOf(key), map.remove(key));
+        }
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.cursor().advance());
+        assertArrayEquals(new long[0], map.keys());
+    }
+
+    @Test
+    public void shouldWalkOverRangeAcrossLeaves() {
+        NavigableLongMap<Long> map = new LongMapOnBPlusTree<>(4);
+        for (long key = 0; key < 100; key++) {
+            map.put(key * 10, key);
+        }
+
+        NavigableLongMap<Long> subMap = map.subMap(95L, true, 305L, false);
+        LongMapCursor<Long> cursor = subMap.cursor();
+        for (long key = 100; key <= 300; key += 10) {
+            assertTrue(cursor.advance());
+            assertEquals(key, cursor.key());
+            assertEquals(Long.valueOf(key / 10), cursor.value());
+        }
+        assertFalse(cursor.advance());
+        assertEquals(21L, subMap.size());
+        assertEquals(0L, map.firstKey());
+        assertEquals(990L, map.lastKey());
+        assertNull(subMap.get(310L));
+    }
+
+    @Test
+    public void shouldCollectAndClearLongRange() {
+        NavigableLongMap<Long> map = new LongMapOnBPlusTree<>(4);
+        for (long key = 0; key < 100; key++) {
+            map.put(key * 10, key);
+        }
+        NavigableLongMap<Long> subMap = map.subMap(95L, true, 905L, false);
+
+        long[] keys = subMap.keys();
+        Object[] values = subMap.values();
+
+        assertEquals(81, keys.length);
+        assertEquals(81, values.length);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(100L + i * 10, keys[i]);
+            assertEquals(Long.valueOf(10 + i), values[i]);
+        }
+
+        subMap.clear();
+
+        assertTrue(subMap.isEmpty());
+        assertEquals(19L, map.size());
+        assertEquals(90L, map.floorKey(95L));
+        assertEquals(910L, map.ceilingKey(95L));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void shouldRejectMissingCeilingKey() {
+        NavigableLongMap<Long> map = new LongMapOnBPlusTree<>();
+        map.put(1L, 1L);
+
+        map.ceilingKey(2L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTooSmallNodes() {
+        new LongMapOnBPlusTree<Long>(2);
+    }
+}
@@ -1,6 +1,9 @@
 package de.comparus.opensource.longmap;
 
 import de.comparus.opensource.longmap.model.TestObject;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -29,7 +32,8 @@ public class LongMapOnBalancedTreeTest {
   public void shouldSaveData() {
     TestObject response = testedInstance.put(testObject3.getId(), testObject3);
 
-    assertNotNull(response);
+    assertNull(response);
+    assertEquals(testObject3, testedInstance.get(testObject3.getId()));
   }
 
   @Test
@@ -140,4 +144,306 @@ public class LongMapOnBalancedTreeTest {
 
     assertFalse(testedInstance.isEmpty());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldReturnPreviousValueWhenOverwrite() {
+    TestObject result = testedInstance.put(testObject1.getId(), testObject3);
+
+    assertEquals(testObject1, result);
+    assertEquals(testObject3, testedInstance.get(testObject1.getId()));
+    assertEquals(2L, testedInstance.size());
+  }
+
+  @Test
+  public void shouldPutIfAbsent() {
+    assertEquals(testObject1, testedInstance.putIfAbsent(testObject1.getId(), testObject3));
+    assertEquals(testObject1, testedInstance.get(testObject1.getId()));
+
+    assertNull(testedInstance.putIfAbsent(testObject3.getId(), testObject3));
+    assertEquals(testObject3, testedInstance.get(testObject3.getId()));
+    assertEquals(3L, testedInstance.size());
+  }
+
+  @Test
+  public void shouldReplaceOnlyExistingKeys() {
+    assertNull(testedInstance.replace(testObject3.getId(), testObject3));
+    assertFalse(testedInstance.containsKey(testObject3.getId()));
+
+    assertEquals(testObject2, testedInstance.replace(testObject2.getId(), testObject3));
+    assertEquals(testObject3, testedInstance.get(testObject2.getId()));
+    assertEquals(2L, testedInstance.size());
+  }
+
+  @Test
+  public void shouldComputeIfAbsent() {
+    assertEquals(testObject1, testedInstance.computeIfAbsent(testObject1.getId(), k -> testObject3));
+    assertEquals(testObject3, testedInstance.computeIfAbsent(testObject3.getId(), k -> testObject3));
+    assertNull(testedInstance.computeIfAbsent(testObject4.getId(), k -> null));
+
+    assertEquals(testObject3, testedInstance.get(testObject3.getId()));
+    assertFalse(testedInstance.containsKey(testObject4.getId()));
+    assertEquals(3L, testedInstance.size());
+  }
+
+  @Test
+  public void shouldVisitMappingsInKeyOrderWithCursor() {
+    testedInstance.put(testObject4.getId(), testObject4);
+    testedInstance.put(testObject3.getId(), testObject3);
+    testedInstance.put(-7L, testObject3);
+
+    LongMapCursor<TestObject> cursor = testedInstance.cursor();
+    long[] expectedKeys = {-7L, 1L, 5L, 10L, 100L};
+    for (long expectedKey : expectedKeys) {
+      assertTrue(cursor.advance());
+      assertEquals(expectedKey, cursor.key());
+      assertEquals(testedInstance.get(expectedKey), cursor.value());
+    }
+    assertFalse(cursor.advance());
+    assertArrayEquals(expectedKeys, testedInstance.keys());
+  }
+
+  @Test
+  public void shouldVisitEveryMappingWithForEach() {
+    LongMap<Long> map = new LongMapOnBalancedTree<>();
+    for (long i = 10_000; i > 0; i--) {
+      map.put(i, i);
+    }
+    long[] sum = new long[1];
+    long[] previousKey = {0L};
+
+    map.forEach((key, value) -> {
+      assertEquals(previousKey[0] + 1, key);
+      assertEquals(Long.valueOf(key), value);
+      previousKey[0] = key;
+      sum[0] += value;
+    });
+
+    assertEquals(10_000L * 10_001 / 2, sum[0]);
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void shouldFailCursorAfterModification() {
+    LongMapCursor<TestObject> cursor = testedInstance.cursor();
+    assertTrue(cursor.advance());
+
+    testedInstance.remove(testObject2.getId());
+
+    cursor.advance();
+  }
+
+  @Test
+  public void shouldNavigateByKeys() {
+    NavigableLongMap<TestObject> map = createNavigableInstance();
+
+    assertEquals(10L, map.firstKey());
+    assertEquals(50L, map.lastKey());
+    assertEquals(20L, map.floorKey(29L));
+    assertEquals(30L, map.floorKey(30L));
+    assertEquals(30L, map.ceilingKey(21L));
+    assertEquals(20L, map.lowerKey(30L));
+    assertEquals(40L, map.higherKey(30L));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void shouldRejectMissingFloorKey() {
+    createNavigableInstance().floorKey(9L);
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void shouldRejectFirstKeyOfEmptyMap() {
+    new LongMapOnBalancedTree<TestObject>().firstKey();
+  }
+
+  @Test
+  public void shouldWalkOverSubMapRange() {
+    NavigableLongMap<TestObject> map = createNavigableInstance();
+    NavigableLongMap<TestObject> subMap = map.subMap(20L, 40L);
+
+    assertArrayEquals(new long[] {20L, 30L}, subMap.keys());
+    assertEquals(2L, subMap.size());
+    assertEquals(20L, subMap.firstKey());
+    assertEquals(30L, subMap.lastKey());
+    assertEquals(30L, subMap.floorKey(45L));
+    assertNull(subMap.get(40L));
+
+    LongMapCursor<TestObject> cursor = subMap.cursor();
+    assertTrue(cursor.advance());
+    assertEquals(20L, cursor.key());
+    assertTrue(cursor.advance());
+    assertEquals(30L, cursor.key());
+    assertFalse(cursor.advance());
+  }
+
+  @Test
+  public void shouldReflectChangesInHeadAndTailMaps() {
+    NavigableLongMap<TestObject> map = createNavigableInstance();
+    NavigableLongMap<TestObject> headMap = map.headMap(30L, true);
+    NavigableLongMap<TestObject> tailMap = map.tailMap(30L, false);
+
+    assertArrayEquals(new long[] {10L, 20L, 30L}, headMap.keys());
+    assertArrayEquals(new long[] {40L, 50L}, tailMap.keys());
+
+    headMap.put(25L, testObject3);
+    tailMap.clear();
+
+    assertArrayEquals(new long[] {10L, 20L, 25L, 30L}, map.keys());
+    assertTrue(tailMap.isEmpty());
+    assertArrayEquals(new long[] {20L, 25L}, headMap.subMap(15L, false, 30L, false).keys());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectPutOutOfSubMapRange() {
+    createNavigableInstance().subMap(20L, 40L).put(40L, testObject3);
+  }
+
+  private NavigableLongMap<TestObject> createNavigableInstance() {
+    NavigableLongMap<TestObject> map = new LongMapOnBalancedTree<>();
+    for (long key = 50L; key >= 10L; key -= 10L) {
+      map.put(key, new TestObject(key, "Bucket " + key));
+    }
+    return map;
+  }
+
+  @Test
+  public void shouldMergeSortedBatchIntoTree() {
+    LongMapOnBalancedTree<Long> map = new LongMapOnBalancedTree<>();
+    map.put(5L, -5L);
+    map.put(1_000_000L, -1L);
+    long[] keys = new long[1000];
+    Long[] values = new Long[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i;
+      values[i] = (long) i;
+    }
+
+    map.putAll(keys, values);
+
+    assertEquals(1001L, map.size());
+    assertEquals(Long.valueOf(5L), map.get(5L));
+    assertEquals(Long.valueOf(-1L), map.get(1_000_000L));
+    assertEquals(1_000_000L, map.lastKey());
+    for (long key = 0; key < 1000; key += 3) {
+      assertEquals(Long.valueOf(key), map.remove(key));
+    }
+    map.put(-1L, -1L);
+    assertEquals(-1L, map.firstKey());
+    assertEquals(1001L - 334 + 1, map.size());
+  }
+
+  @Test
+  public void shouldLookForNullValue() {
+    assertFalse(testedInstance.containsValue(null));
+
+    testedInstance.put(testObject4.getId(), null);
+
+    assertTrue(testedInstance.containsValue(null));
+    assertTrue(testedInstance.containsValue(testObject2));
+  }
+
+  @Test
+  public void shouldExportLargeTreeInKeyOrder() {
+    LongMapOnBalancedTree<Long> map = new LongMapOnBalancedTree<>();
+    for (long i = 0; i < 200_000; i++) {
+      long key = (i * 0x9E3779B97F4A7C15L) >> 20;
+      map.put(key, key);
+    }
+
+    long[] keys = map.keys();
+    Object[] values = map.values();
+
+    assertEquals(map.size(), keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      assertTrue(i == 0 || keys[i - 1] < keys[i]);
+      assertEquals(keys[i], values[i]);
+    }
+    assertTrue(map.containsValue(keys[keys.length - 1]));
+    assertFalse(map.containsValue(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void shouldKeepRedBlackInvariantsAfterRandomPutsAndRemoves() {
+    LongMapOnBalancedTree<Long> map = new LongMapOnBalancedTree<>();
+    Random random = new Random(17);
+    for (int i = 0; i < 20_000; i++) {
+      long key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        map.remove(key);
+      } else {
+        map.put(key, key);
+      }
+      if (i % 1000 == 0) {
+        assertRedBlackTree(map);
+      }
+    }
+    assertRedBlackTree(map);
+  }
+
+  @Test
+  public void shouldKeepRedBlackInvariantsAfterMergingSortedBatch() {
+    Random random = new Random(29);
+    // sizes around the powers of two, where the level of the red entries changes
+    for (int batchSize : new int[] {1, 2, 3, 6, 7, 8, 15, 16, 17, 1023, 1024, 1025, 5000}) {
+      LongMapOnBalancedTree<Long> map = new LongMapOnBalancedTree<>();
+      for (int i = random.nextInt(batchSize + 1); i > 0; i--) {
+        long key = random.nextInt(4 * batchSize);
+        map.put(key, key);
+      }
+      long[] keys = new long[batchSize];
+      Long[] values = new Long[batchSize];
+      for (int i = 0; i < batchSize; i++) {
+        keys[i] = 2L * i;
+        values[i] = keys[i];
+      }
+
+      map.putAll(keys, values);
+      assertRedBlackTree(map);
+
+      for (int i = 0; i < batchSize; i++) {
+        map.put(random.nextInt(8 * batchSize), 0L);
+        map.remove(random.nextInt(8 * batchSize));
+      }
+      assertRedBlackTree(map);
+    }
+  }
+
+  /**
+   * Checks the links, the order of the keys, the size, that the root is black, that no red entry
+   * has a red child and that every path from the root down to a leaf has the same number of black
+   * entries.
+   */
+  private static void assertRedBlackTree(LongMapOnBalancedTree<?> map) {
+    LongMapOnBalancedTree.Entry<?> root = map.rootEntry();
+    if (root == null) {
+      assertEquals(0L, map.size());
+      return;
+    }
+    assertNull(root.parent);
+    assertTrue(root.isBlack);
+    long[] count = new long[1];
+    checkSubtree(root, Long.MIN_VALUE, Long.MAX_VALUE, count);
+    assertEquals(map.size(), count[0]);
+  }
+
+  /**
+   * @return the number of black entries on every path from the entry down to a leaf
+   */
+  private static int checkSubtree(LongMapOnBalancedTree.Entry<?> entry, long minKey, long maxKey,
+                                  long[] count) {
+    if (entry == null) {
+      return 1;
+    }
+    count[0]++;
+    assertTrue(minKey <= entry.key && entry.key <= maxKey);
+    for (LongMapOnBalancedTree.Entry<?> child : new LongMapOnBalancedTree.Entry<?>[] {
+        entry.leftChild, entry.rightChild}) {
+      if (child != null) {
+        assertSame(entry, child.parent);
+        assertTrue("red entry " + entry.key + " has a red child", entry.isBlack || child.isBlack);
+      }
+    }
+    int leftHeight = checkSubtree(entry.leftChild, minKey, entry.key - 1, count);
+    int rightHeight = checkSubtree(entry.rightChild, entry.key + 1, maxKey, count);
+    assertEquals("black heights differ below " + entry.key, leftHeight, rightHeight);
+    return leftHeight + (entry.isBlack ? 1 : 0);
+  }
+}
@@ -0,0 +1,92 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against LongMapOnContainers and checks the conversions between the
+ * array and the bitmap containers against TreeMap.
+ */
+public class LongMapOnContainersTest extends LongMapContractTest {
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new LongMapOnContainers<>();
+    }
+
+    @Test
+    public void shouldMatchTreeMapUnderClusteredUpdates() {
+        LongMap<Long> map = new LongMapOnContainers<>();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random random = new Random(11);
+        long[] clusterStarts = {-70_000L, 0L, 1L << 40, Long.MAX_VALUE - 20_000};
+        for (int i = 0; i < 300_000; i++) {
+            // the updates go from dense to sparse to make the containers convert both ways
+            int spread = i < 150_000 ? 20_000 : 2_000;
+            long key = clusterStarts[random.nextInt(clusterStarts.length)] + random.nextInt(spread);
+            if (random.nextInt(i < 150_000 ? 4 : 2) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+            if (i == 150_000) {
+                expected.keySet().removeIf(k -> random.nextInt(10) != 0);
+                for (long k : map.keys()) {
+                    if (!expected.containsKey(k)) {
+                        map.remove(k);
+                    }
+                }
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        long[] keys = map.keys();
+        Object[] values = map.values();
+        LongMapCursor<Long> cursor = map.cursor();
+        int position = 0;
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getKey().longValue(), keys[position]);
+            assertEquals(entry.getValue(), values[position++]);
+            assertTrue(cursor.advance());
+            assertEquals(entry.getKey().longValue(), cursor.key());
+            assertEquals(entry.getValue(), cursor.value());
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertFalse(cursor.advance());
+    }
+
+    @Test
+    public void shouldKeepDenseKeysInFewContainers() {
+        LongMapOnContainers<Long> map = new LongMapOnContainers<>();
+        for (long key = 1_000_000; key < 1_300_000; key++) {
+            map.put(key, key);
+        }
+
+        assertEquals(300_000, map.size());
+        assertEquals(5, map.containerCount());
+        assertEquals(Long.valueOf(1_234_567L), map.get(1_234_567L));
+        assertEquals(1_000_000L, map.keys()[0]);
+    }
+
+    @Test
+    public void shouldDropEmptyContainers() {
+        LongMapOnContainers<Long> map = new LongMapOnContainers<>();
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key * 100, key);
+        }
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals(Long.valueOf(key), map.remove(key * 100));
+        }
+
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.containerCount());
+        assertArrayEquals(new long[0], map.keys());
+    }
+}
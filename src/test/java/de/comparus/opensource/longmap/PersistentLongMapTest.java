@@ -0,0 +1,120 @@
+package de.comparus.opensource.longmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against a PersistentLongMap.Transient and checks that the versions of
+ * a PersistentLongMap stay unchanged by the updates made after them.
+ */
+public class PersistentLongMapTest extends LongMapContractTest {
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return PersistentLongMap.<T>empty().asTransient();
+    }
+
+    @Test
+    public void shouldKeepEveryVersionUnderRandomUpdates() {
+        List<PersistentLongMap<Long>> versions = new ArrayList<>();
+        List<Map<Long, Long>> expectedVersions = new ArrayList<>();
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(29);
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(3) == 0 ? random.nextLong() : random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                expected.remove(key);
+            } else {
+                map = map.with(key, (long) i);
+                expected.put(key, (long) i);
+            }
+            if (i % 5000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new HashMap<>(expected));
+            }
+        }
+        versions.add(map);
+        expectedVersions.add(expected);
+
+        for (int i = 0; i < versions.size(); i++) {
+            PersistentLongMap<Long> version = versions.get(i);
+            Map<Long, Long> expectedVersion = expectedVersions.get(i);
+            assertEquals(expectedVersion.size(), version.size());
+            for (Map.Entry<Long, Long> entry : expectedVersion.entrySet()) {
+                assertEquals(entry.getValue(), version.get(entry.getKey()));
+            }
+            Map<Long, Long> visited = new HashMap<>();
+            version.forEach(visited::put);
+            assertEquals(expectedVersion, visited);
+        }
+    }
+
+    @Test
+    public void shouldReturnSameVersionWithoutChange() {
+        PersistentLongMap<String> map = PersistentLongMap.<String>empty().with(1L, "one");
+
+        assertSame(map, map.with(1L, "one"));
+        assertSame(map, map.without(2L));
+        assertEquals(0, map.without(1L).size());
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void shouldNotChangeVersionByTransientEdits() {
+        PersistentLongMap<Long> map = PersistentLongMap.empty();
+        for (long key = 0; key < 1000; key++) {
+            map = map.with(key, key);
+        }
+
+        PersistentLongMap.Transient<Long> edited = map.asTransient();
+        for (long key = 0; key < 1000; key += 2) {
+            edited.remove(key);
+            edited.put(key + 1, -key);
+        }
+        PersistentLongMap<Long> firstEdit = edited.persistent();
+        edited.put(5000L, 5000L);
+        PersistentLongMap<Long> secondEdit = edited.persistent();
+
+        assertEquals(1000, map.size());
+        assertEquals(Long.valueOf(0), map.get(0L));
+        assertEquals(Long.valueOf(1), map.get(1L));
+        assertEquals(500, firstEdit.size());
+        assertNull(firstEdit.get(0L));
+        assertEquals(Long.valueOf(0), firstEdit.get(1L));
+        assertFalse(firstEdit.containsKey(5000L));
+        assertTrue(secondEdit.containsKey(5000L));
+    }
+
+    @Test
+    public void shouldEmptyTrieByRemovals() {
+        PersistentLongMap<Long> map = PersistentLongMap.copyOf(new LongMapOnBalancedTree<>());
+        for (long key = -500; key < 500; key++) {
+            map = map.with(key * 0x10000, key);
+        }
+        for (long key = -500; key < 500; key++) {
+            map = map.without(key * 0x10000);
+        }
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.cursor().advance());
+        assertArrayEquals(new long[0], map.keys());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectPut() {
+        PersistentLongMap.<String>empty().put(1L, "one");
+    }
+}
@@ -1,7 +1,11 @@
 package de.comparus.opensource.longmap.alternative;
 
 import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapCursor;
 import de.comparus.opensource.longmap.model.TestObject;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -108,4 +112,81 @@ public class LongMapArraysImplTest {
 
     assertFalse(testedInstance.containsValue(testObject1));
   }
+
+  @Test
+  public void shouldNotCountOverwrittenKeys() {
+    testedInstance.put(1L, testObject1);
+    testedInstance.put(1L, testObject2);
+
+    assertEquals(1L, testedInstance.size());
+    assertEquals(testObject2, testedInstance.remove(1L));
+    assertNull(testedInstance.remove(1L));
+    assertEquals(0L, testedInstance.size());
+  }
+
+  @Test
+  public void shouldRoundTripKeys() {
+    long[] keys = {Long.MIN_VALUE, -4097L, -1L, 0L, 4095L, 4096L, 1L << 24, 1L << 40,
+        Long.MAX_VALUE};
+    for (long key : keys) {
+      testedInstance.put(key, new TestObject(key, "Key"));
+    }
+
+    assertArrayEquals(keys, testedInstance.keys());
+    for (long key : keys) {
+      assertEquals(key, testedInstance.get(key).getId());
+    }
+    assertNull(testedInstance.get(2L));
+    assertNull(testedInstance.get(Long.MAX_VALUE - 1));
+  }
+
+  @Test
+  public void shouldKeepNullValues() {
+    testedInstance.put(7L, null);
+
+    assertTrue(testedInstance.containsKey(7L));
+    assertEquals(1L, testedInstance.size());
+    assertArrayEquals(new long[]{7L}, testedInstance.keys());
+  }
+
+  @Test
+  public void shouldFreeEmptyPages() {
+    LongMapArraysImpl<Long> map = new LongMapArraysImpl<>();
+    for (long key = 0; key < 100_000; key++) {
+      map.put(key * 3, key);
+    }
+    assertEquals(74L, map.pageCount());
+
+    for (long key = 0; key < 100_000; key++) {
+      assertEquals(Long.valueOf(key), map.remove(key * 3));
+    }
+
+    assertTrue(map.isEmpty());
+    assertEquals(0L, map.pageCount());
+    assertFalse(map.cursor().advance());
+  }
+
+  @Test
+  public void shouldMatchTreeMapUnderRandomUpdates() {
+    LongMap<Long> map = new LongMapArraysImpl<>();
+    TreeMap<Long, Long> expected = new TreeMap<>();
+    Random random = new Random(13);
+    for (int i = 0; i < 200_000; i++) {
+      long key = (random.nextBoolean() ? -(1L << 24) : 1L << 50) + random.nextInt(50_000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+      }
+    }
+
+    assertEquals(expected.size(), map.size());
+    LongMapCursor<Long> cursor = map.cursor();
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      assertTrue(cursor.advance());
+      assertEquals(entry.getKey().longValue(), cursor.key());
+      assertEquals(entry.getValue(), cursor.value());
+    }
+    assertFalse(cursor.advance());
+  }
 }
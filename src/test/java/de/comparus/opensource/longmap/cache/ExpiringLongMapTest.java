@@ -0,0 +1,166 @@
+package de.comparus.opensource.longmap.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapContractTest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against an ExpiringLongMap whose entries outlive the test and checks
+ * the expiration on a ticker driven by the tests.
+ */
+public class ExpiringLongMapTest extends LongMapContractTest {
+    private AtomicLong time;
+    private List<Long> expired;
+    private ExpiringLongMap<String> expiringMap;
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new ExpiringLongMap<>(1, TimeUnit.DAYS);
+    }
+
+    @Before
+    public void initTicker() {
+        // the ticker starts near the overflow to check the wrap of System.nanoTime() as well
+        time = new AtomicLong(Long.MAX_VALUE - TimeUnit.SECONDS.toNanos(5));
+        expired = new ArrayList<>();
+        expiringMap = new ExpiringLongMap<>(10, TimeUnit.SECONDS, time::get,
+            (key, value) -> expired.add(key));
+    }
+
+    @Test
+    public void shouldExpireAfterTimeToLive() {
+        expiringMap.put(1L, "one");
+        expiringMap.put(2L, "two", 20, TimeUnit.SECONDS);
+
+        sleep(9_999);
+        assertEquals("one", expiringMap.get(1L));
+
+        sleep(1);
+        assertNull(expiringMap.get(1L));
+        assertFalse(expiringMap.containsKey(1L));
+        assertEquals("two", expiringMap.get(2L));
+        assertEquals(1, expiringMap.size());
+
+        sleep(10_000);
+        assertTrue(expiringMap.isEmpty());
+        assertEquals(Arrays.asList(1L, 2L), expired);
+        assertEquals(2, expiringMap.expirationCount());
+    }
+
+    @Test
+    public void shouldRestartTimeToLiveOnPut() {
+        expiringMap.put(1L, "one");
+        sleep(8_000);
+
+        assertEquals("one", expiringMap.put(1L, "uno"));
+        sleep(8_000);
+
+        assertEquals("uno", expiringMap.get(1L));
+        sleep(2_000);
+        assertNull(expiringMap.get(1L));
+    }
+
+    @Test
+    public void shouldExpireWithoutLookups() {
+        for (long key = 0; key < 1000; key++) {
+            expiringMap.put(key, "value");
+        }
+
+        sleep(11_000);
+        expiringMap.cleanUp();
+
+        assertEquals(1000, expired.size());
+        assertEquals(0, expiringMap.size());
+        assertArrayEquals(new long[0], expiringMap.keys());
+    }
+
+    @Test
+    public void shouldNotReturnRemovedOrExpiredEntries() {
+        expiringMap.put(1L, "one");
+        expiringMap.put(2L, "two", 1, TimeUnit.SECONDS);
+        expiringMap.put(3L, "three");
+
+        assertEquals("three", expiringMap.remove(3L));
+        sleep(1_000);
+
+        assertArrayEquals(new long[]{1L}, expiringMap.keys());
+        assertArrayEquals(new Object[]{"one"}, expiringMap.values());
+        assertFalse(expiringMap.containsValue("two"));
+        assertNull(expiringMap.remove(2L));
+        assertTrue(expired.contains(2L));
+        assertFalse(expired.contains(3L));
+    }
+
+    @Test
+    public void shouldMatchDeadlinesUnderRandomUse() {
+        ExpiringLongMap<Long> map = new ExpiringLongMap<>(1, TimeUnit.HOURS, time::get,
+            (key, value) -> { });
+        Map<Long, Long> deadlines = new HashMap<>();
+        Random random = new Random(19);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(2000);
+            long timeToLive = 1 + (long) Math.pow(10, random.nextInt(13));
+            map.put(key, key, timeToLive, TimeUnit.NANOSECONDS);
+            deadlines.put(key, time.get() + timeToLive);
+            time.addAndGet((long) Math.pow(10, random.nextInt(10)));
+            if (i % 1000 == 0) {
+                long now = time.get();
+                deadlines.values().removeIf(deadline -> deadline - now <= 0);
+                assertEquals(deadlines.size(), map.keys().length);
+                for (long expectedKey : deadlines.keySet()) {
+                    assertEquals(Long.valueOf(expectedKey), map.get(expectedKey));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldCleanUpInBackground() throws Exception {
+        ExpiringLongMap<String> map = new ExpiringLongMap<>(1, TimeUnit.MILLISECONDS);
+        synchronized (map) {
+            for (long key = 0; key < 100; key++) {
+                map.put(key, "value");
+            }
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            map.scheduleCleanUp(executor, 5, TimeUnit.MILLISECONDS);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (true) {
+                synchronized (map) {
+                    if (map.expirationCount() == 100 || System.currentTimeMillis() > deadline) {
+                        break;
+                    }
+                }
+                Thread.sleep(5);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        synchronized (map) {
+            assertEquals(100, map.expirationCount());
+        }
+    }
+
+    private void sleep(long millis) {
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
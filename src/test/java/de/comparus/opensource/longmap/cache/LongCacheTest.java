@@ -0,0 +1,184 @@
+package de.comparus.opensource.longmap.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapContractTest;
+import de.comparus.opensource.longmap.LongMapCursor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against a LongCache too big to evict anything and checks the eviction
+ * policies.
+ */
+public class LongCacheTest extends LongMapContractTest {
+    private static final int CONTRACT_MAXIMUM_SIZE = 1 << 16;
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new LongCache<>(CONTRACT_MAXIMUM_SIZE);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        List<Long> evicted = new ArrayList<>();
+        LongCache<String> cache = new LongCache<>(3, EvictionPolicy.LRU, (key, value) -> 1L,
+            (key, value) -> evicted.add(key));
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+        cache.get(1L);
+
+        cache.put(4L, "four");
+        cache.put(5L, "five");
+
+        assertEquals(Arrays.asList(2L, 3L), evicted);
+        assertEquals(3, cache.size());
+        assertArrayEquals(new long[]{1L, 4L, 5L}, cache.keys());
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void shouldEvictByWeight() {
+        List<Long> evicted = new ArrayList<>();
+        LongCache<String> cache = new LongCache<>(10, EvictionPolicy.LRU,
+            (key, value) -> value.length(), (key, value) -> evicted.add(key));
+        cache.put(1L, "aaaa");
+        cache.put(2L, "bbbb");
+        assertEquals(8, cache.weight());
+
+        cache.put(3L, "cc");
+        assertTrue(evicted.isEmpty());
+
+        cache.put(1L, "aaaaaa");
+
+        assertEquals(Arrays.asList(2L), evicted);
+        assertEquals(8, cache.weight());
+        assertEquals("aaaaaa", cache.get(1L));
+    }
+
+    @Test
+    public void shouldKeepFrequentEntriesThroughScan() {
+        LongCache<Long> lru = new LongCache<>(1000, EvictionPolicy.LRU);
+        LongCache<Long> tinyLfu = new LongCache<>(1000, EvictionPolicy.W_TINY_LFU);
+        for (LongCache<Long> cache : Arrays.asList(lru, tinyLfu)) {
+            for (int round = 0; round < 5; round++) {
+                for (long key = 0; key < 500; key++) {
+                    if (cache.get(key) == null) {
+                        cache.put(key, key);
+                    }
+                }
+            }
+            for (long key = 1_000_000; key < 1_010_000; key++) {
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+        }
+
+        int lruHotKeys = 0;
+        int tinyLfuHotKeys = 0;
+        for (long key = 0; key < 500; key++) {
+            if (lru.containsKey(key)) lruHotKeys++;
+            if (tinyLfu.containsKey(key)) tinyLfuHotKeys++;
+        }
+        assertEquals(0, lruHotKeys);
+        assertTrue("hot keys kept " + tinyLfuHotKeys, tinyLfuHotKeys > 450);
+        assertEquals(1000, tinyLfu.size());
+    }
+
+    @Test
+    public void shouldStayWithinMaximumUnderRandomUse() {
+        double[] hitRates = new double[EvictionPolicy.values().length];
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            LongCache<Long> cache = new LongCache<>(500, policy);
+            Random random = new Random(17);
+            for (int i = 0; i < 100_000; i++) {
+                // a skewed key distribution, the small keys are the most popular
+                long key = (long) Math.abs(random.nextGaussian() * 1000);
+                Long value = cache.get(key);
+                if (value == null) {
+                    cache.put(key, key);
+                } else {
+                    assertEquals(key, value.longValue());
+                }
+                if (random.nextInt(10) == 0) {
+                    cache.remove(random.nextInt(3000));
+                }
+                assertTrue(cache.size() <= 500);
+            }
+
+            assertEquals(cache.size(), cache.keys().length);
+            assertEquals(cache.size(), cache.weight());
+            for (long key : cache.keys()) {
+                assertEquals(Long.valueOf(key), cache.get(key));
+            }
+            hitRates[policy.ordinal()] = cache.hitRate();
+        }
+
+        assertTrue(Arrays.toString(hitRates), hitRates[EvictionPolicy.W_TINY_LFU.ordinal()]
+            > hitRates[EvictionPolicy.LRU.ordinal()]);
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        LongCache<String> cache = new LongCache<>(10);
+        cache.put(1L, "one");
+
+        cache.get(1L);
+        cache.get(2L);
+        cache.computeIfAbsent(3L, key -> "three");
+        cache.get(3L);
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(0.5, cache.hitRate(), 1e-9);
+
+        cache.resetStats();
+
+        assertEquals(1.0, cache.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void shouldRemoveAndClear() {
+        LongCache<String> cache = new LongCache<>(10);
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        assertEquals("one", cache.remove(1L));
+        assertNull(cache.remove(1L));
+        assertFalse(cache.containsKey(1L));
+        assertTrue(cache.containsValue("two"));
+        assertEquals(1, cache.weight());
+
+        cache.clear();
+
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.weight());
+        assertFalse(cache.cursor().advance());
+        cache.put(3L, "three");
+        assertEquals("three", cache.get(3L));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailCursorAfterHit() {
+        LongCache<String> cache = new LongCache<>(10);
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        LongMapCursor<String> cursor = cache.cursor();
+        cursor.advance();
+
+        cache.get(2L);
+
+        cursor.advance();
+    }
+}
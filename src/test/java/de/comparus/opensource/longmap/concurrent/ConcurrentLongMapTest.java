@@ -0,0 +1,149 @@
+package de.comparus.opensource.longmap.concurrent;
+
+import static de.comparus.opensource.longmap.concurrent.ConcurrentTestSupport.THREAD_NUMBER;
+import static de.comparus.opensource.longmap.concurrent.ConcurrentTestSupport.runConcurrently;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapContractTest;
+import de.comparus.opensource.longmap.LongMapCursor;
+import de.comparus.opensource.longmap.model.TestObject;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against ConcurrentLongMap and adds concurrency stress tests.
+ */
+public class ConcurrentLongMapTest extends LongMapContractTest {
+    private static final int KEYS_PER_THREAD = 20_000;
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new ConcurrentLongMap<>();
+    }
+
+    /**
+     * The keys come segment by segment, so their order does not follow the insertion order.
+     */
+    @Override
+    @Test
+    public void shouldGetKeys() {
+        long[] result = testedInstance.keys();
+        Arrays.sort(result);
+
+        assertArrayEquals(new long[] {testObject1.getId(), testObject2.getId()}, result);
+    }
+
+    @Override
+    @Test
+    public void shouldGetValues() {
+        Object[] result = testedInstance.values();
+
+        assertEquals(2, result.length);
+        assertTrue(Arrays.asList(result).containsAll(Arrays.asList(testObject1, testObject2)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void shouldRejectNullValues() {
+        testedInstance.put(testObject3.getId(), null);
+    }
+
+    @Test
+    public void shouldKeepAllEntriesOfConcurrentWriters() throws InterruptedException {
+        LongMap<Long> map = new ConcurrentLongMap<>(0, 4);
+        runConcurrently(thread -> {
+            for (long i = 0; i < KEYS_PER_THREAD; i++) {
+                long key = i * THREAD_NUMBER + thread;
+                map.put(key, key);
+                if (i % 4 == 0) {
+                    map.remove(key);
+                }
+            }
+        });
+
+        assertEquals(THREAD_NUMBER * (KEYS_PER_THREAD - KEYS_PER_THREAD / 4), map.size());
+        for (long key = 0; key < THREAD_NUMBER * KEYS_PER_THREAD; key++) {
+            Long value = map.get(key);
+            if ((key / THREAD_NUMBER) % 4 == 0) {
+                assertNull(value);
+            } else {
+                assertEquals(Long.valueOf(key), value);
+            }
+        }
+    }
+
+    @Test
+    public void shouldNeverReadForeignValuesWhileWriting() throws InterruptedException {
+        LongMap<Long> map = new ConcurrentLongMap<>(0, 2);
+        AtomicInteger wrongReads = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (long i = 0; i < KEYS_PER_THREAD; i++) {
+                if (thread % 2 == 0) {
+                    map.put(i * THREAD_NUMBER + thread, i);
+                } else {
+                    long key = i * THREAD_NUMBER + thread - 1;
+                    Long value = map.get(key);
+                    if (value != null && value != i) {
+                        wrongReads.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        assertEquals(0, wrongReads.get());
+        assertEquals(THREAD_NUMBER / 2 * KEYS_PER_THREAD, map.size());
+    }
+
+    @Test
+    public void shouldComputeOnlyOnceForConcurrentCallers() throws InterruptedException {
+        LongMap<TestObject> map = new ConcurrentLongMap<>();
+        AtomicInteger computations = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (long key = 0; key < 1000; key++) {
+                assertNotNull(map.computeIfAbsent(key, k -> {
+                    computations.incrementAndGet();
+                    return new TestObject(k, "Computed");
+                }));
+            }
+        });
+
+        assertEquals(1000, computations.get());
+        assertEquals(1000L, map.size());
+    }
+
+    @Test
+    public void shouldVisitEveryMappingOfEverySegment() {
+        LongMap<Long> map = new ConcurrentLongMap<>(0, 16);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, key * 2);
+        }
+        long[] visitedKeys = new long[10_000];
+        int count = 0;
+
+        LongMapCursor<Long> cursor = map.cursor();
+        while (cursor.advance()) {
+            assertEquals(Long.valueOf(cursor.key() * 2), cursor.value());
+            visitedKeys[count++] = cursor.key();
+        }
+        Arrays.sort(visitedKeys);
+
+        assertEquals(10_000, count);
+        for (int i = 0; i < visitedKeys.length; i++) {
+            assertEquals(i, visitedKeys[i]);
+        }
+    }
+
+    @Test
+    public void shouldAllowModificationsFromForEach() {
+        testedInstance.put(testObject4.getId(), testObject4);
+
+        testedInstance.forEach((key, value) -> testedInstance.remove(key));
+
+        assertTrue(testedInstance.isEmpty());
+    }
+}
@@ -0,0 +1,47 @@
+package de.comparus.opensource.longmap.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a task on THREAD_NUMBER threads released at once, for the tests of the concurrent maps.
+ */
+final class ConcurrentTestSupport {
+    static final int THREAD_NUMBER = 8;
+
+    private ConcurrentTestSupport() {
+    }
+
+    /**
+     * Waits for all the threads and rethrows the failure of any of them as an AssertionError.
+     */
+    static void runConcurrently(ThreadTask task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREAD_NUMBER];
+        Throwable[] failures = new Throwable[THREAD_NUMBER];
+        for (int i = 0; i < THREAD_NUMBER; i++) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(thread);
+                } catch (Throwable e) {
+                    failures[thread] = e;
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                throw new AssertionError(failure);
+            }
+        }
+    }
+
+    interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,131 @@
+package de.comparus.opensource.longmap.concurrent;
+
+import static de.comparus.opensource.longmap.concurrent.ConcurrentTestSupport.THREAD_NUMBER;
+import static de.comparus.opensource.longmap.concurrent.ConcurrentTestSupport.runConcurrently;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapContractTest;
+import de.comparus.opensource.longmap.model.TestObject;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Runs the LongMap contract against NonBlockingLongMap and adds concurrency stress tests.
+ */
+public class NonBlockingLongMapTest extends LongMapContractTest {
+    private static final int KEYS_PER_THREAD = 50_000;
+
+    @Override
+    protected <T> LongMap<T> createTestedInstance() {
+        return new NonBlockingLongMap<>();
+    }
+
+    @Test
+    public void shouldKeepAllEntriesOfConcurrentWriters() throws InterruptedException {
+        LongMap<Long> map = new NonBlockingLongMap<>(0);
+        runConcurrently(thread -> {
+            for (long i = 1; i <= KEYS_PER_THREAD; i++) {
+                long key = i * THREAD_NUMBER + thread;
+                map.put(key, key);
+                if (i % 4 == 0) {
+                    assertEquals(Long.valueOf(key), map.remove(key));
+                }
+            }
+        });
+
+        assertEquals(THREAD_NUMBER * (KEYS_PER_THREAD - KEYS_PER_THREAD / 4), map.size());
+        assertEquals(map.size(), map.keys().length);
+        for (long i = 1; i <= KEYS_PER_THREAD; i++) {
+            for (int thread = 0; thread < THREAD_NUMBER; thread++) {
+                long key = i * THREAD_NUMBER + thread;
+                if (i % 4 == 0) {
+                    assertNull(map.get(key));
+                } else {
+                    assertEquals(Long.valueOf(key), map.get(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotLoseUpdatesOfSharedKeys() throws InterruptedException {
+        LongMap<AtomicLong> map = new NonBlockingLongMap<>(0);
+        int keyNumber = 1000;
+        runConcurrently(thread -> {
+            for (int round = 0; round < 20; round++) {
+                for (long key = 1; key <= keyNumber; key++) {
+                    map.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(keyNumber, map.size());
+        for (long key = 1; key <= keyNumber; key++) {
+            assertEquals(20L * THREAD_NUMBER, map.get(key).get());
+        }
+    }
+
+    @Test
+    public void shouldInsertEveryKeyOnlyOnceByPutIfAbsent() throws InterruptedException {
+        LongMap<TestObject> map = new NonBlockingLongMap<>(0);
+        AtomicInteger insertions = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (long key = 1; key <= KEYS_PER_THREAD; key++) {
+                if (map.putIfAbsent(key, new TestObject(key, "Thread " + thread)) == null) {
+                    insertions.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(KEYS_PER_THREAD, insertions.get());
+        assertEquals(KEYS_PER_THREAD, map.size());
+    }
+
+    @Test
+    public void shouldReadOnlyWrittenValuesUnderChurn() throws InterruptedException {
+        LongMap<Long> map = new NonBlockingLongMap<>(0);
+        AtomicInteger wrongReads = new AtomicInteger();
+        runConcurrently(thread -> {
+            for (long i = 1; i <= KEYS_PER_THREAD; i++) {
+                long key = (i % 512) + 1;
+                if (thread % 2 == 0) {
+                    map.put(key, key * 10);
+                    map.remove(key);
+                } else {
+                    Long value = map.get(key);
+                    if (value != null && value != key * 10) {
+                        wrongReads.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        assertEquals(0, wrongReads.get());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void shouldKeepSizeOfLiveEntriesWhileClearing() throws InterruptedException {
+        LongMap<Long> map = new NonBlockingLongMap<>(0);
+        runConcurrently(thread -> {
+            for (long i = 1; i <= KEYS_PER_THREAD; i++) {
+                if (thread == 0) {
+                    if (i % 64 == 0) {
+                        map.clear();
+                    }
+                    continue;
+                }
+                long key = (i % 1024) * THREAD_NUMBER + thread;
+                map.put(key, key);
+                map.remove(key);
+            }
+        });
+
+        assertEquals(map.keys().length, map.size());
+        assertTrue(map.size() >= 0);
+    }
+}
@@ -0,0 +1,166 @@
+package de.comparus.opensource.longmap.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedLongLongMapTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private MappedLongLongMap testedInstance;
+
+    @Before
+    public void init() throws IOException {
+        file = folder.getRoot().toPath().resolve("map.bin");
+        testedInstance = MappedLongLongMap.open(file, 16, -1L);
+        testedInstance.put(1L, 10L);
+        testedInstance.put(5L, 50L);
+    }
+
+    @After
+    public void release() {
+        testedInstance.close();
+    }
+
+    @Test
+    public void shouldSaveAndGetData() {
+        assertEquals(-1L, testedInstance.put(10L, 100L));
+        assertEquals(10L, testedInstance.put(1L, 11L));
+
+        assertEquals(100L, testedInstance.get(10L));
+        assertEquals(-1L, testedInstance.get(2L));
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldKeepDataAfterReopening() throws IOException {
+        testedInstance.put(0L, 7L);
+        testedInstance.remove(5L);
+        testedInstance.close();
+
+        testedInstance = MappedLongLongMap.open(file);
+
+        assertEquals(2L, testedInstance.size());
+        assertEquals(10L, testedInstance.get(1L));
+        assertEquals(7L, testedInstance.get(0L));
+        assertFalse(testedInstance.containsKey(5L));
+        assertEquals(-1L, testedInstance.getNoValue());
+    }
+
+    @Test
+    public void shouldKeepDataAfterResizeAndReopening() throws IOException {
+        for (long key = 1; key <= 10_000; key++) {
+            testedInstance.put(key * 7919, key);
+        }
+        testedInstance.close();
+
+        testedInstance = MappedLongLongMap.open(file);
+
+        assertEquals(10_002L, testedInstance.size());
+        for (long key = 1; key <= 10_000; key++) {
+            assertEquals(key, testedInstance.get(key * 7919));
+        }
+        assertEquals(50L, testedInstance.get(5L));
+        assertFalse(Files.exists(file.resolveSibling("map.bin.resizing")));
+    }
+
+    @Test
+    public void shouldReopenFileRightAfterResize() throws IOException {
+        testedInstance.put(0L, 7L);
+        long key = 100;
+        long size = testedInstance.size();
+        long capacity = Files.size(file);
+        while (Files.size(file) == capacity) {
+            testedInstance.put(key++, 1L);
+            size++;
+        }
+
+        MappedLongLongMap reopened = MappedLongLongMap.open(file);
+        try {
+            assertEquals(size, reopened.size());
+            assertEquals(7L, reopened.get(0L));
+            assertEquals(1L, reopened.get(key - 1));
+            assertEquals(50L, reopened.get(5L));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldRecountEntriesOfFileNotClosedProperly() throws IOException {
+        testedInstance.put(3L, 30L);
+        testedInstance.force();
+
+        MappedLongLongMap reopened = MappedLongLongMap.open(file);
+        try {
+            testedInstance.put(4L, 40L);
+
+            assertEquals(3L, reopened.size());
+            assertEquals(40L, reopened.get(4L));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void shouldStartAgainAfterClearing() throws IOException {
+        testedInstance.put(0L, 1L);
+        testedInstance.clear();
+        testedInstance.put(2L, 20L);
+        testedInstance.close();
+
+        testedInstance = MappedLongLongMap.open(file);
+
+        assertEquals(1L, testedInstance.size());
+        assertFalse(testedInstance.containsKey(0L));
+        assertEquals(20L, testedInstance.get(2L));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectForeignFile() throws IOException {
+        Path foreignFile = folder.newFile("foreign.bin").toPath();
+        Files.write(foreignFile, new byte[8192]);
+
+        MappedLongLongMap.open(foreignFile);
+    }
+
+    @Test
+    public void shouldRejectUnknownVersion() throws IOException {
+        testedInstance.close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            version.putInt(0, MappedLongLongMap.FORMAT_VERSION + 1);
+            channel.write(version, 8);
+        }
+
+        try {
+            MappedLongLongMap.open(file);
+            assertTrue("An unknown version must be rejected", false);
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUseAfterClosing() {
+        testedInstance.close();
+
+        testedInstance.get(1L);
+    }
+}
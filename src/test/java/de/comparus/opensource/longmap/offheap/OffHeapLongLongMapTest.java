@@ -0,0 +1,77 @@
+package de.comparus.opensource.longmap.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapLongLongMapTest {
+    private OffHeapLongLongMap testedInstance;
+
+    @Before
+    public void init() {
+        testedInstance = new OffHeapLongLongMap(16, -1L);
+        testedInstance.put(1L, 10L);
+        testedInstance.put(5L, 50L);
+    }
+
+    @After
+    public void release() {
+        testedInstance.close();
+    }
+
+    @Test
+    public void shouldSaveAndGetData() {
+        assertEquals(-1L, testedInstance.put(10L, 100L));
+        assertEquals(10L, testedInstance.put(1L, 11L));
+
+        assertEquals(100L, testedInstance.get(10L));
+        assertEquals(-1L, testedInstance.get(2L));
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldDeleteData() {
+        assertEquals(50L, testedInstance.remove(5L));
+        assertEquals(-1L, testedInstance.remove(5L));
+
+        assertFalse(testedInstance.containsKey(5L));
+        assertEquals(1L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldAddToValues() {
+        assertEquals(15L, testedInstance.addTo(1L, 5L));
+        assertEquals(3L, testedInstance.addTo(0L, 3L));
+
+        assertTrue(testedInstance.containsValue(3L));
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldKeepAllEntriesWhileGrowingAndShrinking() {
+        for (long key = -100_000; key <= 100_000; key++) {
+            testedInstance.put(key, key * 2);
+        }
+        for (long key = -100_000; key <= 100_000; key += 2) {
+            testedInstance.remove(key);
+        }
+
+        assertEquals(100_000L, testedInstance.size());
+        for (long key = -99_999; key <= 99_999; key += 2) {
+            assertEquals(key * 2, testedInstance.get(key));
+        }
+        assertEquals(100_000, testedInstance.values().length);
+    }
+
+    @Test
+    public void shouldClearData() {
+        testedInstance.clear();
+
+        assertTrue(testedInstance.isEmpty());
+        assertEquals(-1L, testedInstance.get(1L));
+    }
+}
@@ -0,0 +1,162 @@
+package de.comparus.opensource.longmap.offheap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.comparus.opensource.longmap.LongMapCursor;
+import de.comparus.opensource.longmap.model.TestObject;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapLongMapTest {
+    private static final ValueCodec<TestObject> TEST_OBJECT_CODEC = new ValueCodec<TestObject>() {
+        @Override
+        public int sizeOf(TestObject value) {
+            return 8 + value.getName().getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void write(TestObject value, ByteBuffer target) {
+            target.putLong(value.getId()).put(value.getName().getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public TestObject read(ByteBuffer source) {
+            long id = source.getLong();
+            byte[] name = new byte[source.remaining()];
+            source.get(name);
+            return new TestObject(id, new String(name, StandardCharsets.UTF_8));
+        }
+    };
+
+    private OffHeapLongMap<TestObject> testedInstance;
+
+    @Before
+    public void init() {
+        testedInstance = new OffHeapLongMap<>(TEST_OBJECT_CODEC);
+        testedInstance.put(1L, new TestObject(1L, "Car"));
+        testedInstance.put(5L, new TestObject(5L, "Bus"));
+    }
+
+    @After
+    public void release() {
+        testedInstance.close();
+    }
+
+    @Test
+    public void shouldSaveAndGetData() {
+        assertNull(testedInstance.put(10L, new TestObject(10L, "Plain")));
+        assertEquals("Car", testedInstance.put(1L, new TestObject(1L, "Bike")).getName());
+
+        assertEquals("Plain", testedInstance.get(10L).getName());
+        assertEquals("Bike", testedInstance.get(1L).getName());
+        assertNull(testedInstance.get(2L));
+        assertEquals(3L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldDeleteData() {
+        assertEquals("Bus", testedInstance.remove(5L).getName());
+        assertNull(testedInstance.remove(5L));
+
+        assertFalse(testedInstance.containsKey(5L));
+        assertEquals(1L, testedInstance.size());
+    }
+
+    @Test
+    public void shouldKeepZeroKey() {
+        testedInstance.put(0L, new TestObject(0L, "Boat"));
+
+        assertEquals("Boat", testedInstance.get(0L).getName());
+        assertEquals(3, testedInstance.keys().length);
+        assertEquals("Boat", testedInstance.remove(0L).getName());
+        assertFalse(testedInstance.containsKey(0L));
+    }
+
+    @Test
+    public void shouldGetKeysAndValues() {
+        long[] keys = testedInstance.keys();
+        Arrays.sort(keys);
+        Object[] values = testedInstance.values();
+
+        assertArrayEquals(new long[] {1L, 5L}, keys);
+        assertEquals(2, values.length);
+    }
+
+    @Test
+    public void shouldKeepStringsAfterManyUpdates() {
+        OffHeapLongMap<String> map = new OffHeapLongMap<>(ValueCodec.UTF8_STRING);
+        try {
+            for (int round = 0; round < 20; round++) {
+                for (long key = -5000; key < 5000; key++) {
+                    map.put(key, "value of " + key + " in round " + round);
+                }
+            }
+            assertEquals(10_000L, map.size());
+            for (long key = -5000; key < 5000; key++) {
+                assertEquals("value of " + key + " in round 19", map.get(key));
+            }
+            assertTrue(map.containsValue("value of 7 in round 19"));
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test
+    public void shouldKeepZeroKeyAfterManyUpdates() {
+        OffHeapLongMap<String> map = new OffHeapLongMap<>(ValueCodec.UTF8_STRING);
+        char[] padding = new char[1000];
+        Arrays.fill(padding, 'x');
+        try {
+            map.put(7L, "value of 7");
+            for (int round = 0; round < 100_000; round++) {
+                map.put(0L, round + new String(padding));
+                if (round % 3 == 1) {
+                    map.remove(0L);
+                }
+            }
+            assertEquals(99_999 + new String(padding), map.get(0L));
+            assertEquals("value of 7", map.get(7L));
+            assertEquals(2L, map.size());
+        } finally {
+            map.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUseAfterClose() {
+        testedInstance.close();
+
+        testedInstance.get(1L);
+    }
+
+    @Test
+    public void shouldVisitEveryMappingWithCursorAndForEach() {
+        testedInstance.put(0L, new TestObject(0L, "Boat"));
+        long[] cursorKeys = new long[3];
+        int count = 0;
+
+        LongMapCursor<TestObject> cursor = testedInstance.cursor();
+        while (cursor.advance()) {
+            assertEquals(cursor.key(), cursor.value().getId());
+            cursorKeys[count++] = cursor.key();
+        }
+        long[] forEachKeys = new long[3];
+        int[] forEachCount = new int[1];
+        testedInstance.forEach((key, value) -> {
+            assertEquals(key, value.getId());
+            forEachKeys[forEachCount[0]++] = key;
+        });
+
+        assertEquals(3, count);
+        assertArrayEquals(testedInstance.keys(), cursorKeys);
+        assertArrayEquals(testedInstance.keys(), forEachKeys);
+    }
+}
@@ -0,0 +1,188 @@
+package de.comparus.opensource.longmap.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import de.comparus.opensource.longmap.LongMap;
+import de.comparus.opensource.longmap.LongMapImpl;
+import de.comparus.opensource.longmap.LongMapOnBPlusTree;
+import de.comparus.opensource.longmap.LongMapOnBalancedTree;
+import de.comparus.opensource.longmap.offheap.ValueCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class LongMapSnapshotTest {
+
+    @Test
+    public void shouldRestoreAllEntries() throws IOException {
+        LongMap<String> map = new LongMapImpl<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextLong();
+            map.put(key, Long.toString(key));
+        }
+        map.put(0L, "zero");
+        map.put(Long.MIN_VALUE, "min");
+        map.put(Long.MAX_VALUE, null);
+
+        for (LongMap<String> target : Arrays.<LongMap<String>>asList(new LongMapImpl<>(),
+            new LongMapOnBalancedTree<>(), new LongMapOnBPlusTree<>(),
+            new LongMapOnBPlusTree<>(4))) {
+            assertEquals(map.size(), LongMapSnapshot.read(channelOf(write(map)),
+                ValueCodec.UTF8_STRING, target));
+            assertEqualMaps(map, target);
+        }
+    }
+
+    @Test
+    public void shouldWriteSortedMapWithoutSorting() throws IOException {
+        LongMap<String> map = new LongMapOnBalancedTree<>();
+        for (long key = -1000; key < 1000; key += 3) {
+            map.put(key, "v" + key);
+        }
+
+        LongMap<String> restored = new LongMapImpl<>();
+        LongMapSnapshot.read(channelOf(write(map)), ValueCodec.UTF8_STRING, restored);
+
+        assertEqualMaps(map, restored);
+    }
+
+    @Test
+    public void shouldEncodeDenseKeysCompactly() throws IOException {
+        LongMap<byte[]> map = new LongMapImpl<>();
+        for (long key = 1_000_000; key < 1_010_000; key++) {
+            map.put(key, new byte[0]);
+        }
+
+        byte[] snapshot = write(map, ValueCodec.BYTES);
+
+        // the header and the checksum, the first key takes 3 bytes, every next one and every
+        // value size takes 1 byte
+        assertEquals(20 + 3 + 1 + 9_999 * 2 + 4, snapshot.length);
+    }
+
+    @Test
+    public void shouldStreamValuesLargerThanBuffer() throws IOException {
+        LongMap<byte[]> map = new LongMapImpl<>();
+        byte[] large = new byte[200_000];
+        new Random(5).nextBytes(large);
+        map.put(1L, new byte[]{1, 2, 3});
+        map.put(2L, large);
+        map.put(3L, new byte[]{4});
+
+        LongMap<byte[]> restored = new LongMapImpl<>();
+        LongMapSnapshot.read(channelOf(write(map, ValueCodec.BYTES)), ValueCodec.BYTES, restored);
+
+        assertEquals(3, restored.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, restored.get(1L));
+        assertArrayEquals(large, restored.get(2L));
+        assertArrayEquals(new byte[]{4}, restored.get(3L));
+    }
+
+    @Test
+    public void shouldRestoreEmptyMap() throws IOException {
+        LongMap<String> restored = new LongMapImpl<>();
+
+        assertEquals(0, LongMapSnapshot.read(channelOf(write(new LongMapImpl<>())),
+            ValueCodec.UTF8_STRING, restored));
+        assertTrue(restored.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectCorruptedSnapshot() throws IOException {
+        LongMap<String> map = new LongMapImpl<>();
+        for (long key = 0; key < 1000; key++) {
+            map.put(key, "value");
+        }
+        byte[] snapshot = write(map);
+        snapshot[snapshot.length / 2] ^= 0x10;
+
+        LongMapSnapshot.read(channelOf(snapshot), ValueCodec.UTF8_STRING, new LongMapImpl<>());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedSnapshot() throws IOException {
+        LongMap<String> map = new LongMapImpl<>();
+        map.put(1L, "value");
+        byte[] snapshot = write(map);
+
+        LongMapSnapshot.read(channelOf(Arrays.copyOf(snapshot, snapshot.length - 1)),
+            ValueCodec.UTF8_STRING, new LongMapImpl<>());
+    }
+
+    @Test
+    public void shouldRejectHugeCountOfHeaderWithoutAllocatingIt() throws IOException {
+        LongMap<String> map = new LongMapImpl<>();
+        map.put(1L, "value");
+        byte[] snapshot = write(map);
+        // the number of entries follows the magic number and the version
+        ByteBuffer.wrap(snapshot).order(ByteOrder.LITTLE_ENDIAN).putLong(12, Long.MAX_VALUE);
+
+        for (LongMap<String> target : Arrays.<LongMap<String>>asList(new LongMapImpl<>(),
+            new LongMapOnBalancedTree<>(), new LongMapOnBPlusTree<>())) {
+            target.put(2L, "kept");
+            try {
+                LongMapSnapshot.read(channelOf(snapshot), ValueCodec.UTF8_STRING, target);
+                fail();
+            } catch (IOException e) {
+                assertArrayEquals(new long[] {2L}, target.keys());
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepTargetOfCorruptedSnapshot() throws IOException {
+        LongMap<String> map = new LongMapImpl<>();
+        for (long key = 0; key < 1000; key++) {
+            map.put(key, "value");
+        }
+        byte[] snapshot = write(map);
+        snapshot[snapshot.length - 1] ^= 0x10;
+
+        LongMap<String> target = new LongMapOnBalancedTree<>();
+        try {
+            LongMapSnapshot.read(channelOf(snapshot), ValueCodec.UTF8_STRING, target);
+            fail();
+        } catch (IOException e) {
+            assertTrue(target.isEmpty());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectForeignStream() throws IOException {
+        LongMapSnapshot.read(channelOf(new byte[64]), ValueCodec.UTF8_STRING,
+            new LongMapImpl<>());
+    }
+
+    private static byte[] write(LongMap<String> map) throws IOException {
+        return write(map, ValueCodec.UTF8_STRING);
+    }
+
+    private static <V> byte[] write(LongMap<V> map, ValueCodec<V> codec) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(map.size(), LongMapSnapshot.write(map, codec, Channels.newChannel(output)));
+        return output.toByteArray();
+    }
+
+    private static ReadableByteChannel channelOf(byte[] bytes) {
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+
+    private static void assertEqualMaps(LongMap<String> expected, LongMap<String> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (long key : expected.keys()) {
+            assertTrue(actual.containsKey(key));
+            assertEquals(expected.get(key), actual.get(key));
+        }
+    }
+}